@@ -0,0 +1,70 @@
+package jayhorn.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jayhorn.hornify.HornEncoderContext;
+import jayhorn.hornify.HornHelper;
+import jayhorn.hornify.Hornify;
+import jayhorn.hornify.encoder.S2H;
+import jayhorn.solver.princess.PrincessProverFactory;
+import jayhorn.utils.GhostRegister;
+import jayhorn.utils.HeapCounterTransformer;
+import soottocfg.cfg.Program;
+import soottocfg.cfg.type.IntType;
+
+/**
+ * Benchmarks for the Horn encoding. The clauses are only created, not
+ * solved.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EncodingBenchmarks {
+
+	/**
+	 * A program with the ghost variables and heap counter that the
+	 * encoding expects, as in Checker.prepareProgram. The encoding does
+	 * not modify the program, so it is translated once per trial. Only
+	 * the state of the encoder is reset before every invocation.
+	 */
+	@State(Scope.Thread)
+	public static class PreparedProgram extends ProgramFixture {
+
+		public Program program;
+
+		@Setup(Level.Trial)
+		public void prepare() {
+			program = translate();
+			GhostRegister.reset();
+			if (soottocfg.Options.v().memPrecision() >= 2) {
+				GhostRegister.v().ghostVariableMap.put("pushID", IntType.instance());
+			}
+			new HeapCounterTransformer().transform(program);
+		}
+
+		@Setup(Level.Invocation)
+		public void resetEncoder() {
+			S2H.resetInstance();
+			HornHelper.resetInstance();
+		}
+	}
+
+	@Benchmark
+	public HornEncoderContext toHorn(PreparedProgram state) {
+		return new Hornify(new PrincessProverFactory()).toHorn(state.program);
+	}
+}
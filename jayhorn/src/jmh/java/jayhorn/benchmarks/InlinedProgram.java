@@ -0,0 +1,44 @@
+package jayhorn.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soottocfg.Options;
+import soottocfg.cfg.Program;
+import soottocfg.cfg.optimization.CfgCallInliner;
+import soottocfg.soot.SootToCfg;
+import soottocfg.soot.util.FlowBasedPointsToAnalysis;
+
+/**
+ * A program that is translated and inlined once per trial, but not
+ * simplified. Every iteration gets a deep copy of it, so benchmarks may
+ * modify the program. They should run once per iteration, i.e., with
+ * Mode.SingleShotTime.
+ * 
+ * The copies share the variables of the translated program, so the
+ * points-to analysis of the translated program is used for all of them.
+ */
+@State(Scope.Thread)
+public class InlinedProgram extends ProgramFixture {
+
+	private Program inlined;
+
+	public Program program;
+
+	@Setup(Level.Trial)
+	public void translateOnce() {
+		inlined = translateUntilInlining();
+		new CfgCallInliner(inlined).inlineFromMain(Options.v().getInlineMaxSize(), Options.v().getInlineCount());
+		inlined.removeUnreachableMethods();
+		FlowBasedPointsToAnalysis pta = new FlowBasedPointsToAnalysis();
+		pta.run(inlined);
+		SootToCfg.setPointsToAnalysis(pta);
+	}
+
+	@Setup(Level.Iteration)
+	public void copy() {
+		program = inlined.deepCopy();
+	}
+}
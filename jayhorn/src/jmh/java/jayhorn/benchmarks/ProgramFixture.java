@@ -0,0 +1,59 @@
+package jayhorn.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import jayhorn.test.Util;
+import soottocfg.cfg.Program;
+import soottocfg.soot.SootToCfg;
+
+/**
+ * Compiles one of the test programs from src/test/resources once per
+ * trial. Subclasses decide how often it is translated into a Program.
+ */
+@State(Scope.Benchmark)
+public abstract class ProgramFixture {
+
+	@Param({ "horn-encoding/classics/SatFibonacci01.java", "horn-encoding/mem_precision/SatInterproc.java",
+			"horn-encoding/arrays/SatTwoDimensional01.java" })
+	public String source;
+
+	protected File classDir;
+
+	@Setup(Level.Trial)
+	public void compile() throws IOException {
+		File sourceFile = new File(System.getProperty("user.dir") + "/src/test/resources/" + source);
+		if (!sourceFile.isFile()) {
+			throw new IllegalStateException("Cannot find " + sourceFile + ". Run the benchmarks from jayhorn/.");
+		}
+		classDir = Util.compileJavaFile(sourceFile);
+	}
+
+	/**
+	 * Runs the whole translation, i.e., the program that the checkers get.
+	 */
+	protected Program translate() {
+		soottocfg.Options.resetInstance();
+		SootToCfg soot2cfg = new SootToCfg();
+		soot2cfg.run(classDir.getAbsolutePath(), null);
+		return soot2cfg.getProgram();
+	}
+
+	/**
+	 * Runs the translation up to, but not including, inlining and
+	 * simplification, i.e., the program that these passes get in
+	 * SootToCfg.run.
+	 */
+	protected Program translateUntilInlining() {
+		soottocfg.Options.resetInstance();
+		SootToCfg soot2cfg = new SootToCfg();
+		soot2cfg.runUntilInlining(classDir.getAbsolutePath(), null);
+		return soot2cfg.getProgram();
+	}
+}
@@ -0,0 +1,23 @@
+package jayhorn.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soottocfg.cfg.Program;
+
+/**
+ * A program that is translated once per trial. Only for benchmarks that
+ * do not modify it.
+ */
+@State(Scope.Benchmark)
+public class TranslatedProgram extends ProgramFixture {
+
+	public Program program;
+
+	@Setup(Level.Trial)
+	public void translateOnce() {
+		program = translate();
+	}
+}
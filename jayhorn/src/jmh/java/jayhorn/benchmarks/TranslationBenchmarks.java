@@ -0,0 +1,76 @@
+package jayhorn.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import soottocfg.Options;
+import soottocfg.cfg.method.Method;
+import soottocfg.cfg.optimization.CfgCallInliner;
+import soottocfg.cfg.util.DataFlowUtils;
+import soottocfg.soot.memory_model.PushPullSimplifier;
+import soottocfg.soot.util.FlowBasedPointsToAnalysis;
+
+/**
+ * Benchmarks for the analyses and transformations on the CFG.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TranslationBenchmarks {
+
+	@Benchmark
+	public void blockLiveVariables(TranslatedProgram state, Blackhole bh) {
+		for (Method m : state.program.getMethods()) {
+			bh.consume(m.computeBlockLiveVariables());
+		}
+	}
+
+	@Benchmark
+	public void reachingDefinitions(TranslatedProgram state, Blackhole bh) {
+		for (Method m : state.program.getMethods()) {
+			bh.consume(DataFlowUtils.computeReachingDefinitions(m));
+		}
+	}
+
+	@Benchmark
+	public FlowBasedPointsToAnalysis pointsTo(TranslatedProgram state) {
+		FlowBasedPointsToAnalysis pta = new FlowBasedPointsToAnalysis();
+		pta.run(state.program);
+		return pta;
+	}
+
+	/**
+	 * Simplifies the program that the simplification gets in
+	 * SootToCfg.run, once per iteration.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 20)
+	@Measurement(iterations = 50)
+	public boolean pushPullSimplification(InlinedProgram state) {
+		return new PushPullSimplifier().simplify(state.program);
+	}
+
+	/**
+	 * Inlines the program that the inliner gets in SootToCfg.run, once
+	 * per iteration.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 20)
+	@Measurement(iterations = 50)
+	public void inlining(UninlinedProgram state) {
+		new CfgCallInliner(state.program).inlineFromMain(Options.v().getInlineMaxSize(),
+				Options.v().getInlineCount());
+	}
+}
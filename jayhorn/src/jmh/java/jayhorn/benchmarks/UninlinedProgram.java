@@ -0,0 +1,32 @@
+package jayhorn.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soottocfg.cfg.Program;
+
+/**
+ * A program that is translated once per trial up to, but not including,
+ * inlining. Every iteration gets a deep copy of it, so benchmarks may
+ * modify the program. They should run once per iteration, i.e., with
+ * Mode.SingleShotTime.
+ */
+@State(Scope.Thread)
+public class UninlinedProgram extends ProgramFixture {
+
+	private Program translated;
+
+	public Program program;
+
+	@Setup(Level.Trial)
+	public void translateOnce() {
+		translated = translateUntilInlining();
+	}
+
+	@Setup(Level.Iteration)
+	public void copy() {
+		program = translated.deepCopy();
+	}
+}
@@ -0,0 +1,364 @@
+package jayhorn;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.kohsuke.args4j.spi.StopOptionHandler;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Verifies a set of targets with jayhorn.Main, one worker JVM per target
+ * and up to -workers JVMs at the same time. The translation uses global
+ * state, so this is the only way to verify several programs in parallel.
+ *
+ * The targets are either all jar files and sub-directories of a directory,
+ * or listed in a manifest file with one target per line (lines starting
+ * with # are ignored). A target in the manifest may be followed by its
+ * expected verdict, SAFE or UNSAFE, and the runner then reports if the
+ * verdict is correct, imprecise, or unsound. All arguments after the
+ * options are passed to jayhorn.Main, e.g.,
+ *
+ * <pre>
+ * java -cp jayhorn.jar jayhorn.BatchRunner -targets corpus/ -workers 60 -o results.json -- -solver spacer
+ * </pre>
+ *
+ * The results of all targets are written to one JSON file.
+ */
+public class BatchRunner {
+
+	public static final String SAFE = "SAFE";
+	public static final String UNSAFE = "UNSAFE";
+	public static final String UNKNOWN = "UNKNOWN";
+	public static final String TIMEOUT = "TIMEOUT";
+	public static final String ERROR = "ERROR";
+
+	// the outcome of a target with an expected verdict.
+	public static final String CORRECT = "CORRECT";
+	public static final String IMPRECISE = "IMPRECISE";
+	public static final String UNSOUND = "UNSOUND";
+
+	@Option(name = "-targets", usage = "Directory of targets, or a file that lists one target per line", required = true)
+	private String targets;
+
+	@Option(name = "-workers", usage = "Number of worker JVMs. (Default is the number of cores)", required = false)
+	private int workers = Runtime.getRuntime().availableProcessors();
+
+	@Option(name = "-target-timeout", usage = "Timeout per target in seconds. Use 0 for no timeout. (Default is 0)", required = false)
+	private int targetTimeout = 0;
+
+	@Option(name = "-worker-memory", usage = "Maximum heap of each worker JVM, e.g., 2g", required = false)
+	private String workerMemory = null;
+
+	@Option(name = "-o", usage = "JSON file to which the results are written", required = false)
+	private String resultFile = "results.json";
+
+	@Option(name = "-logs", usage = "Directory in which the output of each worker is kept", required = false)
+	private String logDir = null;
+
+	@Option(name = "-metrics", usage = "Directory to which each worker writes its metrics as JSON", required = false)
+	private String metricsDir = null;
+
+	@Argument(usage = "Arguments that are passed to jayhorn.Main for every target")
+	@Option(name = "--", handler = StopOptionHandler.class, usage = "Arguments that are passed to jayhorn.Main for every target")
+	private List<String> jayhornArgs = new ArrayList<String>();
+
+	/**
+	 * A target and its expected verdict, which is null if it is not known.
+	 */
+	public static class Target {
+		public final String path;
+		public final String expected;
+
+		public Target(String path, String expected) {
+			this.path = path;
+			this.expected = expected;
+		}
+	}
+
+	/**
+	 * The outcome of one target. The fields are written to the JSON file.
+	 * The outcome is only set if the target has an expected verdict, and
+	 * the metrics file only if -metrics is given.
+	 */
+	public static class TargetResult {
+		public String target;
+		public String result;
+		public String expected;
+		public String outcome;
+		public String metrics;
+		public long millis;
+		public int exitCode;
+	}
+
+	public static class BatchResult {
+		public int workers;
+		public int targetTimeout;
+		public String workerMemory;
+		public List<String> jayhornArgs;
+		public long millis;
+		public Map<String, Integer> summary = new LinkedHashMap<String, Integer>();
+		public Map<String, Integer> outcomes = new LinkedHashMap<String, Integer>();
+		public List<TargetResult> results = new ArrayList<TargetResult>();
+	}
+
+	public static void main(String[] args) {
+		BatchRunner runner = new BatchRunner();
+		CmdLineParser parser = new CmdLineParser(runner);
+		try {
+			parser.parseArgument(args);
+		} catch (CmdLineException e) {
+			Log.error(e.toString());
+			Log.error("java -cp jayhorn.jar jayhorn.BatchRunner [options...] -targets [DIR, FILE] -- [jayhorn options]");
+			parser.printUsage(System.err);
+			return;
+		}
+		try {
+			BatchResult result = runner.run(collectTargets(Paths.get(runner.targets)));
+			runner.writeResult(result);
+			System.out.println(result.summary);
+			if (!result.outcomes.isEmpty()) {
+				System.out.println(result.outcomes);
+			}
+		} catch (IOException e) {
+			Log.error(e.toString());
+		}
+	}
+
+	/**
+	 * Returns all jar files and sub-directories of a directory, or the
+	 * targets listed in a manifest file.
+	 */
+	public static List<Target> collectTargets(Path targets) throws IOException {
+		List<Target> result = new LinkedList<Target>();
+		if (Files.isDirectory(targets)) {
+			File[] children = targets.toFile().listFiles();
+			Arrays.sort(children);
+			for (File child : children) {
+				if (child.isDirectory() || child.getName().endsWith(".jar")) {
+					result.add(new Target(child.getPath(), null));
+				}
+			}
+		} else {
+			for (String line : Files.readAllLines(targets, StandardCharsets.UTF_8)) {
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#")) {
+					result.add(parseManifestLine(line));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Splits a manifest line into the target and the expected verdict, if
+	 * the last word of the line is SAFE or UNSAFE.
+	 */
+	private static Target parseManifestLine(String line) {
+		final int split = Math.max(line.lastIndexOf(' '), line.lastIndexOf('\t'));
+		if (split > 0) {
+			final String verdict = line.substring(split + 1);
+			if (SAFE.equals(verdict) || UNSAFE.equals(verdict)) {
+				return new Target(line.substring(0, split).trim(), verdict);
+			}
+		}
+		return new Target(line, null);
+	}
+
+	/**
+	 * Verifies all targets and returns their results in the same order.
+	 */
+	public BatchResult run(List<Target> targetList) throws IOException {
+		final BatchResult batch = new BatchResult();
+		batch.workers = workers;
+		batch.targetTimeout = targetTimeout;
+		batch.workerMemory = workerMemory;
+		batch.jayhornArgs = jayhornArgs;
+		if (logDir != null) {
+			Files.createDirectories(Paths.get(logDir));
+		}
+		if (metricsDir != null) {
+			Files.createDirectories(Paths.get(metricsDir));
+		}
+		Log.info("Verifying " + targetList.size() + " targets with " + workers + " workers.");
+
+		Stopwatch timer = Stopwatch.createStarted();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, workers),
+				new ThreadFactoryBuilder().setNameFormat("batch-%d").setDaemon(true).build());
+		try {
+			List<Future<TargetResult>> futures = new ArrayList<Future<TargetResult>>();
+			int num = 0;
+			for (final Target target : targetList) {
+				final int id = num++;
+				futures.add(executor.submit(new Callable<TargetResult>() {
+					@Override
+					public TargetResult call() throws Exception {
+						return verify(target, id);
+					}
+				}));
+			}
+			for (Future<TargetResult> future : futures) {
+				TargetResult result = future.get();
+				Log.info(result.target + ": " + result.result + " (" + result.millis + "ms)");
+				batch.results.add(result);
+				increment(batch.summary, result.result);
+				if (result.outcome != null) {
+					increment(batch.outcomes, result.outcome);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		batch.millis = timer.stop().elapsed(TimeUnit.MILLISECONDS);
+		return batch;
+	}
+
+	private static void increment(Map<String, Integer> counts, String key) {
+		Integer count = counts.get(key);
+		counts.put(key, count == null ? 1 : count + 1);
+	}
+
+	private TargetResult verify(Target target, int id) throws IOException, InterruptedException {
+		TargetResult result = new TargetResult();
+		result.target = target.path;
+		result.expected = target.expected;
+		final String name = id + "_" + Paths.get(target.path).getFileName();
+
+		List<String> command = new ArrayList<String>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		if (workerMemory != null) {
+			command.add("-Xmx" + workerMemory);
+		}
+		command.add("-Djava.library.path=" + System.getProperty("java.library.path"));
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Main.class.getName());
+		command.add("-j");
+		command.add(target.path);
+		if (metricsDir != null) {
+			result.metrics = Paths.get(metricsDir, name + ".json").toString();
+			command.add("-metrics-json");
+			command.add(result.metrics);
+		}
+		command.addAll(jayhornArgs);
+
+		// write the output to a file, so the worker never blocks on a full pipe.
+		final Path log;
+		if (logDir != null) {
+			log = Paths.get(logDir, name + ".log");
+		} else {
+			log = Files.createTempFile("jayhorn-batch", ".log");
+		}
+		ProcessBuilder pb = new ProcessBuilder(command);
+		pb.redirectErrorStream(true);
+		pb.redirectOutput(log.toFile());
+
+		Stopwatch timer = Stopwatch.createStarted();
+		Process process = pb.start();
+		try {
+			boolean finished;
+			if (targetTimeout > 0) {
+				finished = process.waitFor(targetTimeout, TimeUnit.SECONDS);
+			} else {
+				process.waitFor();
+				finished = true;
+			}
+			result.millis = timer.stop().elapsed(TimeUnit.MILLISECONDS);
+			if (!finished) {
+				result.result = TIMEOUT;
+				result.exitCode = -1;
+			} else {
+				result.exitCode = process.exitValue();
+				result.result = parseVerdict(Files.readAllLines(log, StandardCharsets.UTF_8));
+				if (result.exitCode != 0 && UNKNOWN.equals(result.result)) {
+					result.result = ERROR;
+				}
+			}
+			result.outcome = outcome(result.expected, result.result);
+			return result;
+		} finally {
+			process.destroyForcibly();
+			if (logDir == null) {
+				Files.deleteIfExists(log);
+			}
+		}
+	}
+
+	/**
+	 * Finds the verdict in the output of jayhorn.Main, with or without -stats.
+	 */
+	private static String parseVerdict(List<String> lines) {
+		for (String line : lines) {
+			line = line.trim();
+			if (SAFE.equals(line) || UNSAFE.equals(line)) {
+				return line;
+			}
+			if (line.endsWith("FinalResult " + SAFE)) {
+				return SAFE;
+			}
+			if (line.endsWith("FinalResult " + UNSAFE)) {
+				return UNSAFE;
+			}
+		}
+		return UNKNOWN;
+	}
+
+	/**
+	 * Compares the verdict with the expected one. A target without a
+	 * verdict, e.g., because of a timeout, is imprecise, and a target that
+	 * crashed is an error.
+	 */
+	private static String outcome(String expected, String verdict) {
+		if (expected == null) {
+			return null;
+		} else if (expected.equals(verdict)) {
+			return CORRECT;
+		} else if (ERROR.equals(verdict)) {
+			return ERROR;
+		} else if (SAFE.equals(verdict)) {
+			return UNSOUND;
+		}
+		return IMPRECISE;
+	}
+
+	private void writeResult(BatchResult result) throws IOException {
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		Path file = Paths.get(resultFile);
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			gson.toJson(result, writer);
+		}
+		Log.info("Results written to " + file);
+	}
+}
@@ -10,14 +10,21 @@ import org.kohsuke.args4j.CmdLineParser;
 import com.google.common.base.Stopwatch;
 
 import jayhorn.checker.EldaricaChecker;
+import jayhorn.checker.PortfolioChecker;
 import jayhorn.checker.SpacerChecker;
+import jayhorn.hornify.HornHelper;
+import jayhorn.hornify.encoder.S2H;
 import jayhorn.solver.ProverFactory;
 import jayhorn.solver.princess.PrincessProverFactory;
 import jayhorn.solver.spacer.SpacerProverFactory;
+import jayhorn.utils.GhostRegister;
 import jayhorn.utils.Stats;
+import jayhorn.utils.VerificationCache;
 import soottocfg.cfg.Program;
+import soottocfg.cfg.expression.ExpressionFactory;
 import soottocfg.soot.SootToCfg;
 import soottocfg.soot.SootToCfg.MemModel;
+import soottocfg.soot.util.SootTranslationHelpers;
 
 public class Main {
 	
@@ -53,18 +60,34 @@ public class Main {
   		soot2cfg.run(Options.v().getJavaInput(), Options.v().getClasspath());	
   	
   		Program program = soot2cfg.getProgram();
-  	    Stats.stats().add("SootToCFG", String.valueOf(sootTocfgTimer.stop()));
+  	    Stats.stats().addTime("SootToCFG", sootTocfgTimer.stop());
   		
+  		VerificationCache cache = null;
+  		Boolean cachedResult = null;
+  		if (Options.v().getCacheDir() != null) {
+  			cache = new VerificationCache(Paths.get(Options.v().getCacheDir()), Options.v().getJavaInput());
+  			cachedResult = cache.lookup(program);
+  		}
+
   		Log.info("Safety Verification ... ");
 
   		boolean result=false;
-  		if ("spacer".equals(Options.v().getSolver())){
+  		if (cachedResult != null) {
+  			Stats.stats().add("CacheHit", "true");
+  			result = cachedResult;
+  		} else if ("spacer".equals(Options.v().getSolver())){
   			SpacerChecker spacer = new SpacerChecker(factory);
   			result = spacer.checkProgram(program);
+  		} else if ("portfolio".equals(Options.v().getSolver())) {
+  			PortfolioChecker portfolio = new PortfolioChecker(new PrincessProverFactory(), new SpacerProverFactory());
+  			result = portfolio.checkProgram(program);
   		} else{
   			EldaricaChecker eldarica = new EldaricaChecker(factory);
   			result = eldarica.checkProgram(program);
   		}
+  		if (cache != null && cachedResult == null) {
+  			cache.store(result);
+  		}
   		String prettyResult = parseResult(Options.v().getSolver(), result);
   		Stats.stats().add("FinalResult", prettyResult);
 
@@ -73,9 +96,26 @@ public class Main {
 		}else{
 			System.out.println(prettyResult);
 		}
+		Stats.stats().writeMetrics();
 		return result;
       }
     
+	/**
+	 * Resets everything that belongs to a single program, so that the
+	 * next program can be verified in the same JVM. See Server.
+	 */
+	public static void resetState() {
+		Options.resetInstance();
+		soottocfg.Options.resetInstance();
+		Stats.resetInstance();
+		S2H.resetInstance();
+		HornHelper.resetInstance();
+		GhostRegister.reset();
+		ExpressionFactory.resetInstance();
+		SootTranslationHelpers.INSTANCE.reset();
+		soot.G.reset();
+	}
+
 	public static void main(String[] args) {
 		
 		Options options = Options.v();
@@ -89,6 +129,9 @@ public class Main {
 				factory = new SpacerProverFactory();
 			} else if ("eldarica".equals(Options.v().getSolver())) {
 				factory = new PrincessProverFactory();
+			} else if ("portfolio".equals(Options.v().getSolver())) {
+				// the portfolio checker creates one factory per solver.
+				factory = null;
 			} else {
 				throw new RuntimeException("Don't know solver " + Options.v().getSolver() + ". Using Eldarica instead.");
 			}
@@ -114,6 +157,7 @@ public class Main {
 			Log.error(t.toString());
 			Stats.stats().add("Result", "UNKNOWN");
 			if (Options.v().stats){ Stats.stats().printStats(); }
+			Stats.stats().writeMetrics();
 			throw t;	
 		} finally {
 			Options.resetInstance();
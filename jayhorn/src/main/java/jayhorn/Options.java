@@ -55,7 +55,7 @@ public class Options {
 		return checker;
 	}
 
-	@Option(name = "-solver", usage = "Select a solver [eldarica or spacer]", required = false)
+	@Option(name = "-solver", usage = "Select a solver [eldarica, spacer, or portfolio]", required = false)
 	private String solver = "eldarica";
 
 	public String getSolver() {
@@ -117,12 +117,49 @@ public class Options {
 	@Option(name = "-stats", usage = "Generate Stats", required = false)
 	public boolean stats = false;
 	
+	@Option(name = "-metrics-json", usage = "Write timers, counters, and histograms of all phases to this JSON file", required = false)
+	private String metricsJson = null;
+
+	public String getMetricsJson() {
+		return metricsJson;
+	}
+
+	public void setMetricsJson(String file) {
+		this.metricsJson = file;
+	}
+
+	@Option(name = "-metrics-prom", usage = "Write timers, counters, and histograms of all phases to this file in Prometheus text format", required = false)
+	private String metricsPrometheus = null;
+
+	public String getMetricsPrometheus() {
+		return metricsPrometheus;
+	}
+
+	public void setMetricsPrometheus(String file) {
+		this.metricsPrometheus = file;
+	}
+
 	@Option(name = "-solution", usage = "Output full solution or counter-example", required = false)
 	public boolean solution = false;
 
 	@Option(name = "-dotCEX", usage = "Output counter-examples in GraphViz format", required = false)
 	public boolean dotCEX = false;
 	
+	@Option(name = "-intern-expressions", usage = "Share one instance between structurally equal CFG expressions", required = false)
+	private boolean internExpressions = false;
+
+	@Option(name = "-parallel-encoding", usage = "Run the liveness analysis of the Horn encoding on all cores", required = false)
+	public boolean parallelEncoding = false;
+
+	@Option(name = "-parallel-transform", usage = "Apply the per-method Jimple transformations on all cores", required = false)
+	private boolean parallelTransformations = false;
+
+	@Option(name = "-parallel-cfg", usage = "Translate the method bodies into CFGs on all cores", required = false)
+	private boolean parallelCfgConstruction = false;
+
+	@Option(name = "-cs-pushpull", usage = "Compute the pushs that reach a pull with per-call-site method summaries", required = false)
+	private boolean contextSensitivePullPushOrdering = false;
+
 	@Option(name = "-cid", usage = "Insert call IDs variables to track calling context into pull and push statements", required = false)
 	public boolean useCallIDs = false;
 
@@ -181,6 +218,28 @@ public class Options {
 		this.out = s;
 	}
 
+	@Option(name = "-out-gzip", usage = "Compress the intermediate representations written to -out", required = false)
+	private boolean outGzip = false;
+
+	public boolean getOutGzip() {
+		return this.outGzip;
+	}
+
+	public void setOutGzip(boolean b) {
+		this.outGzip = b;
+	}
+
+	@Option(name = "-cache", usage = "Directory in which verification results are cached between runs", required = false)
+	private String cacheDir = null;
+
+	public String getCacheDir() {
+		return this.cacheDir;
+	}
+
+	public void setCacheDir(String dir) {
+		this.cacheDir = dir;
+	}
+
 	/*
 	 * Memory precision
 	 */
@@ -220,6 +279,24 @@ public class Options {
 	@Option(name = "-inline_count", usage = "Inline everything that's called less than N times", required = false)
 	private int inlineCount = -1;
 
+	@Option(name = "-inline_budget", usage = "Inline the most profitable calls until the program grew by N percent. Replaces -inline_size and -inline_count", required = false)
+	private int inlineBudget = -1;
+
+	/**
+	 * @return the inlineBudget
+	 */
+	public int getInlineBudget() {
+		return inlineBudget;
+	}
+
+	/**
+	 * @param inlineBudget the inlineBudget to set
+	 */
+	public void setInlineBudget(int inlineBudget) {
+		this.inlineBudget = inlineBudget;
+		soottocfg.Options.v().setInlineBudget(inlineBudget);
+	}
+
 	
 	/**
 	 * Classpath
@@ -238,7 +315,18 @@ public class Options {
 		this.timeout = seconds;
 	}
 
-	
+	@Option(name = "-spacer-workers", usage = "Number of properties that Spacer checks in parallel, each in its own context. (Default is 1)", required = false)
+	private int spacerWorkers = 1;
+
+	public int getSpacerWorkers() {
+		return this.spacerWorkers;
+	}
+
+	public void setSpacerWorkers(int workers) {
+		this.spacerWorkers = workers;
+	}
+
+
 	@Option(name = "-rta", usage = "Automatically inserts runtime assertions for Null deref, array bounds, and illegal casts.")
 	private boolean insertRuntimeAssertions = false;
 
@@ -283,8 +371,13 @@ public class Options {
 //		soottocfg.Options.v().setPrintCFG(printCFG);
 		soottocfg.Options.v().setInlineMaxSize(inlineMaxSize);
 		soottocfg.Options.v().setInlineCount(inlineCount);
+		soottocfg.Options.v().setInlineBudget(inlineBudget);
 		soottocfg.Options.v().setArrayInv(!disableArrayInv);
 		soottocfg.Options.v().setExactArrayElements(exactArrayElements);
+		soottocfg.Options.v().setInternExpressions(internExpressions);
+		soottocfg.Options.v().setParallelTransformations(parallelTransformations);
+		soottocfg.Options.v().setParallelCfgConstruction(parallelCfgConstruction);
+		soottocfg.Options.v().setContextSensitivePullPushOrdering(contextSensitivePullPushOrdering);
 	}
 	
 	/**
@@ -0,0 +1,142 @@
+package jayhorn;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import com.google.common.base.Stopwatch;
+
+import jayhorn.utils.Stats;
+
+/**
+ * Verifies many programs in one JVM, so that we pay for starting the JVM,
+ * loading Soot, Princess, and Z3, and warming up the JIT only once.
+ *
+ * Each input line is one job and contains the command line arguments of
+ * jayhorn.Main, e.g., "-j foo.jar -solver spacer". Arguments are separated
+ * by whitespace. For each job, the server prints one line
+ *
+ * <pre>
+ * input TAB result TAB milliseconds
+ * </pre>
+ *
+ * where result is SAFE, UNSAFE, UNKNOWN, or ERROR. Everything the job
+ * itself prints goes to stderr.
+ *
+ * Jobs read from stdin until EOF or, with -port, from connections to a
+ * socket on the loopback interface until a client sends "shutdown". Jobs
+ * run one at a time because the translation uses global state, which is
+ * reset before every job (see Main.resetState).
+ */
+public class Server {
+
+	public static final String SHUTDOWN = "shutdown";
+
+	@Option(name = "-port", usage = "Listen on this local port instead of reading jobs from stdin", required = false)
+	private int port = -1;
+
+	public static void main(String[] args) {
+		Server server = new Server();
+		CmdLineParser parser = new CmdLineParser(server);
+		try {
+			parser.parseArgument(args);
+		} catch (CmdLineException e) {
+			Log.error(e.toString());
+			Log.error("java -cp jayhorn.jar jayhorn.Server [-port N]");
+			parser.printUsage(System.err);
+			return;
+		}
+		try {
+			if (server.port >= 0) {
+				server.serve(server.port);
+			} else {
+				server.handle(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+						new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true));
+			}
+		} catch (IOException e) {
+			Log.error(e.toString());
+		}
+	}
+
+	private void serve(int port) throws IOException {
+		try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			Log.info("JayHorn server listening on port " + serverSocket.getLocalPort());
+			boolean shutdown = false;
+			while (!shutdown) {
+				try (Socket socket = serverSocket.accept()) {
+					shutdown = handle(
+							new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)),
+							new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8),
+									true));
+				} catch (IOException e) {
+					Log.error("Connection failed: " + e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the jobs from in until EOF or until a shutdown request.
+	 * @return true if a shutdown was requested.
+	 */
+	private boolean handle(BufferedReader in, PrintWriter out) throws IOException {
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty()) {
+				continue;
+			}
+			if (SHUTDOWN.equals(line)) {
+				return true;
+			}
+			out.println(runJob(line.split("\\s+")));
+		}
+		return false;
+	}
+
+	private String runJob(String[] args) {
+		final PrintStream stdout = System.out;
+		final Level level = Log.v().getLevel();
+		Main.resetState();
+		Stopwatch timer = Stopwatch.createStarted();
+		String result;
+		try {
+			System.setOut(System.err);
+			Main.main(args);
+			result = Stats.stats().get("FinalResult");
+		} catch (Throwable t) {
+			result = Stats.stats().get("Result");
+		} finally {
+			System.setOut(stdout);
+			Log.v().setLevel(level);
+		}
+		if (result == null) {
+			result = "ERROR";
+		}
+		// free the memory of the last program while we wait for the next job.
+		Main.resetState();
+		return javaInput(args) + "\t" + result + "\t" + timer.stop().elapsed(TimeUnit.MILLISECONDS);
+	}
+
+	private static String javaInput(String[] args) {
+		for (int i = 0; i + 1 < args.length; i++) {
+			if ("-j".equals(args[i])) {
+				return args[i + 1];
+			}
+		}
+		return null;
+	}
+}
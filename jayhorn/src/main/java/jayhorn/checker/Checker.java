@@ -1,9 +1,16 @@
 package jayhorn.checker;
 
 
+import com.google.common.base.Verify;
+
+import jayhorn.Log;
+import jayhorn.Options;
 import jayhorn.hornify.HornHelper;
 import jayhorn.hornify.encoder.S2H;
+import jayhorn.utils.GhostRegister;
+import jayhorn.utils.HeapCounterTransformer;
 import soottocfg.cfg.Program;
+import soottocfg.cfg.type.IntType;
 
 
 /**
@@ -12,14 +19,41 @@ import soottocfg.cfg.Program;
 
 
 public abstract class Checker {
-	
+
 	public Checker() {
 		S2H.resetInstance();
 		HornHelper.resetInstance();
 	}
-	
+
 	public abstract boolean checkProgram(Program program);
-}
 
+	/**
+	 * Registers the ghost variables and inserts the heap counter that
+	 * the Horn encoding expects. This modifies the program and must
+	 * only be done once per program.
+	 * @param program
+	 */
+	protected void prepareProgram(Program program) {
+		GhostRegister.reset();
+
+		if (soottocfg.Options.v().memPrecision() >= 2) {
+			GhostRegister.v().ghostVariableMap.put("pushID", IntType.instance());
+		}
+
+		if (Options.v().useCallIDs) {
+			Log.info("Inserting call IDs  ... ");
+			Verify.verify(false, "Don't run this for now!");
+//			CallingContextTransformer cct = new CallingContextTransformer();
+//			cct.transform(program);
+		}
+
+		HeapCounterTransformer hct = new HeapCounterTransformer();
+		hct.transform(program);
+
+		if (Options.v().printCFG) {
+			System.out.println(program);
+		}
+	}
+}
 
 
@@ -11,24 +11,21 @@ import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
-import com.google.common.base.Verify;
 
 import jayhorn.Log;
 import jayhorn.Options;
 import jayhorn.hornify.HornEncoderContext;
 import jayhorn.hornify.HornPredicate;
 import jayhorn.hornify.Hornify;
+import jayhorn.hornify.encoder.S2H;
 import jayhorn.solver.Prover;
 import jayhorn.solver.ProverExpr;
 import jayhorn.solver.ProverFactory;
 import jayhorn.solver.ProverHornClause;
 import jayhorn.solver.ProverResult;
-import jayhorn.utils.GhostRegister;
-import jayhorn.utils.HeapCounterTransformer;
 import jayhorn.utils.Stats;
 import soottocfg.cfg.Program;
 import soottocfg.cfg.method.Method;
-import soottocfg.cfg.type.IntType;
 import soottocfg.cfg.variable.ClassVariable;
 import soottocfg.cfg.variable.Variable;
 
@@ -39,6 +36,8 @@ public class EldaricaChecker extends Checker{
 
 	private ProverFactory factory;
 	private Prover prover;
+	private HornEncoderContext hornContext;
+	private boolean solveInBackground = false;
 
 	public EldaricaChecker(ProverFactory factory) {
 		this.factory = factory;
@@ -50,31 +49,34 @@ public class EldaricaChecker extends Checker{
 		Preconditions.checkNotNull(program.getEntryPoint(),
 				"The program has no entry points and thus is trivially verified.");	
 
-		GhostRegister.reset();
-		
-		if (soottocfg.Options.v().memPrecision() >= 2) {
-			GhostRegister.v().ghostVariableMap.put("pushID", IntType.instance());
-		}
-		
-		if (Options.v().useCallIDs) {
-			Log.info("Inserting call IDs  ... ");
-			Verify.verify(false, "Don't run this for now!");
-//			CallingContextTransformer cct = new CallingContextTransformer();
-//			cct.transform(program);
-		}
-		
-		HeapCounterTransformer hct = new HeapCounterTransformer();
-		hct.transform(program);
-		
-		if (Options.v().printCFG) {
-			System.out.println(program);
-		}
-		
+		prepareProgram(program);
+		encode(program);
+		return solve();
+	}
+
+	/**
+	 * Run the solver on a separate thread even if no timeout is set, so
+	 * that the thread calling solve can be interrupted.
+	 * @param b
+	 */
+	void setSolveInBackground(boolean b) {
+		this.solveInBackground = b;
+	}
+
+	/**
+	 * Translates the (already prepared) program into Horn clauses for
+	 * the prover of this checker, including the clause for the entry
+	 * point.
+	 * @param program
+	 */
+	void encode(Program program) {
 		Log.info("Hornify  ... ");
+		// another back-end may have encoded the same program before.
+		S2H.sh().resetEncoding();
 		Hornify hf = new Hornify(factory);
 		Stopwatch toHornTimer = Stopwatch.createStarted();
-		HornEncoderContext hornContext = hf.toHorn(program);
-		Stats.stats().add("ToHorn", String.valueOf(toHornTimer.stop()));
+		hornContext = hf.toHorn(program);
+		Stats.stats().addTime("ToHorn", toHornTimer.stop());
 		prover = hf.getProver();
 		allClauses.addAll(hf.clauses);
 
@@ -82,23 +84,29 @@ public class EldaricaChecker extends Checker{
 			System.out.println(hf.writeHorn());
 		}
 
-		ProverResult result = ProverResult.Unknown;
-		try {			
-			final Method entryPoint = program.getEntryPoint();
+		final Method entryPoint = program.getEntryPoint();
+		Log.info("Running from entry point: " + entryPoint.getMethodName());
+		// add an entry clause from the preconditions
+		final HornPredicate entryPred = hornContext.getMethodContract(entryPoint).precondition;
+		Map<Variable, ProverExpr> initialState = new HashMap<Variable, ProverExpr>();
+		//Set the heap counter initially to one (because 0 is reserved for null)
 
-			Log.info("Running from entry point: " + entryPoint.getMethodName());
-			prover.push();
-			// add an entry clause from the preconditions
-			final HornPredicate entryPred = hornContext.getMethodContract(entryPoint).precondition;
-			Map<Variable, ProverExpr> initialState = new HashMap<Variable, ProverExpr>();
-			//Set the heap counter initially to one (because 0 is reserved for null)
+		final ProverExpr entryAtom = entryPred.instPredicate(initialState);
 
-			final ProverExpr entryAtom = entryPred.instPredicate(initialState);
+		final ProverHornClause entryClause = prover.mkHornClause(entryAtom, new ProverExpr[0],
+				prover.mkLiteral(true));
 
-			final ProverHornClause entryClause = prover.mkHornClause(entryAtom, new ProverExpr[0],
-					prover.mkLiteral(true));
+		allClauses.add(entryClause);
+	}
 
-			allClauses.add(entryClause);
+	/**
+	 * Checks the clauses produced by encode.
+	 * @return true if the program is safe, false otherwise.
+	 */
+	boolean solve() {
+		ProverResult result = ProverResult.Unknown;
+		try {			
+			prover.push();
 
 			Hornify.hornToSMTLIBFile(allClauses, 0, prover);
 			Hornify.hornToFile(allClauses, 0);
@@ -111,13 +119,16 @@ public class EldaricaChecker extends Checker{
 				int timeoutInMsec = (int) TimeUnit.SECONDS.toMillis(jayhorn.Options.v().getTimeout());
 				prover.checkSat(false);
 				result = prover.getResult(timeoutInMsec);
+			} else if (solveInBackground) {
+				prover.checkSat(false);
+				result = prover.getResult(Long.MAX_VALUE);
 			} else {
 				result = prover.checkSat(true);
 			}
 			if (Options.v().solution) {
 				Log.info(printHeapInvariants(hornContext));
 			}
-			Stats.stats().add("CheckSatTime", String.valueOf(satTimer.stop()));
+			Stats.stats().addTime("CheckSatTime", satTimer.stop());
 
 			allClauses.remove(allClauses.size() - 1);
 			prover.pop();
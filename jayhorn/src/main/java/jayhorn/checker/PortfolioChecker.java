@@ -0,0 +1,109 @@
+package jayhorn.checker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import jayhorn.Log;
+import jayhorn.solver.ProverFactory;
+import jayhorn.utils.Stats;
+import soottocfg.cfg.Program;
+
+/**
+ * Races Eldarica and Spacer on the same program and returns the
+ * verdict of whichever solver finishes first. The other solver is
+ * cancelled.
+ *
+ * Horn clauses are tied to the prover that created them, so each
+ * back-end gets its own encoding of the program. The encoding is done
+ * sequentially because Hornify uses global state, which each back-end
+ * resets before its encoding; only the solving runs in parallel.
+ */
+public class PortfolioChecker extends Checker {
+
+	private final EldaricaChecker eldarica;
+	private final SpacerChecker spacer;
+	private String winner = null;
+
+	public PortfolioChecker(ProverFactory eldaricaFactory, ProverFactory spacerFactory) {
+		this.eldarica = new EldaricaChecker(eldaricaFactory);
+		this.spacer = new SpacerChecker(spacerFactory);
+	}
+
+	/**
+	 * Returns the name of the solver that produced the last verdict, or
+	 * null if no solver has produced one yet.
+	 * @return
+	 */
+	public String getWinner() {
+		return winner;
+	}
+
+	public boolean checkProgram(Program program) {
+		Preconditions.checkNotNull(program.getEntryPoint(),
+				"The program has no entry points and thus is trivially verified.");
+
+		prepareProgram(program);
+		eldarica.encode(program);
+		spacer.encode(program);
+		// make sure that cancelling a solver interrupts a thread that
+		// waits on a future instead of a thread inside a native call.
+		eldarica.setSolveInBackground(true);
+		spacer.setSolveInBackground(true);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2,
+				new ThreadFactoryBuilder().setNameFormat("portfolio-%d").setDaemon(true).build());
+		CompletionService<Boolean> completion = new ExecutorCompletionService<Boolean>(executor);
+		Map<Future<Boolean>, String> solvers = new LinkedHashMap<Future<Boolean>, String>();
+		solvers.put(completion.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return eldarica.solve();
+			}
+		}), "eldarica");
+		solvers.put(completion.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return spacer.solve();
+			}
+		}), "spacer");
+
+		Stopwatch satTimer = Stopwatch.createStarted();
+		Throwable lastFailure = null;
+		try {
+			for (int i = 0; i < solvers.size(); i++) {
+				Future<Boolean> done = completion.take();
+				try {
+					boolean result = done.get();
+					winner = solvers.get(done);
+					Log.info("Portfolio result from " + winner);
+					Stats.stats().add("PortfolioWinner", winner);
+					Stats.stats().addTime("CheckSatTime", satTimer.stop());
+					return result;
+				} catch (ExecutionException e) {
+					Log.info(solvers.get(done) + " failed: " + e.getCause());
+					lastFailure = e.getCause();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} finally {
+			for (Future<Boolean> f : solvers.keySet()) {
+				f.cancel(true);
+			}
+			executor.shutdownNow();
+		}
+		throw new RuntimeException("No solver in the portfolio produced a result.", lastFailure);
+	}
+}
@@ -4,14 +4,22 @@
 package jayhorn.checker;
 
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
-import com.google.common.base.Verify;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import jayhorn.Log;
 import jayhorn.Options;
@@ -24,12 +32,10 @@ import jayhorn.solver.ProverExpr;
 import jayhorn.solver.ProverFactory;
 import jayhorn.solver.ProverHornClause;
 import jayhorn.solver.ProverResult;
-import jayhorn.utils.GhostRegister;
-import jayhorn.utils.HeapCounterTransformer;
+import jayhorn.solver.spacer.SpacerProver;
 import jayhorn.utils.Stats;
 import soottocfg.cfg.Program;
 import soottocfg.cfg.method.Method;
-import soottocfg.cfg.type.IntType;
 import soottocfg.cfg.variable.Variable;
 
 /**
@@ -47,6 +53,9 @@ public class SpacerChecker extends Checker{
 	// Collect all the results
 	private Map<ProverExpr, ProverResult> results = new HashMap<ProverExpr, ProverResult>();
 	private List<ProverHornClause> allClauses = new LinkedList<ProverHornClause>();
+	// error states and their source lines, copied from S2H after encoding
+	private Map<ProverExpr, Integer> errorStates = new LinkedHashMap<ProverExpr, Integer>();
+	private boolean solveInBackground = false;
 	
 	public Prover getProver(){
 		return prover;
@@ -56,57 +65,65 @@ public class SpacerChecker extends Checker{
 		Preconditions.checkNotNull(program.getEntryPoint(),
 				"The program has no entry points and thus is trivially verified.");	
 
-		GhostRegister.reset();
-		
-		if (soottocfg.Options.v().memPrecision() >= 2) {
-			GhostRegister.v().ghostVariableMap.put("pushID", IntType.instance());
-		}
-		
-		if (Options.v().useCallIDs) {
-			Log.info("Inserting call IDs  ... ");
-			Verify.verify(false, "Don't run this for now!");
-//			CallingContextTransformer cct = new CallingContextTransformer();
-//			cct.transform(program);
-		}
-		
-		HeapCounterTransformer hct = new HeapCounterTransformer();
-		hct.transform(program);
-		
-		if (Options.v().printCFG) {
-			System.out.println(program);
-		}
-		
+		prepareProgram(program);
+		encode(program);
+		return solve();
+	}
+
+	/**
+	 * Run the queries on a separate thread even if no timeout is set, so
+	 * that the thread calling solve can be interrupted.
+	 * @param b
+	 */
+	void setSolveInBackground(boolean b) {
+		this.solveInBackground = b;
+	}
+
+	/**
+	 * Translates the (already prepared) program into Horn clauses and
+	 * adds them as rules to the prover of this checker.
+	 * @param program
+	 */
+	void encode(Program program) {
 		Log.info("Hornify  ... ");
+		// another back-end may have encoded the same program before.
+		S2H.sh().resetEncoding();
 		Hornify hf = new Hornify(factory);
 		Stopwatch toHornTimer = Stopwatch.createStarted();
 		HornEncoderContext hornContext = hf.toHorn(program);
-		Stats.stats().add("CfgToHorn", String.valueOf(toHornTimer.stop()));
+		Stats.stats().addTime("CfgToHorn", toHornTimer.stop());
 		prover = hf.getProver();
 		//tsClauses = S2H.sh().getTransitionRelationClause();
 		//propertyClauses = S2H.sh().getPropertyClause();
 		allClauses.addAll(hf.clauses);
-				
+		errorStates.putAll(S2H.sh().getErrorState());
 
-		ProverResult result = ProverResult.Unknown;
-		try {			
-			final Method entryPoint = program.getEntryPoint();
-			Log.info("Running from entry point: " + entryPoint.getMethodName());
-			final HornPredicate entryPred = hornContext.getMethodContract(entryPoint).precondition;
-			final ProverExpr entryAtom = entryPred.instPredicate(new HashMap<Variable, ProverExpr>());
+		final Method entryPoint = program.getEntryPoint();
+		Log.info("Running from entry point: " + entryPoint.getMethodName());
+		final HornPredicate entryPred = hornContext.getMethodContract(entryPoint).precondition;
+		final ProverExpr entryAtom = entryPred.instPredicate(new HashMap<Variable, ProverExpr>());
 
-			final ProverHornClause entryClause = prover.mkHornClause(entryAtom, new ProverExpr[0],
-					prover.mkLiteral(true));
-			allClauses.add(entryClause);
+		final ProverHornClause entryClause = prover.mkHornClause(entryAtom, new ProverExpr[0],
+				prover.mkLiteral(true));
+		allClauses.add(entryClause);
 
-			for (ProverHornClause clause : allClauses){
-				prover.addRule(clause);
-			}
-			
-			if (Options.v().getPrintHorn()) {
-				//System.out.println(hf.writeHorn());
-				prover.printRules();
-			}
-			
+		for (ProverHornClause clause : allClauses){
+			prover.addRule(clause);
+		}
+
+		if (Options.v().getPrintHorn()) {
+			//System.out.println(hf.writeHorn());
+			prover.printRules();
+		}
+	}
+
+	/**
+	 * Queries the reachability of each error state added by encode.
+	 * @return true if no error state is reachable, false otherwise.
+	 */
+	boolean solve() {
+		ProverResult result = ProverResult.Unknown;
+		try {			
 			// Bounds Check
 //			if (Options.v().getHeapLimit() > -1) {
 //				HeapBoundsCheck bc = new HeapBoundsCheck(prover);
@@ -125,37 +142,25 @@ public class SpacerChecker extends Checker{
 //			}
 			Log.info("Checking properties");
 			Stopwatch satTimer = Stopwatch.createStarted();
-			if (S2H.sh().getErrorState().isEmpty()){
+			if (errorStates.isEmpty()){
 				Stats.stats().add("Warning", "No assertions found.");
 				return true;
 			}
 			
 
-			for (Map.Entry<ProverExpr, Integer> props : S2H.sh().getErrorState().entrySet()) {
-			    ProverExpr prop = props.getKey();
-			    if (jayhorn.Options.v().getTimeout() > 0) {
-					int timeoutInMsec = (int) TimeUnit.SECONDS.toMillis(jayhorn.Options.v().getTimeout());
-					prover.query(prop, true);
-					result = prover.getResult(timeoutInMsec);
-				} else {
-					result = prover.query(prop, false);
+			if (Options.v().getSpacerWorkers() > 1 && errorStates.size() > 1 && prover instanceof SpacerProver) {
+				queryInParallel(Options.v().getSpacerWorkers());
+			} else {
+				for (Map.Entry<ProverExpr, Integer> props : errorStates.entrySet()) {
+					ProverExpr prop = props.getKey();
+					result = query(prover, prop, solveInBackground);
+					reportResult(prover, props.getValue(), result);
+					results.put(prop, result);
 				}
-			    String propLine = "Property@Line"+props.getValue();
-			    if (result == ProverResult.Unsat) {
-			    	Stats.stats().add(propLine, "SAFE");
-			    } else if (result == ProverResult.Sat){
-			    	Stats.stats().add(propLine, "UNSAFE");
-			    	if (Options.v().solution){
-			    		cex();
-			    	}
-			    } else {
-			    	Stats.stats().add(propLine, "ERROR");
-			    }
-				results.put(prop, result);
 			}
 
 			
-			Stats.stats().add("CheckSatTime", String.valueOf(satTimer.stop()));
+			Stats.stats().addTime("CheckSatTime", satTimer.stop());
 			
 		} catch (Throwable t) {
 			
@@ -170,16 +175,108 @@ public class SpacerChecker extends Checker{
 			if (res == ProverResult.Sat){
 				return false;
 			}else if(res != ProverResult.Unsat){
-				throw new RuntimeException("Verification failed with prover code " + result);
+				throw new RuntimeException("Verification failed with prover code " + res);
 			}
 		}
 
 		return true;
 	}
 
-	private void cex(){
+	/**
+	 * Checks the error states concurrently, using at most
+	 * <code>workers</code> threads. A Z3 context must not be used by
+	 * several threads, so every query runs on a copy of the prover with
+	 * its own context. The copies are created on this thread, and only
+	 * as many as there are workers exist at the same time.
+	 * @param workers
+	 * @throws InterruptedException
+	 */
+	private void queryInParallel(int workers) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(workers,
+				new ThreadFactoryBuilder().setNameFormat("spacer-query-%d").setDaemon(true).build());
+		CompletionService<ProverResult> completion = new ExecutorCompletionService<ProverResult>(executor);
+		Map<Future<ProverResult>, ProverExpr> queries = new HashMap<Future<ProverResult>, ProverExpr>();
+		Iterator<ProverExpr> todo = errorStates.keySet().iterator();
+		try {
+			while (todo.hasNext() || !queries.isEmpty()) {
+				if (todo.hasNext() && queries.size() < workers) {
+					final ProverExpr prop = todo.next();
+					final int line = errorStates.get(prop);
+					final SpacerProver copy = ((SpacerProver) prover).copy();
+					final ProverExpr copiedProp = copy.importExpr(prop);
+					queries.put(completion.submit(new Callable<ProverResult>() {
+						@Override
+						public ProverResult call() {
+							try {
+								// always use a timed query, so that cancelling
+								// this task stops the z3 query.
+								ProverResult result = query(copy, copiedProp, true);
+								reportResult(copy, line, result);
+								return result;
+							} finally {
+								// getResult and shutdown wait until the z3 query
+								// has returned, so the context of the copy is not
+								// disposed while a timed out query still uses it.
+								copy.shutdown();
+							}
+						}
+					}), prop);
+					continue;
+				}
+				Future<ProverResult> done = completion.take();
+				ProverExpr prop = queries.remove(done);
+				try {
+					results.put(prop, done.get());
+				} catch (ExecutionException e) {
+					Log.error("Query for line " + errorStates.get(prop) + " failed: " + e.getCause());
+					Stats.stats().add("Property@Line" + errorStates.get(prop), "ERROR");
+					results.put(prop, ProverResult.Unknown);
+				}
+			}
+		} finally {
+			for (Future<ProverResult> f : queries.keySet()) {
+				f.cancel(true);
+			}
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Queries the reachability of one error state, using the timeout
+	 * from the options for this property.
+	 * @param p
+	 * @param prop
+	 * @param inBackground
+	 * @return
+	 */
+	private ProverResult query(Prover p, ProverExpr prop, boolean inBackground) {
+		if (jayhorn.Options.v().getTimeout() > 0) {
+			p.query(prop, true);
+			return p.getResult((long) jayhorn.Options.v().getTimeout());
+		} else if (inBackground) {
+			p.query(prop, true);
+			return p.getResult(Long.MAX_VALUE);
+		}
+		return p.query(prop, false);
+	}
+
+	private void reportResult(Prover p, int line, ProverResult result) {
+		String propLine = "Property@Line" + line;
+		if (result == ProverResult.Unsat) {
+			Stats.stats().add(propLine, "SAFE");
+		} else if (result == ProverResult.Sat) {
+			Stats.stats().add(propLine, "UNSAFE");
+			if (Options.v().solution) {
+				cex(p);
+			}
+		} else {
+			Stats.stats().add(propLine, "ERROR");
+		}
+	}
+
+	private void cex(Prover p){
 		//work in progress
-		System.out.println(prover.getCex());
+		System.out.println(p.getCex());
 	}
 	
 //	private void removeUnreachableMethods(Program program) {
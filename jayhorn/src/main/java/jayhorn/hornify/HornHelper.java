@@ -6,6 +6,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.common.base.Verify;
 
@@ -20,30 +22,75 @@ import soottocfg.cfg.type.IntType;
 import soottocfg.cfg.type.ReferenceType;
 import soottocfg.cfg.type.Type;
 import soottocfg.cfg.type.TypeType;
+import soottocfg.cfg.variable.ClassVariable;
 import soottocfg.cfg.variable.Variable;
 
 public class HornHelper {
 
 	public static final int NullValue = 0;
 	
-	private static HornHelper hh;
+	private static volatile HornHelper hh;
 	
 	public static void resetInstance() {
 		hh = null;
 	}
 
 	public static HornHelper hh() {
-		if (null == hh) {
-			hh = new HornHelper();
+		HornHelper instance = hh;
+		if (null == instance) {
+			// the parallel encoding calls this from several threads.
+			synchronized (HornHelper.class) {
+				if (null == hh) {
+					hh = new HornHelper();
+				}
+				instance = hh;
+			}
 		}
-		return hh;
+		return instance;
 	}
 
 	private HornHelper() {
 	}
 
 	/**
-	 * Creates a ProverType from a Type.
+	 * Tuple types of reference types, per prover. A new ReferenceType is
+	 * created for every use of a class, so the types are keyed by the
+	 * ClassVariable and the layout epoch instead. The tuple of a class
+	 * contains the tuples of its inlineable reference fields, so adding
+	 * fields to any class has to invalidate it, not only adding fields
+	 * to the class itself.
+	 */
+	private final Map<Prover, Map<LayoutKey, ProverType>> tupleTypes = Collections
+			.synchronizedMap(new WeakHashMap<Prover, Map<LayoutKey, ProverType>>());
+
+	private static final class LayoutKey {
+		private final ClassVariable classVariable;
+		private final int layoutEpoch;
+
+		LayoutKey(ReferenceType rt) {
+			classVariable = rt.getClassVariable();
+			layoutEpoch = ClassVariable.getLayoutEpoch();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof LayoutKey)) {
+				return false;
+			}
+			LayoutKey other = (LayoutKey) obj;
+			// ClassVariable.equals compares the fields, we want the class itself.
+			return classVariable == other.classVariable && layoutEpoch == other.layoutEpoch;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(classVariable) + layoutEpoch;
+		}
+	}
+
+	/**
+	 * Creates a ProverType from a Type. The tuple types of reference types
+	 * are cached per prover and rebuilt if fields are added to the class.
 	 * TODO: not fully implemented.
 	 * 
 	 * @param p
@@ -59,11 +106,26 @@ public class HornHelper {
 		}
 		if (t instanceof ReferenceType) {
 			ReferenceType rt = (ReferenceType) t;
-			final ProverType[] subTypes = new ProverType[rt.getElementTypeList().size()];
-			for (int i = 0; i < rt.getElementTypeList().size(); i++) {
-				subTypes[i] = getProverType(p, rt.getElementTypeList().get(i));
+			Map<LayoutKey, ProverType> cache;
+			synchronized (tupleTypes) {
+				cache = tupleTypes.get(p);
+				if (cache == null) {
+					cache = new ConcurrentHashMap<LayoutKey, ProverType>();
+					tupleTypes.put(p, cache);
+				}
+			}
+			final LayoutKey key = new LayoutKey(rt);
+			ProverType pt = cache.get(key);
+			if (pt == null) {
+				List<Type> elementTypes = rt.getElementTypeList();
+				final ProverType[] subTypes = new ProverType[elementTypes.size()];
+				for (int i = 0; i < elementTypes.size(); i++) {
+					subTypes[i] = getProverType(p, elementTypes.get(i));
+				}
+				pt = p.getTupleType(subTypes);
+				cache.put(key, pt);
 			}
-			return p.getTupleType(subTypes);
+			return pt;
 		}
 		if (t instanceof TypeType) {
 			return p.getIntType();
@@ -10,6 +10,7 @@ import jayhorn.solver.ProverTupleExpr;
 import jayhorn.solver.ProverTupleType;
 import jayhorn.solver.ProverType;
 import soottocfg.cfg.variable.Variable;
+import soottocfg.util.Metrics;
 
 public class HornPredicate {
 	
@@ -23,6 +24,7 @@ public class HornPredicate {
 		this.p = p;
 		variables = vars;
 		predicate = HornHelper.hh().genHornPredicate(p, name, vars);
+		Metrics.v().histogram("horn.predicate_arity").record(vars.size());
 	}
 
 	public String toString() {
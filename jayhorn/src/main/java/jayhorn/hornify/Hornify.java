@@ -1,13 +1,23 @@
 package jayhorn.hornify;
 
-import java.nio.charset.Charset;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
 
 import jayhorn.Log;
 import jayhorn.hornify.encoder.MethodEncoder;
@@ -17,6 +27,7 @@ import jayhorn.solver.ProverFun;
 import jayhorn.solver.ProverHornClause;
 import soottocfg.cfg.Program;
 import soottocfg.cfg.method.Method;
+import soottocfg.util.Metrics;
 
 /**
  * Class to hornify Java program
@@ -27,6 +38,8 @@ import soottocfg.cfg.method.Method;
 
 public class Hornify {
 
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
 	private final ProverFactory factory;
 
 	private Prover prover;
@@ -49,14 +62,62 @@ public class Hornify {
 
 		Log.info("Transform Program Methods into Horn Clauses ... ");
 
+		if (jayhorn.Options.v().parallelEncoding) {
+			encodeMethodsInParallel(program, hornContext);
+			return hornContext;
+		}
+
 		for (Method method : program.getMethods()) {
 			final MethodEncoder encoder = new MethodEncoder(prover, method, hornContext);
-			clauses.addAll(encoder.encode());		
+			addClauses(encoder.encode());
 		}
 		
 		return hornContext;
 	}
 
+	/**
+	 * Runs the prover independent part of the encoding (the liveness
+	 * analysis) for all methods on a fork-join pool. The Prover is not
+	 * thread safe, so the clauses are still created on this thread, one
+	 * method at a time and in the same order as the sequential encoding.
+	 * @param program
+	 * @param hornContext
+	 */
+	private void encodeMethodsInParallel(Program program, HornEncoderContext hornContext) {
+		final List<MethodEncoder> encoders = new ArrayList<MethodEncoder>();
+		for (Method method : program.getMethods()) {
+			encoders.add(new MethodEncoder(prover, method, hornContext));
+		}
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			List<Future<?>> prepared = new ArrayList<Future<?>>();
+			for (final MethodEncoder encoder : encoders) {
+				prepared.add(pool.submit(new Runnable() {
+					@Override
+					public void run() {
+						encoder.prepare();
+					}
+				}));
+			}
+			for (int i = 0; i < encoders.size(); i++) {
+				prepared.get(i).get();
+				addClauses(encoders.get(i).encode());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private void addClauses(List<ProverHornClause> methodClauses) {
+		Metrics.v().histogram("horn.clauses_per_method").record(methodClauses.size());
+		clauses.addAll(methodClauses);
+	}
+
 	/**
 	 * Return the current prover object
 	 * @return prover
@@ -89,11 +150,14 @@ public class Hornify {
 			String basename = jayhorn.Options.v().getOutBasename();
 			Path file = Paths.get(out + basename + "_" + num + ".horn");
 
-			LinkedList<String> it = new LinkedList<String>();
-			for (ProverHornClause clause : clauses)
-				it.add("\t\t" + clause);
-
-			writeToFile(file, it);
+			try (Writer writer = openOutput(file)) {
+				for (ProverHornClause clause : clauses) {
+					writer.write("\t\t");
+					writeLine(writer, clause.toString());
+				}
+			} catch (Exception e) {
+				System.err.println("Error writing file " + file);
+			}
 		}
 	}
 
@@ -110,13 +174,6 @@ public class Hornify {
 
 			Log.info("Writing Horn clauses to " + file);
 
-			LinkedList<String> it = new LinkedList<String>();
-
-			it.add("(set-info :origin \"Horn clauses generated by JayHorn\")");
-			it.add("(set-logic HORN)");
-
-			it.add("");
-
 			Set<ProverFun> predicates = new LinkedHashSet<ProverFun>();
 			for (ProverHornClause clause : clauses) {
 				// null indicates that the head of the clause is "false"
@@ -126,30 +183,51 @@ public class Hornify {
 					predicates.add(clause.getBodyFun(i));
 			}
 
-			for (ProverFun fun : predicates)
-				it.add(prover.toSMTLIBDeclaration(fun));
+			try (Writer writer = openOutput(file)) {
+				writeLine(writer, "(set-info :origin \"Horn clauses generated by JayHorn\")");
+				writeLine(writer, "(set-logic HORN)");
+				writeLine(writer, "");
 
-			it.add("");
+				for (ProverFun fun : predicates)
+					writeLine(writer, prover.toSMTLIBDeclaration(fun));
 
-			for (ProverHornClause clause : clauses)
-				it.add("(assert " + prover.toSMTLIBFormula(clause) + ")");
+				writeLine(writer, "");
 
-			it.add("");
-			it.add("(check-sat)");
+				for (ProverHornClause clause : clauses) {
+					writer.write("(assert ");
+					writer.write(prover.toSMTLIBFormula(clause));
+					writeLine(writer, ")");
+				}
 
-			writeToFile(file, it);
+				writeLine(writer, "");
+				writeLine(writer, "(check-sat)");
+			} catch (Exception e) {
+				System.err.println("Error writing file " + file);
+			}
 		}
 	}
 
-	private static void writeToFile(Path file, List<String> it) {
-		try {					
-			Path parent = file.getParent();
-			if (parent != null)
-				Files.createDirectories(parent);
-			Files.write(file, it, Charset.forName("UTF-8"));
-		} catch (Exception e) {
-			System.err.println("Error writing file " + file);
+	private static void writeLine(Writer writer, String line) throws IOException {
+		writer.write(line);
+		writer.write(LINE_SEPARATOR);
+	}
+
+	/**
+	 * Opens a buffered writer for an output file. Each line is written as
+	 * soon as it is produced, so we never hold the whole file in memory.
+	 * With -out-gzip, the output is compressed and ".gz" is appended to
+	 * the file name.
+	 */
+	private static Writer openOutput(Path file) throws IOException {
+		Path parent = file.getParent();
+		if (parent != null)
+			Files.createDirectories(parent);
+		if (jayhorn.Options.v().getOutGzip()) {
+			OutputStream os = Files.newOutputStream(Paths.get(file.toString() + ".gz"));
+			return new BufferedWriter(
+					new OutputStreamWriter(new GZIPOutputStream(os, 1 << 16), StandardCharsets.UTF_8), 1 << 16);
 		}
+		return Files.newBufferedWriter(file, StandardCharsets.UTF_8);
 	}
 
 
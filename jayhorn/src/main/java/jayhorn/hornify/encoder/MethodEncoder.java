@@ -1,5 +1,7 @@
 package jayhorn.hornify.encoder;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -36,6 +38,11 @@ public class MethodEncoder {
 	private final List<ProverHornClause> tsClauses = new LinkedList<ProverHornClause>(); // keep track of 
 	private final ExpressionEncoder expEnc;
 
+	// computed by prepare
+	private LiveVars<CfgBlock> liveVariables = null;
+	private final Map<CfgBlock, List<Variable>> sortedLiveIn = new LinkedHashMap<CfgBlock, List<Variable>>();
+	private final Map<CfgBlock, List<List<Variable>>> sortedLiveAfter = new HashMap<CfgBlock, List<List<Variable>>>();
+
 	public MethodEncoder(Prover p, Method method, HornEncoderContext hornContext) {
 		this.p = p;
 		this.method = method;
@@ -46,14 +53,41 @@ public class MethodEncoder {
 		this.expEnc = new ExpressionEncoder(p, hornContext);
 	}
 
+	/**
+	 * Computes the sorted lists of live variables for each block and
+	 * for each statement. This does not use the prover or any of the 
+	 * global encoder state, so it can run concurrently for different
+	 * methods. Called by encode if it hasn't been called before.
+	 */
+	public void prepare() {
+		liveVariables = method.computeBlockLiveVariables();
+		for (Entry<CfgBlock, Set<Variable>> entry : liveVariables.liveIn.entrySet()) {
+			// sort the list of variables by name to make access
+			// and reading easier.
+			sortedLiveIn.put(entry.getKey(), HornHelper.hh().setToSortedList(entry.getValue()));
+		}
+		for (CfgBlock block : method.vertexSet()) {
+			if (block.getStatements().isEmpty()) {
+				continue;
+			}
+			List<List<Variable>> sorted = new ArrayList<List<Variable>>();
+			for (Set<Variable> live : computeLiveAfterVariables(block, liveVariables.liveOut.get(block))) {
+				sorted.add(HornHelper.hh().setToSortedList(live));
+			}
+			sortedLiveAfter.put(block, sorted);
+		}
+	}
+
 	/**
 	 * Encodes a method into a set of Horn clauses.
 	 */
 	public List<ProverHornClause> encode() {
 		this.clauses.clear();
 
-		LiveVars<CfgBlock> liveVariables = method.computeBlockLiveVariables();
-		makeBlockPredicates(liveVariables);
+		if (liveVariables == null) {
+			prepare();
+		}
+		makeBlockPredicates();
 
 		if (method.getSource() == null) {
 			encodeEmptyMethod();
@@ -61,7 +95,7 @@ public class MethodEncoder {
 		}
 
 		makeEntryPredicate();
-		blocksToHorn(liveVariables);
+		blocksToHorn();
 		S2H.sh().addClause((Statement)null, tsClauses);
 
 		return clauses;
@@ -112,20 +146,11 @@ public class MethodEncoder {
 	 * in precondition.variables. So the arity of the prover fun is
 	 * |precondition.variables| + |sortedVars|
 	 * 
-	 * @param p
-	 * @param method
 	 */
-	private void makeBlockPredicates(LiveVars<CfgBlock> liveVariables) {
-		for (Entry<CfgBlock, Set<Variable>> entry : liveVariables.liveIn.entrySet()) {
-			Set<Variable> allLive = new HashSet<Variable>();
-			allLive.addAll(entry.getValue());
-			// sort the list of variables by name to make access
-			// and reading easier.
-			List<Variable> sortedVars = new LinkedList<Variable>();
-			
-			sortedVars.addAll(HornHelper.hh().setToSortedList(allLive));
+	private void makeBlockPredicates() {
+		for (Entry<CfgBlock, List<Variable>> entry : sortedLiveIn.entrySet()) {
 			blockPredicates.put(entry.getKey(),
-                                            freshHornPredicate(method.getMethodName() + "_" + entry.getKey().getLabel(), sortedVars));
+                                            freshHornPredicate(method.getMethodName() + "_" + entry.getKey().getLabel(), entry.getValue()));
 		}
 	}
 	
@@ -152,10 +177,8 @@ public class MethodEncoder {
 	
 	/**
 	 * Creates Horn clauses for all CfgBlocks in a method.
-	 * @param liveVariables
-	 * @param preVars
 	 */
-	private void blocksToHorn(LiveVars<CfgBlock> liveVariables) {
+	private void blocksToHorn() {
 		List<CfgBlock> todo = new LinkedList<CfgBlock>();
 		todo.add(method.getSource());
 		Set<CfgBlock> done = new HashSet<CfgBlock>();
@@ -168,7 +191,7 @@ public class MethodEncoder {
 			 * This gives us the exitPred which is the last predicate
 			 * used in this basic block.
 			 */
-			final HornPredicate exitPred = blockToHorn(current, liveVariables.liveOut.get(current));
+			final HornPredicate exitPred = blockToHorn(current);
 			//reset the varMap here. 
 			Map<Variable, ProverExpr> varMap = new HashMap<Variable, ProverExpr>();
 			/*
@@ -220,10 +243,9 @@ public class MethodEncoder {
 	/**
 	 * Creates the Horn clauses for the statements in a single block.
 	 * @param block The block that is to be translated.
-	 * @param liveOutVars The set of variables that are live after the block.
 	 * @return 
 	 */
-	private HornPredicate blockToHorn(CfgBlock block, Set<Variable> liveOutVars) {
+	private HornPredicate blockToHorn(CfgBlock block) {
 		//get the predicate that is associated with the entry of the block.
 		final HornPredicate initPred = blockPredicates.get(block);
 
@@ -231,7 +253,7 @@ public class MethodEncoder {
 			return initPred;
 		}
 		
-		Map<Statement, Set<Variable>> liveAfter = computeLiveAfterVariables(block, liveOutVars);
+		List<List<Variable>> liveAfter = sortedLiveAfter.get(block);
 
 		final String initName = initPred.name;
 		HornPredicate prePred = initPred;
@@ -243,7 +265,7 @@ public class MethodEncoder {
 		for (int i = 0; i < stmts.size(); ++i) {
             final Statement s = stmts.get(i);
 			final String postName = initName + "_" + (++counter);
-			final List<Variable> interVarList = HornHelper.hh().setToSortedList(liveAfter.get(s));
+			final List<Variable> interVarList = liveAfter.get(i);
 			final HornPredicate postPred = freshHornPredicate(postName, interVarList);
 			this.clauses.addAll(senc.statementToClause(s, prePred, postPred, this.method));
 
@@ -258,13 +280,11 @@ public class MethodEncoder {
 	 * that are live after the statement.
 	 * @param block The current CfgBlock.
 	 * @param liveOutVars The set of vars that are live after block.
-	 * @return A map that stores for each statement the 
+	 * @return A list that stores for the i-th statement the 
 	 * set of variables that are live after the execution
 	 * of the statement.
 	 */
-	private Map<Statement, Set<Variable>> computeLiveAfterVariables(CfgBlock block, Set<Variable> liveOutVars) {
-
-		Map<Statement, Set<Variable>> liveMap = new HashMap<Statement, Set<Variable>>();
+	private List<Set<Variable>> computeLiveAfterVariables(CfgBlock block, Set<Variable> liveOutVars) {
 
 		@SuppressWarnings("unchecked")
 		final Set<Variable>[] interVars = new Set[block.getStatements().size()];
@@ -283,10 +303,8 @@ public class MethodEncoder {
 			interVars[i - 1].addAll(interVars[i]);
 			interVars[i - 1].removeAll(s.getDefVariables());
 			interVars[i - 1].addAll(s.getUseVariables());
-			liveMap.put(s, interVars[i]);
 		}			
-		liveMap.put(block.getStatements().get(0), interVars[0]);
-		return liveMap;
+		return Arrays.asList(interVars);
 	}
 	
 }
@@ -35,6 +35,16 @@ public class S2H {
 	}
 
 	private S2H() {}
+
+	/**
+	 * Forgets the clauses and error states of a previous Horn encoding,
+	 * which belong to the prover of that encoding. The heap counters are
+	 * kept because they are set when the program is prepared.
+	 */
+	public void resetEncoding() {
+		statToClause.clear();
+		errorLineNumber.clear();
+	}
 	
 	public void addClause(Statement s, List<ProverHornClause> h){
 		statToClause.put(s,h);
@@ -26,6 +26,7 @@ import com.microsoft.z3.BoolExpr;
 import com.microsoft.z3.Context;
 import com.microsoft.z3.Expr;
 import com.microsoft.z3.Fixedpoint;
+import com.microsoft.z3.FuncDecl;
 import com.microsoft.z3.IntExpr;
 import com.microsoft.z3.InterpolationContext;
 import com.microsoft.z3.Model;
@@ -62,6 +63,11 @@ public class SpacerProver implements Prover {
 	private HashMap<String, String> cfg = new HashMap<String, String>();
 	private Fixedpoint fx;
 
+	// relations and rules of fx, kept so that they can be copied into
+	// a fresh context (see copy).
+	private final List<FuncDecl> relations = new LinkedList<FuncDecl>();
+	private final List<BoolExpr> rules = new LinkedList<BoolExpr>();
+
 	static class SpacerSolverThread implements Runnable {
 		private final Fixedpoint fx;
 		private Status status;
@@ -102,6 +108,8 @@ public class SpacerProver implements Prover {
 		try {
 				this.solver = this.ctx.mkSolver();
 				this.fx = this.ctx.mkFixedpoint();
+				this.relations.clear();
+				this.rules.clear();
 				Params params = this.ctx.mkParams();
 				params.add(":engine", "spacer");
 				params.add (":use_heavy_mev", true);
@@ -708,11 +716,25 @@ public class SpacerProver implements Prover {
 	}
 
 	private void killThread() {
-		if (this.future != null && !this.future.isDone()) {
-			this.future.cancel(true);
-		}
 		if (this.executor != null) {
 			this.executor.shutdown();
+			// z3 does not react to Java interrupts, so stop the query
+			// on the context and wait until it has returned. Otherwise,
+			// the caller may dispose the context while the native query
+			// is still running on it. The interrupt is repeated in case
+			// the query had not started yet when it was first sent.
+			boolean interrupted = false;
+			while (!this.executor.isTerminated()) {
+				this.ctx.interrupt();
+				try {
+					this.executor.awaitTermination(100, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
 		}
 		this.executor = null;
 		this.future = null;
@@ -731,11 +753,12 @@ public class SpacerProver implements Prover {
 			if (block) {
 				try {
 					future.get();
+					result = translateResult(this.thread.getStatus());
 				} catch (InterruptedException | ExecutionException e) {
 					throw new RuntimeException("solver failed");
+				} finally {
+					killThread();
 				}
-				result = translateResult(this.thread.getStatus());
-				killThread();
 			} else {
 				if (future.isDone()) {
 					result = translateResult(this.thread.getStatus());
@@ -761,8 +784,9 @@ public class SpacerProver implements Prover {
 				throw new RuntimeException("solver failed");
 			} catch (TimeoutException e) {
 				result = ProverResult.Unknown;
+			} finally {
+				killThread();
 			}
-			killThread();
 		} else {
 			throw new RuntimeException("Start query with check sat first.");
 		}
@@ -1007,6 +1031,7 @@ public class SpacerProver implements Prover {
 		try {
 			SpacerFun fun = this.mkUnintFunction(this.replaceName(name), argTypes, this.getBooleanType());
 			this.fx.registerRelation(fun.getFun());
+			this.relations.add(fun.getFun());
 			return fun;
 		} catch (Z3Exception e) {
 			throw new RuntimeException(e.getMessage());
@@ -1093,6 +1118,7 @@ public class SpacerProver implements Prover {
 			}
 
 			this.fx.addRule(asrt, null);
+			this.rules.add(asrt);
 //			System.out.println(this.fx);
 //			System.out.println("----------------");
 		} catch (Exception e) {
@@ -1102,6 +1128,45 @@ public class SpacerProver implements Prover {
 	}
 	
 	
+	/**
+	 * Creates a new prover with its own Z3 context that contains the same
+	 * relations and rules as this prover. The copy can be queried on a
+	 * different thread than this prover. Expressions of this prover have
+	 * to be moved to the copy with <code>importExpr</code>.
+	 */
+	public SpacerProver copy() {
+		SpacerProver copy = new SpacerProver();
+		try {
+			for (FuncDecl relation : this.relations) {
+				FuncDecl translated = (FuncDecl) relation.translate(copy.ctx);
+				copy.fx.registerRelation(translated);
+				copy.relations.add(translated);
+			}
+			for (BoolExpr rule : this.rules) {
+				BoolExpr translated = (BoolExpr) rule.translate(copy.ctx);
+				copy.fx.addRule(translated, null);
+				copy.rules.add(translated);
+			}
+		} catch (Z3Exception e) {
+			throw new RuntimeException(e.getMessage());
+		}
+		return copy;
+	}
+
+	/**
+	 * Translates an expression of another SpacerProver into the context
+	 * of this prover.
+	 * @param expr
+	 * @return
+	 */
+	public ProverExpr importExpr(ProverExpr expr) {
+		try {
+			return pack(unpack(expr).translate(this.ctx));
+		} catch (Z3Exception e) {
+			throw new RuntimeException(e.getMessage());
+		}
+	}
+
 	/**
 	 * Query Rechability
 	 */
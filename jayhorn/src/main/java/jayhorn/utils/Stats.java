@@ -1,8 +1,23 @@
 package jayhorn.utils;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+import jayhorn.Log;
+import jayhorn.Options;
+import soottocfg.util.Metrics;
 
 
 public class Stats {
@@ -13,6 +28,12 @@ public class Stats {
 
 	public static void resetInstance() {
 		stats = null;	
+		Metrics.resetInstance();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				pool.resetPeakUsage();
+			}
+		}
 	}
 	
 	private Map<String, String> statsMap = new LinkedHashMap<String, String>();
@@ -25,18 +46,73 @@ public class Stats {
 		return stats;
 	}
 	
-	public void add(String Key, String Val) {
+	public synchronized void add(String Key, String Val) {
 		statsMap.put(Key, Val);
 	}
 	
+	/**
+	 * Adds the time of a stopped Stopwatch as a BRUNCH_STAT and records
+	 * it in the timer "jayhorn.Key" of the metrics.
+	 * @param Key
+	 * @param timer
+	 */
+	public void addTime(String Key, Stopwatch timer) {
+		add(Key, String.valueOf(timer));
+		Metrics.v().timer("jayhorn." + Key).record(timer.elapsed(TimeUnit.NANOSECONDS));
+	}
+	
+	public synchronized String get(String key) {
+		return statsMap.get(key);
+	}
+	
 	private Stats(){}
 	
 	public void printStats(){
 		System.out.println(this.toString());
 	}
 	
+	/**
+	 * Writes the metrics to the files given by -metrics-json and
+	 * -metrics-prom, if any. The JSON file also contains the BRUNCH_STATs
+	 * and the peak heap usage since the last resetInstance as PeakHeapBytes.
+	 */
+	public void writeMetrics() {
+		final Map<String, String> info;
+		synchronized (this) {
+			info = new LinkedHashMap<String, String>(statsMap);
+		}
+		info.put("PeakHeapBytes", String.valueOf(peakHeapBytes()));
+		if (Options.v().getMetricsJson() != null) {
+			writeFile(Paths.get(Options.v().getMetricsJson()), Metrics.v().toJson(info));
+		}
+		if (Options.v().getMetricsPrometheus() != null) {
+			writeFile(Paths.get(Options.v().getMetricsPrometheus()), Metrics.v().toPrometheus());
+		}
+	}
+
+	private static long peakHeapBytes() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	private void writeFile(Path file, String content) {
+		try {
+			if (file.getParent() != null) {
+				Files.createDirectories(file.getParent());
+			}
+			Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			Log.error("Cannot write metrics to " + file + ": " + e);
+		}
+	}
+	
 	@Override 
-	public String toString() {
+	public synchronized String toString() {
 		StringBuilder sb = new StringBuilder();
 		for (Entry<String, String> entry: statsMap.entrySet()){
 			sb.append(tag + entry.getKey() + " " + entry.getValue());
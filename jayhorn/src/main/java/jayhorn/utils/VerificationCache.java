@@ -0,0 +1,267 @@
+package jayhorn.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.jgrapht.DirectedGraph;
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.DefaultEdge;
+import org.kohsuke.args4j.Option;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import jayhorn.Log;
+import jayhorn.Options;
+import soottocfg.cfg.Program;
+import soottocfg.cfg.method.Method;
+import soottocfg.cfg.util.GraphUtil;
+import soottocfg.cfg.variable.ClassVariable;
+import soottocfg.cfg.variable.Variable;
+
+/**
+ * Persistent cache of verification results. For each input, we store
+ * a hash of the CFG of every method that is reachable from the entry
+ * point, the call graph edges between them, and the last verdict.
+ *
+ * A method is considered changed if its own hash changed or if any
+ * method that it (transitively) calls changed. The cached verdict is
+ * only reused if the entry point is unchanged in that sense, and if
+ * the class layout and all options that affect the encoding are the
+ * same as in the cached run.
+ *
+ * The hash has to be computed on the program as it comes out of
+ * SootToCfg, i.e., before the checkers modify it.
+ */
+public class VerificationCache {
+
+	private static final String VERDICT = "verdict";
+	private static final String CONFIG = "config";
+	private static final String CLASSES = "classes";
+	private static final String HASH_PREFIX = "hash.";
+	private static final String CALLEE_PREFIX = "callees.";
+
+	/**
+	 * Command-line options that only change what is printed or written,
+	 * or where the input and the cache are.
+	 */
+	private static final Set<String> OUTPUT_ONLY_OPTIONS = ImmutableSet.of("-j", "-print-horn", "-verbose", "-cfg",
+			"-stats", "-metrics-json", "-metrics-prom", "-solution", "-dotCEX", "-out", "-out-gzip", "-cache");
+	private static final Set<String> OUTPUT_ONLY_SETTINGS = ImmutableSet.of("printCFG", "outDir", "outBaseName");
+
+	private final Path cacheFile;
+	private final Properties cached = new Properties();
+
+	private final Map<String, String> methodHashes = new LinkedHashMap<String, String>();
+	private final Map<String, Set<String>> callees = new LinkedHashMap<String, Set<String>>();
+	private String entryName;
+	private String classesHash;
+
+	/**
+	 * @param cacheDir
+	 *            Directory in which the cache files are stored.
+	 * @param input
+	 *            The input that is being verified. Used to find the cache
+	 *            file.
+	 */
+	public VerificationCache(Path cacheDir, String input) {
+		String key = Hashing.sha1().hashString(input, StandardCharsets.UTF_8).toString();
+		this.cacheFile = cacheDir.resolve(key + ".properties");
+		if (Files.exists(cacheFile)) {
+			try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+				cached.load(reader);
+			} catch (IOException e) {
+				Log.error("Cannot read cache file " + cacheFile + ": " + e);
+				cached.clear();
+			}
+		}
+	}
+
+	/**
+	 * Computes the hashes of all methods reachable from the entry point
+	 * of the program and looks up the cached verdict.
+	 *
+	 * @param program
+	 * @return The cached verdict, or null if the program changed since
+	 *         the verdict was stored.
+	 */
+	public Boolean lookup(Program program) {
+		computeHashes(program);
+		if (!cached.containsKey(VERDICT)) {
+			return null;
+		}
+		if (!currentConfig().equals(cached.getProperty(CONFIG))) {
+			Log.info("Cache: options changed.");
+			return null;
+		}
+		if (!classesHash.equals(cached.getProperty(CLASSES))) {
+			Log.info("Cache: class hierarchy changed.");
+			return null;
+		}
+		Set<String> changed = findChangedMethods();
+		Stats.stats().add("CacheChangedMethods", String.valueOf(changed.size()));
+		if (changed.contains(entryName)) {
+			Log.info("Cache: " + changed.size() + " of " + methodHashes.size() + " methods changed.");
+			return null;
+		}
+		Log.info("Cache: reusing verdict for unchanged program.");
+		return Boolean.valueOf(cached.getProperty(VERDICT));
+	}
+
+	/**
+	 * Stores the verdict for the program passed to lookup.
+	 *
+	 * @param safe
+	 */
+	public void store(boolean safe) {
+		Properties entries = new Properties();
+		entries.setProperty(VERDICT, String.valueOf(safe));
+		entries.setProperty(CONFIG, currentConfig());
+		entries.setProperty(CLASSES, classesHash);
+		for (Entry<String, String> entry : methodHashes.entrySet()) {
+			entries.setProperty(HASH_PREFIX + entry.getKey(), entry.getValue());
+			entries.setProperty(CALLEE_PREFIX + entry.getKey(), joined(callees.get(entry.getKey())));
+		}
+		try {
+			Files.createDirectories(cacheFile.getParent());
+			try (Writer writer = Files.newBufferedWriter(cacheFile, StandardCharsets.UTF_8)) {
+				entries.store(writer, "JayHorn verification cache");
+			}
+		} catch (IOException e) {
+			Log.error("Cannot write cache file " + cacheFile + ": " + e);
+		}
+	}
+
+	private void computeHashes(Program program) {
+		methodHashes.clear();
+		callees.clear();
+		final Method entry = program.getEntryPoint();
+		entryName = entry.getMethodName();
+		final DirectedGraph<Method, DefaultEdge> callGraph = program.getCallGraph();
+		for (Method m : GraphUtil.getForwardReachableVertices(callGraph, entry)) {
+			methodHashes.put(m.getMethodName(),
+					Hashing.sha1().hashString(m.toString(), StandardCharsets.UTF_8).toString());
+			Set<String> names = new TreeSet<String>();
+			for (Method callee : Graphs.successorListOf(callGraph, m)) {
+				names.add(callee.getMethodName());
+			}
+			callees.put(m.getMethodName(), names);
+		}
+
+		Set<String> classes = new TreeSet<String>();
+		for (ClassVariable cv : program.getClassVariables()) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(cv.getName());
+			for (ClassVariable parent : cv.getParents()) {
+				sb.append(" <: ");
+				sb.append(parent.getName());
+			}
+			for (Variable field : cv.getAssociatedFields()) {
+				sb.append(" ");
+				sb.append(field.getName());
+				sb.append(":");
+				sb.append(field.getType());
+			}
+			classes.add(sb.toString());
+		}
+		for (Variable g : program.getGlobalVariables()) {
+			classes.add(g.getName() + ":" + g.getType());
+		}
+		Hasher hasher = Hashing.sha1().newHasher();
+		for (String s : classes) {
+			hasher.putString(s, StandardCharsets.UTF_8);
+		}
+		classesHash = hasher.hash().toString();
+	}
+
+	/**
+	 * Returns the names of all methods whose hash differs from the cached
+	 * one, or whose set of callees changed, together with all their
+	 * transitive callers.
+	 */
+	private Set<String> findChangedMethods() {
+		Set<String> changed = new HashSet<String>();
+		for (Entry<String, String> entry : methodHashes.entrySet()) {
+			final String name = entry.getKey();
+			if (!entry.getValue().equals(cached.getProperty(HASH_PREFIX + name))
+					|| !joined(callees.get(name)).equals(cached.getProperty(CALLEE_PREFIX + name))) {
+				changed.add(name);
+			}
+		}
+		// propagate changes from callees to callers.
+		List<String> todo = new LinkedList<String>(changed);
+		while (!todo.isEmpty()) {
+			String current = todo.remove(0);
+			for (Entry<String, Set<String>> entry : callees.entrySet()) {
+				if (entry.getValue().contains(current) && changed.add(entry.getKey())) {
+					todo.add(entry.getKey());
+				}
+			}
+		}
+		return changed;
+	}
+
+	private String joined(Set<String> names) {
+		StringBuilder sb = new StringBuilder();
+		String comma = "";
+		for (String s : names) {
+			sb.append(comma);
+			sb.append(s);
+			comma = ",";
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * All options that affect the encoding or the verdict, i.e., the
+	 * values of all command-line options except for the ones in
+	 * OUTPUT_ONLY_OPTIONS, and of all settings in soottocfg.Options
+	 * except for the output ones. The options are found by reflection,
+	 * so options that are added later are part of the key as well.
+	 */
+	private String currentConfig() {
+		Map<String, String> config = new TreeMap<String, String>();
+		for (Field f : Options.class.getDeclaredFields()) {
+			Option option = f.getAnnotation(Option.class);
+			if (option != null && !OUTPUT_ONLY_OPTIONS.contains(option.name())) {
+				config.put(option.name(), fieldValue(f, Options.v()));
+			}
+		}
+		for (Field f : soottocfg.Options.class.getDeclaredFields()) {
+			if (Modifier.isStatic(f.getModifiers()) || OUTPUT_ONLY_SETTINGS.contains(f.getName())) {
+				continue;
+			}
+			Class<?> type = f.getType();
+			if (type.isPrimitive() || type.isEnum() || type == String.class) {
+				config.put("soottocfg." + f.getName(), fieldValue(f, soottocfg.Options.v()));
+			}
+		}
+		return config.toString();
+	}
+
+	private static String fieldValue(Field f, Object owner) {
+		try {
+			f.setAccessible(true);
+			return String.valueOf(f.get(owner));
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
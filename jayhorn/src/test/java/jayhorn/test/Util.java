@@ -15,8 +15,14 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import com.google.common.io.Files;
 
@@ -149,6 +155,56 @@ public final class Util {
 		return tempDir;
 	}
 
+	private static final Pattern PUSH_ID = Pattern.compile("push_(\\d+)\\(");
+	private static final Pattern PULL_PUSH_IDS = Pattern.compile("(:= pull\\(.*\\)\\[)([0-9, ]*)(\\])");
+
+	/**
+	 * Renumbers the push statements of a printed program in the order in
+	 * which they appear, and sorts the pushs listed at each pull. Push ids
+	 * come from a global counter, so this is needed to compare two
+	 * translations of the same program.
+	 * 
+	 * @param program the printed program
+	 * @return the program with normalized push ids
+	 */
+	public static String normalizePushIds(String program) {
+		final Map<String, String> ids = new HashMap<String, String>();
+		Matcher push = PUSH_ID.matcher(program);
+		while (push.find()) {
+			if (!ids.containsKey(push.group(1))) {
+				ids.put(push.group(1), String.valueOf(ids.size() + 1));
+			}
+		}
+		StringBuffer sb = new StringBuffer();
+		push = PUSH_ID.matcher(program);
+		while (push.find()) {
+			push.appendReplacement(sb, "push_" + ids.get(push.group(1)) + "(");
+		}
+		push.appendTail(sb);
+
+		StringBuffer result = new StringBuffer();
+		Matcher pull = PULL_PUSH_IDS.matcher(sb);
+		while (pull.find()) {
+			List<Integer> pushIds = new ArrayList<Integer>();
+			for (String id : pull.group(2).split(", ")) {
+				if (!id.isEmpty()) {
+					pushIds.add(ids.containsKey(id) ? Integer.valueOf(ids.get(id)) : -1);
+				}
+			}
+			Collections.sort(pushIds);
+			StringBuilder list = new StringBuilder();
+			for (Integer id : pushIds) {
+				if (list.length() > 0) {
+					list.append(", ");
+				}
+				list.append(id);
+			}
+			pull.appendReplacement(result, Matcher.quoteReplacement(pull.group(1) + list + pull.group(3)));
+		}
+		pull.appendTail(result);
+		return result.toString();
+	}
+
 	public static File getTempDir() throws IOException {
 		final File tempDir = File.createTempFile("bixie_test_temp", Long.toString(System.nanoTime()));
 		if (!(tempDir.delete())) {
@@ -0,0 +1,158 @@
+/**
+ *
+ */
+package jayhorn.test.assorted_tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import jayhorn.checker.EldaricaChecker;
+import jayhorn.solver.ProverFactory;
+import jayhorn.solver.princess.PrincessProverFactory;
+import jayhorn.test.Util;
+import soottocfg.cfg.Program;
+import soottocfg.cfg.method.CfgBlock;
+import soottocfg.cfg.method.Method;
+import soottocfg.cfg.statement.PullStatement;
+import soottocfg.cfg.statement.PushStatement;
+import soottocfg.cfg.statement.Statement;
+import soottocfg.cfg.util.InterProceduralPullPushOrdering;
+import soottocfg.soot.SootToCfg;
+
+/**
+ * Checks that the context-sensitive pull/push ordering does not change
+ * the verdicts, and that it never finds more influencing pushs for a pull
+ * than the context-insensitive one.
+ */
+@RunWith(Parameterized.class)
+public class ContextSensitivePullPushTest {
+
+	private static final String userDir = System.getProperty("user.dir") + "/";
+	private static final String testRoot = userDir + "src/test/resources/";
+
+	private File sourceFile;
+
+	@Parameterized.Parameters(name = "{index}: check ({1})")
+	public static Collection<Object[]> data() {
+		List<Object[]> filenames = new LinkedList<Object[]>();
+		final File source_dir = new File(testRoot + "horn-encoding/mem_precision");
+		collectFileNamesRecursively(source_dir, filenames);
+		if (filenames.isEmpty()) {
+			throw new RuntimeException("Test data not found!");
+		}
+		return filenames;
+	}
+
+	private static void collectFileNamesRecursively(File file, List<Object[]> filenames) {
+		File[] directoryListing = file.listFiles();
+		if (directoryListing != null) {
+			for (File child : directoryListing) {
+				if (child.isFile() && child.getName().endsWith(".java")) {
+					filenames.add(new Object[] { child, child.getName() });
+				} else if (child.isDirectory()) {
+					collectFileNamesRecursively(child, filenames);
+				} else {
+					// Ignore
+				}
+			}
+		}
+	}
+
+	public ContextSensitivePullPushTest(File source, String name) {
+		this.sourceFile = source;
+	}
+
+	@Test
+	public void testWithPrincess() {
+		verifyAssertions(new PrincessProverFactory());
+	}
+
+	@Test
+	public void testInfluencingPushs() {
+		System.out.println("\nRunning test " + this.sourceFile.getName() + "\n");
+		File classDir = null;
+		try {
+			soottocfg.Options.v().setMemPrecision(1);
+			classDir = Util.compileJavaFile(this.sourceFile);
+			SootToCfg soot2cfg = new SootToCfg();
+			soot2cfg.run(classDir.getAbsolutePath(), null);
+			Program program = soot2cfg.getProgram();
+
+			// the ordering reads the option when it computes the pushs, so
+			// each ordering is queried completely before the option changes.
+			Map<PullStatement, Set<PushStatement>> insensitive = influencingPushs(program, false);
+			Map<PullStatement, Set<PushStatement>> sensitive = influencingPushs(program, true);
+			for (Map.Entry<PullStatement, Set<PushStatement>> entry : sensitive.entrySet()) {
+				Assert.assertTrue("For " + this.sourceFile.getName() + ": " + entry.getValue()
+						+ " is not a subset of " + insensitive.get(entry.getKey()) + " at " + entry.getKey(),
+						insensitive.get(entry.getKey()).containsAll(entry.getValue()));
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			Assert.fail();
+		} finally {
+			soottocfg.Options.v().setContextSensitivePullPushOrdering(false);
+			if (classDir != null) {
+				classDir.deleteOnExit();
+			}
+		}
+	}
+
+	private Map<PullStatement, Set<PushStatement>> influencingPushs(Program program, boolean contextSensitive) {
+		soottocfg.Options.v().setContextSensitivePullPushOrdering(contextSensitive);
+		InterProceduralPullPushOrdering ordering = new InterProceduralPullPushOrdering(program.getEntryPoint());
+		Map<PullStatement, Set<PushStatement>> pushs = new HashMap<PullStatement, Set<PushStatement>>();
+		for (Method m : program.getMethods()) {
+			for (CfgBlock b : m.vertexSet()) {
+				for (Statement s : b.getStatements()) {
+					if (s instanceof PullStatement) {
+						pushs.put((PullStatement) s, ordering.getPushsInfluencing((PullStatement) s));
+					}
+				}
+			}
+		}
+		return pushs;
+	}
+
+	protected void verifyAssertions(ProverFactory factory) {
+		System.out.println("\nRunning test " + this.sourceFile.getName() + " with " + factory.getClass() + "\n");
+		File classDir = null;
+		try {
+			soottocfg.Options.v().setMemPrecision(1);
+			soottocfg.Options.v().setContextSensitivePullPushOrdering(true);
+			jayhorn.Options.v().setTimeout(-1);
+			classDir = Util.compileJavaFile(this.sourceFile);
+			SootToCfg soot2cfg = new SootToCfg();
+			soot2cfg.run(classDir.getAbsolutePath(), null);
+
+			Program program = soot2cfg.getProgram();
+			EldaricaChecker hornChecker = new EldaricaChecker(factory);
+			boolean result = hornChecker.checkProgram(program);
+
+			boolean expected = this.sourceFile.getName().startsWith("Sat");
+			Assert.assertTrue("For " + this.sourceFile.getName() + ": expected " + expected + " but got " + result,
+					expected == result);
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			Assert.fail();
+		} finally {
+			soottocfg.Options.v().setContextSensitivePullPushOrdering(false);
+			if (classDir != null) {
+				classDir.deleteOnExit();
+			}
+		}
+	}
+
+}
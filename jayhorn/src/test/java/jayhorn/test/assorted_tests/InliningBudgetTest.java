@@ -0,0 +1,116 @@
+/**
+ * 
+ */
+package jayhorn.test.assorted_tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import jayhorn.checker.Checker;
+import jayhorn.checker.EldaricaChecker;
+import jayhorn.solver.ProverFactory;
+import jayhorn.solver.princess.PrincessProverFactory;
+import jayhorn.test.Util;
+import soottocfg.cfg.Program;
+import soottocfg.soot.SootToCfg;
+
+/**
+ * Checks that inlining with a budget does not change the verdicts of
+ * the inlining examples, for no, a small, and a large budget.
+ */
+@RunWith(Parameterized.class)
+public class InliningBudgetTest {
+
+	private static final String userDir = System.getProperty("user.dir") + "/";
+	private static final String testRoot = userDir + "src/test/resources/";
+
+	private static final int[] budgets = { 0, 20, 500 };
+
+	private File sourceFile;
+	private int budget;
+
+	@Parameterized.Parameters(name = "{index}: check ({1}, budget {2}%)")
+	public static Collection<Object[]> data() {
+		List<Object[]> filenames = new LinkedList<Object[]>();
+		final File source_dir = new File(testRoot + "horn-encoding/inlining");
+		collectFileNamesRecursively(source_dir, filenames);
+		if (filenames.isEmpty()) {
+			throw new RuntimeException("Test data not found!");
+		}
+		return filenames;
+	}
+
+	private static void collectFileNamesRecursively(File file, List<Object[]> filenames) {
+		File[] directoryListing = file.listFiles();
+		if (directoryListing != null) {
+			for (File child : directoryListing) {
+				if (child.isFile() && child.getName().endsWith(".java")) {
+					for (int budget : budgets) {
+						filenames.add(new Object[] { child, child.getName(), budget });
+					}
+				} else if (child.isDirectory()) {
+					collectFileNamesRecursively(child, filenames);
+				} else {
+					// Ignore
+				}
+			}
+		}
+	}
+
+	public InliningBudgetTest(File source, String name, int budget) {
+		this.sourceFile = source;
+		this.budget = budget;
+	}
+
+	@Test
+	public void testWithPrincess() {
+		verifyAssertions(new PrincessProverFactory());
+	}
+
+	protected void verifyAssertions(ProverFactory factory) {
+		System.out.println("\nRunning test " + this.sourceFile.getName() + " with budget " + budget + "% and "
+				+ factory.getClass() + "\n");
+		File classDir = null;
+		try {
+			jayhorn.Options.v().solution = true;
+
+			soottocfg.Options.v().setExactArrayElements(0);
+			soottocfg.Options.v().setArrayInv(true);
+
+			jayhorn.Options.v().setInlineBudget(budget);
+
+			jayhorn.Options.v().setTimeout(50);
+
+			classDir = Util.compileJavaFile(this.sourceFile);
+			SootToCfg soot2cfg = new SootToCfg();
+			soot2cfg.run(classDir.getAbsolutePath(), null);
+
+			Program program = soot2cfg.getProgram();
+
+			Checker hornChecker = new EldaricaChecker(factory);
+			boolean result = hornChecker.checkProgram(program);
+
+			boolean expected = this.sourceFile.getName().startsWith("Sat");
+			Assert.assertTrue("For " + this.sourceFile.getName() + " with budget " + budget + "%: expected "
+					+ expected + " but got " + result, expected == result);
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			Assert.fail();
+		} finally {
+			jayhorn.Options.v().setInlineBudget(-1);
+			if (classDir != null) {
+				classDir.deleteOnExit();
+			}
+		}
+	}
+
+}
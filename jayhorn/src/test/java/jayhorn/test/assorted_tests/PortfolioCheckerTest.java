@@ -0,0 +1,119 @@
+/**
+ *
+ */
+package jayhorn.test.assorted_tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import jayhorn.checker.PortfolioChecker;
+import jayhorn.solver.Prover;
+import jayhorn.solver.ProverFactory;
+import jayhorn.solver.ProverResult;
+import jayhorn.solver.princess.PrincessProver;
+import jayhorn.solver.spacer.SpacerProverFactory;
+import jayhorn.test.Util;
+import scala.actors.threadpool.Arrays;
+import soottocfg.cfg.Program;
+import soottocfg.soot.SootToCfg;
+
+/**
+ * Runs the portfolio on unsafe programs with an Eldarica that never
+ * answers, so the verdict has to come from Spacer, which encodes the
+ * program after Eldarica.
+ */
+@RunWith(Parameterized.class)
+public class PortfolioCheckerTest {
+
+	private static final String userDir = System.getProperty("user.dir") + "/";
+	private static final String testRoot = userDir + "src/test/resources/";
+
+	private File sourceFile;
+
+	@Parameterized.Parameters(name = "{index}: check ({1})")
+	public static Collection<Object[]> data() {
+		List<Object[]> filenames = new LinkedList<Object[]>();
+		final File source_dir = new File(testRoot + "horn-encoding/simple1");
+		File[] directoryListing = source_dir.listFiles();
+		if (directoryListing != null) {
+			Arrays.sort(directoryListing);
+			for (File child : directoryListing) {
+				if (child.isFile() && child.getName().startsWith("Unsat") && child.getName().endsWith(".java")) {
+					filenames.add(new Object[] { child, child.getName() });
+				}
+			}
+		}
+		if (filenames.isEmpty()) {
+			throw new RuntimeException("Test data not found!");
+		}
+		return filenames;
+	}
+
+	public PortfolioCheckerTest(File source, String name) {
+		this.sourceFile = source;
+	}
+
+	@Test
+	public void testSpacerWins() {
+		Program program = getCFG();
+		PortfolioChecker portfolio = new PortfolioChecker(new SilentEldaricaFactory(), new SpacerProverFactory());
+		boolean result = portfolio.checkProgram(program);
+		Assert.assertFalse("For " + this.sourceFile.getName() + ": expected false but got " + result, result);
+		Assert.assertEquals("spacer", portfolio.getWinner());
+	}
+
+	/**
+	 * Eldarica provers that wait until they are cancelled instead of
+	 * returning a result.
+	 */
+	private static class SilentEldaricaFactory implements ProverFactory {
+		@Override
+		public Prover spawn() {
+			return new PrincessProver() {
+				@Override
+				public ProverResult getResult(long timeout) {
+					try {
+						Thread.sleep(timeout);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return ProverResult.Unknown;
+				}
+			};
+		}
+
+		@Override
+		public Prover spawnWithLog(String basename) {
+			return spawn();
+		}
+	}
+
+	protected Program getCFG() {
+		System.out.println("\nRunning test " + this.sourceFile.getName() + "\n");
+		File classDir = null;
+		try {
+			jayhorn.Options.v().setTimeout(-1);
+			soottocfg.Options.v().setMemPrecision(1);
+			classDir = Util.compileJavaFile(this.sourceFile);
+			SootToCfg soot2cfg = new SootToCfg();
+			soot2cfg.run(classDir.getAbsolutePath(), null);
+			return soot2cfg.getProgram();
+		} catch (IOException e) {
+			e.printStackTrace();
+			Assert.fail();
+			return null;
+		} finally {
+			if (classDir != null) {
+				classDir.deleteOnExit();
+			}
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package jayhorn.test.regression_tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import jayhorn.test.Util;
+import soottocfg.soot.SootToCfg;
+
+/**
+ * Checks that transforming the Jimple bodies, or translating them into
+ * CFGs, in parallel gives the same program as doing it one body after
+ * the other.
+ */
+@RunWith(Parameterized.class)
+public class ParallelTranslationTest {
+
+	private static final String userDir = System.getProperty("user.dir") + "/";
+	private static final String testRoot = userDir + "src/test/resources/";
+
+	/**
+	 * The phases that can run in parallel.
+	 */
+	enum Phase {
+		Transformations, CfgConstruction;
+
+		void setParallel(boolean parallel) {
+			if (this == Transformations) {
+				soottocfg.Options.v().setParallelTransformations(parallel);
+			} else {
+				soottocfg.Options.v().setParallelCfgConstruction(parallel);
+			}
+		}
+	}
+
+	private File sourceFile;
+	private Phase phase;
+
+	@Parameterized.Parameters(name = "{index}: check ({1}, {2})")
+	public static Collection<Object[]> data() {
+		List<Object[]> filenames = new LinkedList<Object[]>();
+		final File source_dir = new File(testRoot + "horn-encoding");
+		collectFileNamesRecursively(source_dir, filenames);
+		if (filenames.isEmpty()) {
+			throw new RuntimeException("Test data not found!");
+		}
+		return filenames;
+	}
+
+	private static void collectFileNamesRecursively(File file, List<Object[]> filenames) {
+		File[] directoryListing = file.listFiles();
+		if (directoryListing != null) {
+			Arrays.sort(directoryListing);
+			for (File child : directoryListing) {
+				if (child.isFile() && child.getName().endsWith(".java")) {
+					for (Phase phase : Phase.values()) {
+						filenames.add(new Object[] { child, child.getName(), phase });
+					}
+				} else if (child.isDirectory()) {
+					collectFileNamesRecursively(child, filenames);
+				} else {
+					// Ignore
+				}
+			}
+		}
+	}
+
+	public ParallelTranslationTest(File source, String name, Phase phase) {
+		this.sourceFile = source;
+		this.phase = phase;
+	}
+
+	@Test
+	public void test() {
+		System.out.println("\nRunning test " + this.sourceFile.getName() + " with parallel " + this.phase + "\n");
+		File classDir = null;
+		try {
+			classDir = Util.compileJavaFile(this.sourceFile);
+			String sequential = translate(classDir, false);
+			String parallel = translate(classDir, true);
+			Assert.assertEquals("For " + this.sourceFile.getName(), sequential, parallel);
+		} catch (IOException e) {
+			e.printStackTrace();
+			Assert.fail();
+		} finally {
+			if (classDir != null) {
+				classDir.deleteOnExit();
+			}
+		}
+	}
+
+	private String translate(File classDir, boolean parallel) {
+		try {
+			this.phase.setParallel(parallel);
+			SootToCfg soot2cfg = new SootToCfg();
+			soot2cfg.run(classDir.getAbsolutePath(), null);
+			return Util.normalizePushIds(soot2cfg.getProgram().toString());
+		} finally {
+			this.phase.setParallel(false);
+		}
+	}
+}
@@ -5,6 +5,11 @@ package jayhorn.test.soundness;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
@@ -14,19 +19,24 @@ import java.util.Map;
 
 import org.junit.AfterClass;
 import org.junit.Assert;
+import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
 
-import jayhorn.checker.EldaricaChecker;
-import jayhorn.solver.ProverFactory;
-import jayhorn.solver.princess.PrincessProverFactory;
+import jayhorn.BatchRunner;
+import jayhorn.BatchRunner.BatchResult;
+import jayhorn.BatchRunner.TargetResult;
 import jayhorn.test.Util;
+import jayhorn.test.soundness.BigSoundnessUtil.Performance;
 import jayhorn.test.soundness.BigSoundnessUtil.TestOutcome;
-import soottocfg.cfg.Program;
-import soottocfg.soot.SootToCfg;
 
 /**
+ * Verifies all benchmarks with one BatchRunner, i.e., in parallel worker
+ * JVMs, and checks the verdict of each benchmark against its name.
+ * 
  * @author schaef
  *
  */
@@ -34,10 +44,18 @@ import soottocfg.soot.SootToCfg;
 public class BigSoundnessTests {
 
 	private static Map<String, TestOutcome> testResults = new LinkedHashMap<String, TestOutcome>();	
+	private static Map<String, Performance> performance = new LinkedHashMap<String, Performance>();
 	
 	private static final String userDir = System.getProperty("user.dir") + "/";
 	private static final String testRoot = userDir + "src/test/resources/";
 
+	// the options that jayhorn.Main gets for every benchmark.
+	private static final String[] jayhornArgs = { "-solver", "eldarica", "-solverOptions", "abstract", "-t", "100",
+			"-inline_size", "100", "-inline_count", "5", "-array-exact", "0" };
+
+	// the result of each benchmark, or null if it did not compile.
+	private static Map<File, TargetResult> batchResults = new LinkedHashMap<File, TargetResult>();
+
 	private File sourceFile;
 
 	private static int resultCorrect = 0;
@@ -82,106 +100,104 @@ public class BigSoundnessTests {
 		this.sourceFile = source;
 	}
 
+	/**
+	 * Compiles all benchmarks, writes a manifest with the class folder
+	 * and the expected verdict of each, and verifies them with one
+	 * BatchRunner.
+	 */
+	@BeforeClass
+	public static void runBatch() throws IOException, CmdLineException {
+		Path workDir = Files.createTempDirectory("jayhorn-soundness");
+		List<String> manifest = new ArrayList<String>();
+		Map<String, File> sources = new LinkedHashMap<String, File>();
+		for (Object[] params : data()) {
+			File source = (File) params[0];
+			batchResults.put(source, null);
+			try {
+				File classDir = Util.compileJavaFile(source);
+				classDir.deleteOnExit();
+				final String expected = source.getName().startsWith("Sat") ? BatchRunner.SAFE : BatchRunner.UNSAFE;
+				manifest.add(classDir.getAbsolutePath() + "\t" + expected);
+				sources.put(classDir.getAbsolutePath(), source);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		Path manifestFile = workDir.resolve("manifest.txt");
+		Files.write(manifestFile, manifest, StandardCharsets.UTF_8);
+
+		List<String> args = new ArrayList<String>(Arrays.asList("-targets", manifestFile.toString(), "-metrics",
+				workDir.resolve("metrics").toString(), "--"));
+		args.addAll(Arrays.asList(jayhornArgs));
+		BatchRunner runner = new BatchRunner();
+		new CmdLineParser(runner).parseArgument(args);
+		BatchResult batch = runner.run(BatchRunner.collectTargets(manifestFile));
+		for (TargetResult result : batch.results) {
+			batchResults.put(sources.get(result.target), result);
+		}
+	}
+
 	@Test
-	public void testWithPrincess() throws IOException {
-		verifyAssertions(new PrincessProverFactory());
+	public void testWithPrincess() {
+		System.out.println("\nChecking result of " + this.sourceFile.getName() + "\n");
+		final String key = this.sourceFile.getParent() + "/" + this.sourceFile.getName();
+		TargetResult result = batchResults.get(this.sourceFile);
+		if (result == null) {
+			resultException++;
+			testResults.put(key, TestOutcome.EXCEPTION);
+			printStats();
+			Assert.fail("Could not compile " + this.sourceFile.getName());
+			return;
+		}
+		// relative to the test root, so we can compare runs on different machines.
+		performance.put(this.sourceFile.getAbsolutePath().substring(testRoot.length()),
+				BigSoundnessUtil.readMetrics(result.millis, Paths.get(result.metrics)));
+		if (BatchRunner.CORRECT.equals(result.outcome)) {
+			resultCorrect++;
+			testResults.put(key, TestOutcome.CORRECT);
+		} else if (BatchRunner.IMPRECISE.equals(result.outcome)) {
+			resultImprecise++;
+			testResults.put(key, TestOutcome.IMPRECISE);
+		} else if (BatchRunner.UNSOUND.equals(result.outcome)) {
+			resultUnsound++;
+			testResults.put(key, TestOutcome.UNSOUND);
+			StringBuilder sb = new StringBuilder();
+			sb.append(unsoundFileNames);
+			sb.append("  ");
+			sb.append(this.sourceFile.getAbsolutePath());
+			sb.append("\n");
+			unsoundFileNames = sb.toString();
+		} else {
+			resultException++;
+			testResults.put(key, TestOutcome.EXCEPTION);
+		}
+		printStats();
+		Assert.assertTrue("For " + this.sourceFile.getName() + ": expected " + result.expected + " but got "
+				+ result.result, BatchRunner.CORRECT.equals(result.outcome));
 	}
 	
     @AfterClass
     public static void tearDown() {
         System.out.println("tearing down");
-        BigSoundnessUtil.storeNewTestRun(testResults);
+        BigSoundnessUtil.storeNewTestRun(testResults, performance);
         testResults.clear();
+        performance.clear();
+        batchResults.clear();
     }
 
-	// @Test
-	// public void testWithZ3() {
-	// verifyAssertions(new Z3ProverFactory());
-	// }
-	
-//	 @Test
-//	public void testWithSpacer() throws IOException {
-//		verifyAssertions(new SpacerProverFactory());
-//	 }
-
-
-					
-	protected void verifyAssertions(ProverFactory factory) throws IOException {
-		System.out.println("\nRunning test " + this.sourceFile.getName() + " with " + factory.getClass() + "\n");
-		File classDir = null;
-		try {
-			classDir = Util.compileJavaFile(this.sourceFile);
-			SootToCfg soot2cfg = new SootToCfg();
-
-//			 soottocfg.Options.v().setPrintCFG(true);
-			// soottocfg.Options.v().setExcAsAssert(true);
-//			soottocfg.Options.v().setMemPrecision(3);
-
-			jayhorn.Options.v().setInlineMaxSize(100);
-			jayhorn.Options.v().setInlineCount(5);
-
-			soottocfg.Options.v().setArrayInv(true);
-			soottocfg.Options.v().setExactArrayElements(0);
-
-			boolean expected = this.sourceFile.getName().startsWith("Sat");
-			boolean result = false;
-			try {
-				soot2cfg.run(classDir.getAbsolutePath(), null);
-				jayhorn.Options.v().setTimeout(100);
-//				jayhorn.Options.v().setPrintHorn(true);
-				jayhorn.Options.v().setSolverOptions("abstract");
-
-				Program program = soot2cfg.getProgram();
-				EldaricaChecker hornChecker = new EldaricaChecker(factory);
-				result = hornChecker.checkProgram(program);
-
-				
-				if (expected == result) {
-					resultCorrect++;
-					testResults.put(this.sourceFile.getParent()+"/"+ this.sourceFile.getName(), TestOutcome.CORRECT);
-				} else if (expected == true) {
-					resultImprecise++;
-					testResults.put(this.sourceFile.getParent()+"/"+ this.sourceFile.getName(), TestOutcome.IMPRECISE);
-				} else {
-					resultUnsound++;
-					testResults.put(this.sourceFile.getParent()+"/"+ this.sourceFile.getName(), TestOutcome.UNSOUND);
-					StringBuilder sb = new StringBuilder();
-					sb.append(unsoundFileNames);
-					sb.append("  ");
-					sb.append(this.sourceFile.getAbsolutePath());
-					sb.append("\n");
-					unsoundFileNames = sb.toString();
-				}
-			} catch (Exception e) {
-				resultException++;
-				testResults.put(this.sourceFile.getParent()+"/"+ this.sourceFile.getName(), TestOutcome.EXCEPTION);
-				e.printStackTrace();
-				throw new RuntimeException(e.toString());
-			} finally {
-				StringBuilder sb = new StringBuilder();
-				sb.append("**************************************\n");
-				final String stats = String.format("unsound: %1$-5d exception: %2$-5d imprecise: %3$-5d correct: %4$-5d", resultUnsound,
-						resultException, resultImprecise, resultCorrect);
-				sb.append(stats);
-				sb.append("\n");
-				if (unsoundFileNames.length()>0) {
-				sb.append("\nUnsound results:\n");
-				sb.append(unsoundFileNames);
-				}
-				sb.append("**************************************\n");
-				System.err.println(sb.toString());
-			}
-			Assert.assertTrue("For " + this.sourceFile.getName() + ": expected " + expected + " but got " + result,
-					expected == result);
-
-		} catch (IOException e) {
-			e.printStackTrace();
-			throw e;
-		} finally {
-			if (classDir != null) {
-				classDir.deleteOnExit();
-			}
+	private static void printStats() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("**************************************\n");
+		final String stats = String.format("unsound: %1$-5d exception: %2$-5d imprecise: %3$-5d correct: %4$-5d", resultUnsound,
+				resultException, resultImprecise, resultCorrect);
+		sb.append(stats);
+		sb.append("\n");
+		if (unsoundFileNames.length()>0) {
+		sb.append("\nUnsound results:\n");
+		sb.append(unsoundFileNames);
 		}
+		sb.append("**************************************\n");
+		System.err.println(sb.toString());
 	}
 
 }
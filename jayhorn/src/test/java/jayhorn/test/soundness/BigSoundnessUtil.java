@@ -10,14 +10,21 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 
 /**
  * @author schaef
@@ -26,8 +33,24 @@ import com.google.gson.Gson;
 public class BigSoundnessUtil {
 
 	private static final int MAX_ELEMENTS = 3;
+	private static final int MAX_BASELINE_RUNS = 5;
 	
 	public static void storeNewTestRun(Map<String, TestOutcome> testResults) {
+		storeNewTestRun(testResults, new LinkedHashMap<String, Performance>());
+	}
+
+	/**
+	 * Stores the outcome and the performance of each benchmark in the
+	 * history file, and reports the benchmarks that got slower than in
+	 * the baseline. The baseline is the commit given by the system
+	 * property jayhorn.perf.baseline or, if that is not set, the last
+	 * run in the history. Up to MAX_BASELINE_RUNS runs of the baseline
+	 * commit are kept in the history even if they are older than the last
+	 * MAX_ELEMENTS runs.
+	 * @param testResults
+	 * @param performance
+	 */
+	public static void storeNewTestRun(Map<String, TestOutcome> testResults, Map<String, Performance> performance) {
 		TestHistory results = getPreviousResults(SOUNDNESS_TEST_RESULTS);
 		String commit_hash = "unknown_"+LocalDateTime.now();
 		try {
@@ -40,6 +63,7 @@ public class BigSoundnessUtil {
 		test.commitHash = commit_hash;
 		test.timeStamp = LocalDateTime.now();
 		test.testResults = testResults;
+		test.performance = performance;
 		for (Entry<String, TestOutcome> entry : testResults.entrySet()) {
 			if (entry.getValue().equals(TestOutcome.CORRECT)) {
 				test.correct++;
@@ -57,10 +81,26 @@ public class BigSoundnessUtil {
 			printDiff(results.testRuns.getLast(), test);
 		}
 		
+		final String baseline = findBaseline(results);
+		if (baseline != null) {
+			printSlowdowns(baseline, baselineRuns(results, baseline), test);
+		}
+		
 		results.testRuns.add(test);
-		while (results.testRuns.size()>MAX_ELEMENTS) {
-			results.testRuns.remove(0);
+		// keep the last MAX_ELEMENTS runs and a few more of the baseline.
+		LinkedList<TestRun> kept = new LinkedList<TestRun>();
+		int extraBaselineRuns = 0;
+		Iterator<TestRun> it = results.testRuns.descendingIterator();
+		while (it.hasNext()) {
+			TestRun run = it.next();
+			if (kept.size() < MAX_ELEMENTS) {
+				kept.addFirst(run);
+			} else if (run.commitHash.equals(baseline) && extraBaselineRuns < MAX_BASELINE_RUNS) {
+				kept.addFirst(run);
+				extraBaselineRuns++;
+			}
 		}
+		results.testRuns = kept;
 
 		writeResults(SOUNDNESS_TEST_RESULTS, results);		
 	}
@@ -106,6 +146,164 @@ public class BigSoundnessUtil {
 		System.out.println(sb.toString());
 	}
 	
+	/**
+	 * Time, memory, and size of the encoding for one benchmark.
+	 */
+	public static class Performance {
+		public long wallMillis;
+		public long solverMillis;
+		public long peakHeapBytes;
+		public long clauses;
+		public Map<String, Long> phaseMillis = new LinkedHashMap<String, Long>();
+	}
+
+	/**
+	 * Reads the performance of a benchmark from the metrics that its
+	 * worker wrote with -metrics-json.
+	 * @param wallMillis
+	 *            The time of the whole worker.
+	 * @param metricsJson
+	 *            The metrics file, which is missing if the worker crashed.
+	 * @return
+	 */
+	public static Performance readMetrics(long wallMillis, Path metricsJson) {
+		Performance perf = new Performance();
+		perf.wallMillis = wallMillis;
+		if (metricsJson == null || !Files.exists(metricsJson)) {
+			return perf;
+		}
+		try {
+			JsonObject metrics = new JsonParser()
+					.parse(new String(Files.readAllBytes(metricsJson), Charset.forName("UTF-8"))).getAsJsonObject();
+			for (Entry<String, JsonElement> entry : metrics.getAsJsonObject("timers").entrySet()) {
+				perf.phaseMillis.put(entry.getKey(),
+						Math.round(entry.getValue().getAsJsonObject().get("seconds").getAsDouble() * 1000));
+			}
+			if (perf.phaseMillis.containsKey("jayhorn.CheckSatTime")) {
+				perf.solverMillis = perf.phaseMillis.get("jayhorn.CheckSatTime");
+			}
+			JsonObject info = metrics.getAsJsonObject("info");
+			if (info != null && info.has("PeakHeapBytes")) {
+				perf.peakHeapBytes = info.get("PeakHeapBytes").getAsLong();
+			}
+			JsonObject clauses = metrics.getAsJsonObject("histograms").getAsJsonObject("horn.clauses_per_method");
+			if (clauses != null) {
+				perf.clauses = clauses.get("sum").getAsLong();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return perf;
+	}
+
+	// benchmarks that run shorter than this are too noisy to compare.
+	private static final long MIN_MILLIS = 100;
+	// a benchmark is slower if it takes this much longer than the baseline ...
+	private static final double SLOWDOWN_FACTOR = 1.2;
+	// ... and, if the baseline was run several times, this many standard
+	// deviations longer than the mean of the baseline.
+	private static final double SLOWDOWN_SIGMAS = 3.0;
+	// significance level of the sign test over all benchmarks.
+	private static final double SIGNIFICANCE = 0.01;
+
+	private static String findBaseline(TestHistory history) {
+		final String baseline = System.getProperty("jayhorn.perf.baseline");
+		if (baseline != null) {
+			for (TestRun run : history.testRuns) {
+				if (run.commitHash.trim().startsWith(baseline.trim())) {
+					return run.commitHash;
+				}
+			}
+			System.out.println("Baseline " + baseline + " is not in the history.");
+			return null;
+		}
+		return history.testRuns.isEmpty() ? null : history.testRuns.getLast().commitHash;
+	}
+
+	private static List<TestRun> baselineRuns(TestHistory history, String baseline) {
+		List<TestRun> runs = new ArrayList<TestRun>();
+		for (TestRun run : history.testRuns) {
+			if (run.commitHash.equals(baseline) && run.performance != null) {
+				runs.add(run);
+			}
+		}
+		return runs;
+	}
+
+	/**
+	 * Prints every benchmark whose wall time got significantly worse
+	 * than in the baseline runs. In addition, a one-sided sign test over
+	 * all benchmarks tells if the whole run is slower, even if no single
+	 * benchmark is.
+	 */
+	private static void printSlowdowns(String baseline, List<TestRun> baselineRuns, TestRun newRun) {
+		if (baselineRuns.isEmpty()) {
+			return;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append("*** Performance compared to ").append(baseline.trim()).append(" (");
+		sb.append(baselineRuns.size()).append(" runs) ***\n");
+		int slower = 0, faster = 0;
+		for (Entry<String, Performance> entry : newRun.performance.entrySet()) {
+			List<Long> samples = new ArrayList<Long>();
+			for (TestRun run : baselineRuns) {
+				if (run.performance.containsKey(entry.getKey())) {
+					samples.add(run.performance.get(entry.getKey()).wallMillis);
+				}
+			}
+			if (samples.isEmpty()) {
+				continue;
+			}
+			double mean = 0;
+			for (long sample : samples) {
+				mean += sample;
+			}
+			mean /= samples.size();
+			double variance = 0;
+			for (long sample : samples) {
+				variance += (sample - mean) * (sample - mean);
+			}
+			final double sigma = samples.size() > 1 ? Math.sqrt(variance / (samples.size() - 1)) : 0;
+			final long time = entry.getValue().wallMillis;
+			if (time > mean) {
+				slower++;
+			} else if (time < mean) {
+				faster++;
+			}
+			if (time >= MIN_MILLIS && time > mean * SLOWDOWN_FACTOR && time > mean + SLOWDOWN_SIGMAS * sigma) {
+				sb.append(String.format("%1$s: %2$dms, was %3$.0fms", entry.getKey(), time, mean));
+				if (samples.size() > 1) {
+					sb.append(String.format(" +- %1$.0fms", sigma));
+				}
+				sb.append("\n");
+			}
+		}
+		final double pValue = signTest(slower, slower + faster);
+		sb.append(String.format("%1$d slower, %2$d faster, p = %3$.4f", slower, faster, pValue));
+		if (pValue < SIGNIFICANCE) {
+			sb.append(" -- SIGNIFICANT SLOWDOWN");
+		}
+		sb.append("\n*** End of Performance Report ***\n");
+		System.out.println(sb.toString());
+	}
+
+	/**
+	 * Probability to see at least k slower benchmarks out of n if
+	 * slower and faster are equally likely.
+	 */
+	private static double signTest(int k, int n) {
+		double p = 0;
+		for (int i = k; i <= n; i++) {
+			// binomial(n, i) / 2^n, computed in log space to avoid overflows.
+			double logP = -n * Math.log(2);
+			for (int j = 1; j <= i; j++) {
+				logP += Math.log(n - i + j) - Math.log(j);
+			}
+			p += Math.exp(logP);
+		}
+		return Math.min(1.0, p);
+	}
+
 	private static String COMMIT_HASH_PATH = "../.git/ORIG_HEAD";
 
 	private static String SOUNDNESS_TEST_RESULTS = "../bigSoundnessHistory.json";
@@ -132,6 +330,7 @@ public class BigSoundnessUtil {
 		public String commitHash;
 		public LocalDateTime timeStamp;
 		public Map<String, TestOutcome> testResults;
+		public Map<String, Performance> performance;
 		public int correct, imprecise, unsound, exception;
 		@Override
 		public String toString() {
@@ -153,6 +153,63 @@ public class Options {
 		this.outBaseName = s;
 	}
 	
+	/*
+	 * Share one instance between structurally equal expressions
+	 * (see ExpressionFactory)
+	 */
+	private boolean internExpressions = false;
+
+	public boolean internExpressions() {
+		return this.internExpressions;
+	}
+
+	public void setInternExpressions(boolean b) {
+		this.internExpressions = b;
+	}
+
+	/*
+	 * Apply the per-body Jimple transformations on all cores
+	 * (see AbstractSceneTransformer.transformSceneBodies)
+	 */
+	private boolean parallelTransformations = false;
+
+	public boolean parallelTransformations() {
+		return this.parallelTransformations;
+	}
+
+	public void setParallelTransformations(boolean b) {
+		this.parallelTransformations = b;
+	}
+
+	/*
+	 * Translate the method bodies into CFGs on all cores
+	 * (see SootToCfg.constructCfg)
+	 */
+	private boolean parallelCfgConstruction = false;
+
+	public boolean parallelCfgConstruction() {
+		return this.parallelCfgConstruction;
+	}
+
+	public void setParallelCfgConstruction(boolean b) {
+		this.parallelCfgConstruction = b;
+	}
+
+	/*
+	 * Use call-site specific summaries of the methods when computing the
+	 * pushs that may reach a pull. More precise, but slower on large
+	 * programs.
+	 */
+	private boolean contextSensitivePullPushOrdering = false;
+
+	public boolean contextSensitivePullPushOrdering() {
+		return contextSensitivePullPushOrdering;
+	}
+
+	public void setContextSensitivePullPushOrdering(boolean b) {
+		this.contextSensitivePullPushOrdering = b;
+	}
+
 	private boolean checkMixedJavaClassFiles = true;
 	
 	
@@ -195,6 +252,21 @@ public class Options {
 	}
 
 	private int inlineCount = -1;
+
+	/*
+	 * Inline the most profitable calls until the program has grown by this
+	 * many percent (see CfgCallInliner.inlineWithBudget). Use -1 to inline
+	 * by inlineMaxSize and inlineCount instead.
+	 */
+	private int inlineBudget = -1;
+
+	public int getInlineBudget() {
+		return inlineBudget;
+	}
+
+	public void setInlineBudget(int percent) {
+		this.inlineBudget = percent;
+	}
 	
 	/*
 	 * Singleton
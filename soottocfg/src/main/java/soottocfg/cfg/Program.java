@@ -3,16 +3,23 @@
  */
 package soottocfg.cfg;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.jgrapht.DirectedGraph;
+import org.jgrapht.Graphs;
 import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
 
@@ -35,12 +42,21 @@ public class Program {
 
 	private Method entryPoint;
 
-	private DirectedGraph<Method, DefaultEdge> callGraph;
+	/*
+	 * The call graph by method name: for each caller, the number of calls
+	 * to each callee. We use names because the hashCode of a Method changes
+	 * whenever its body changes. Methods are scanned for calls lazily, and
+	 * only when they are added or updated (see updateCalls). Otherwise, the
+	 * graph is kept up to date with addCall and removeCall.
+	 */
+	private final Map<String, Map<String, Integer>> calls = new HashMap<String, Map<String, Integer>>();
+	private final Set<String> unscanned = new LinkedHashSet<String>();
+
 	private final DirectedGraph<ClassVariable, DefaultEdge> typeGraph = new DefaultDirectedGraph<ClassVariable, DefaultEdge>(
 			DefaultEdge.class);;
 
 
-	public void addClassVariable(ClassVariable cv) {
+	public synchronized void addClassVariable(ClassVariable cv) {
 		if (!this.typeGraph.containsVertex(cv)) {
 			this.typeGraph.addVertex(cv);
 			for (ClassVariable parent : cv.getParents()) {
@@ -67,7 +83,7 @@ public class Program {
 		return this.typeGraph;
 	}
 
-	public Variable lookupGlobalVariable(String varName, Type t) {
+	public synchronized Variable lookupGlobalVariable(String varName, Type t) {
 		if (!this.globalVariables.containsKey(varName)) {
 			this.globalVariables.put(varName, new Variable(varName, t, true, true));
 		}
@@ -75,7 +91,7 @@ public class Program {
 	}	
 
 
-	public List<Variable> getGlobalVariables() {
+	public synchronized List<Variable> getGlobalVariables() {
 		return new LinkedList<Variable>(this.globalVariables.values());
 	}
 
@@ -83,20 +99,22 @@ public class Program {
 		return this.globalVariables;
 	}
 	
-	public Method lookupMethod(String methodSignature) {
+	public synchronized Method lookupMethod(String methodSignature) {
 		return methods.get(methodSignature);
 	}
 
-	public void addMethod(Method m) {
-		// set the callGraph to null because it has to be recomputed.
-		callGraph = null;
+	public synchronized void addMethod(Method m) {
 		this.methods.put(m.getMethodName(), m);
+		// the body is usually added later, so we scan it on first use.
+		calls.remove(m.getMethodName());
+		unscanned.add(m.getMethodName());
 	}
 
-	public void removeMethods(Collection<Method> methods) {
-		callGraph = null;
+	public synchronized void removeMethods(Collection<Method> methods) {
 		for (Method m : methods) {
 			this.methods.remove(m.getMethodName());
+			calls.remove(m.getMethodName());
+			unscanned.remove(m.getMethodName());
 		}
 	}
 
@@ -108,34 +126,184 @@ public class Program {
 		return entryPoint;
 	}
 
-	public Method[] getMethods() {
+	public synchronized Method[] getMethods() {
 		return methods.values().toArray(new Method[methods.size()]);
 	}
 
-	public DirectedGraph<Method, DefaultEdge> getCallGraph() {
-		if (callGraph == null) {
-			computeCallGraph();
+	/**
+	 * Records that a call to callee was added to the body of caller.
+	 * @param caller
+	 * @param callee
+	 */
+	public synchronized void addCall(Method caller, Method callee) {
+		if (unscanned.contains(caller.getMethodName())) {
+			return;
 		}
-		return callGraph;
+		Map<String, Integer> callees = calleeCounts(caller.getMethodName());
+		Integer count = callees.get(callee.getMethodName());
+		callees.put(callee.getMethodName(), count == null ? 1 : count + 1);
+	}
+
+	/**
+	 * Records that a call to callee was removed from the body of caller.
+	 * @param caller
+	 * @param callee
+	 */
+	public synchronized void removeCall(Method caller, Method callee) {
+		if (unscanned.contains(caller.getMethodName())) {
+			return;
+		}
+		Map<String, Integer> callees = calleeCounts(caller.getMethodName());
+		Integer count = callees.get(callee.getMethodName());
+		if (count == null || count <= 1) {
+			callees.remove(callee.getMethodName());
+		} else {
+			callees.put(callee.getMethodName(), count - 1);
+		}
+	}
+
+	/**
+	 * Re-scans the calls of the given methods on the next query. Use this
+	 * after transformations that add or remove calls without calling
+	 * addCall or removeCall.
+	 * @param changed
+	 */
+	public synchronized void updateCalls(Collection<Method> changed) {
+		for (Method m : changed) {
+			if (methods.get(m.getMethodName()) == m) {
+				calls.remove(m.getMethodName());
+				unscanned.add(m.getMethodName());
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of calls from m to each callee, by callee name.
+	 * @param m
+	 * @return
+	 */
+	public synchronized Map<String, Integer> getCallCounts(Method m) {
+		scanCalls();
+		return new HashMap<String, Integer>(calleeCounts(m.getMethodName()));
+	}
+
+	public synchronized List<Method> getCallees(Method m) {
+		scanCalls();
+		List<Method> callees = new LinkedList<Method>();
+		for (String name : calleeCounts(m.getMethodName()).keySet()) {
+			Method callee = methods.get(name);
+			if (callee != null) {
+				callees.add(callee);
+			}
+		}
+		return callees;
+	}
+
+	/**
+	 * Returns the names of all methods that are reachable from the given
+	 * method in the call graph, including its own.
+	 * @param from
+	 * @return
+	 */
+	public synchronized Set<String> getReachableMethodNames(Method from) {
+		scanCalls();
+		Set<String> reachable = new HashSet<String>();
+		Deque<String> todo = new ArrayDeque<String>();
+		reachable.add(from.getMethodName());
+		todo.add(from.getMethodName());
+		while (!todo.isEmpty()) {
+			for (String callee : calleeCounts(todo.poll()).keySet()) {
+				if (reachable.add(callee)) {
+					todo.add(callee);
+				}
+			}
+		}
+		return reachable;
 	}
 
-	private void computeCallGraph() {
-		callGraph = new DefaultDirectedGraph<Method, DefaultEdge>(DefaultEdge.class);
+	/**
+	 * Removes all methods that are not reachable from the entry point.
+	 */
+	public synchronized void removeUnreachableMethods() {
+		Set<String> reachable = getReachableMethodNames(entryPoint);
+		List<Method> toRemove = new LinkedList<Method>();
+		for (Method m : methods.values()) {
+			if (!reachable.contains(m.getMethodName())) {
+				toRemove.add(m);
+			}
+		}
+		removeMethods(toRemove);
+	}
+
+	/**
+	 * Returns a snapshot of the call graph. Later changes to the program
+	 * are not reflected in the returned graph.
+	 * @return
+	 */
+	public synchronized DirectedGraph<Method, DefaultEdge> getCallGraph() {
+		scanCalls();
+		DirectedGraph<Method, DefaultEdge> callGraph = new DefaultDirectedGraph<Method, DefaultEdge>(DefaultEdge.class);
 		for (Method m : methods.values()) {
 			callGraph.addVertex(m);
 		}
 		for (Method m : methods.values()) {
-			for (CfgBlock b : m.vertexSet()) {
+			for (String name : calleeCounts(m.getMethodName()).keySet()) {
+				Method callee = methods.get(name);
+				if (callee != null) {
+					callGraph.addEdge(m, callee);
+				}
+			}
+		}
+		return callGraph;
+	}
+
+	private Map<String, Integer> calleeCounts(String caller) {
+		Map<String, Integer> callees = calls.get(caller);
+		if (callees == null) {
+			callees = new HashMap<String, Integer>();
+			calls.put(caller, callees);
+		}
+		return callees;
+	}
+
+	private void scanCalls() {
+		for (String name : unscanned) {
+			Map<String, Integer> callees = calleeCounts(name);
+			for (CfgBlock b : methods.get(name).vertexSet()) {
 				for (Statement s : b.getStatements()) {
 					if (s instanceof CallStatement) {
-						Method callee = ((CallStatement) s).getCallTarget();
-						if (!callGraph.containsEdge(m, callee)) {
-							callGraph.addEdge(m, callee);
-						}
+						String callee = ((CallStatement) s).getCallTarget().getMethodName();
+						Integer count = callees.get(callee);
+						callees.put(callee, count == null ? 1 : count + 1);
 					}
 				}
 			}
 		}
+		unscanned.clear();
+	}
+
+	/**
+	 * Returns a copy of this program with deep copies of all methods.
+	 * Calls in the copy refer to the copied methods. Variables, class
+	 * variables, and the type graph are shared with this program.
+	 * @return
+	 */
+	public synchronized Program deepCopy() {
+		Program copy = new Program();
+		copy.globalVariables.putAll(globalVariables);
+		Graphs.addGraph(copy.typeGraph, typeGraph);
+		// Method inherits a structural hashCode from the graph.
+		Map<Method, Method> methodCopies = new IdentityHashMap<Method, Method>();
+		for (Method m : methods.values()) {
+			methodCopies.put(m, m.createEmptyCopy(copy));
+		}
+		for (Map.Entry<Method, Method> entry : methodCopies.entrySet()) {
+			entry.getValue().copyBodyFrom(entry.getKey(), methodCopies);
+		}
+		if (entryPoint != null) {
+			copy.entryPoint = methodCopies.get(entryPoint);
+		}
+		return copy;
 	}
 
 	public String toString() {
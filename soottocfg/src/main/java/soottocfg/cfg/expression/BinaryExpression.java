@@ -3,7 +3,9 @@
  */
 package soottocfg.cfg.expression;
 
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -163,17 +165,44 @@ public class BinaryExpression extends Expression {
 		}
 	}
 
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
+		if (other instanceof BinaryExpression) {
+			BinaryExpression o = (BinaryExpression) other;
+			return this.op == o.op && this.hashCode() == o.hashCode() && this.left.equals(o.left)
+					&& this.right.equals(o.right);
+		}
+		return false;
+	}
+
+	@Override
+	protected int computeHashCode() {
+		int result = 17;
+		result = 37 * result + this.op.hashCode();
+		result = 37 * result + this.left.hashCode();
+		result = 37 * result + this.right.hashCode();
+		return result;
+	}
+
 	@Override
 	public BinaryExpression deepCopy() {		
 		return new BinaryExpression(getSourceLocation(), op, left.deepCopy(), right.deepCopy());
 	}
 
 	public BinaryExpression substitute(Map<Variable, Variable> subs) {
-		return new BinaryExpression(getSourceLocation(), op, left.substitute(subs), right.substitute(subs));
+		return intern(new BinaryExpression(getSourceLocation(), op, left.substitute(subs), right.substitute(subs)));
 	}
 
 	public BinaryExpression substituteVarWithExpression(Map<Variable, Expression> subs) {
-		return new BinaryExpression(getSourceLocation(), op, left.substituteVarWithExpression(subs), right.substituteVarWithExpression(subs));
+		return intern(new BinaryExpression(getSourceLocation(), op, left.substituteVarWithExpression(subs), right.substituteVarWithExpression(subs)));
+	}
+
+	@Override
+	List<Expression> getChildren() {
+		return Arrays.asList(left, right);
 	}
 
 }
@@ -4,7 +4,9 @@
 package soottocfg.cfg.expression;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -42,6 +44,13 @@ public abstract class Expression implements Node, Serializable {
 
 	private final SourceLocation sourceLocation;
 
+	// expressions are not modified after construction, so the hash code
+	// is computed at most once.
+	private transient int cachedHashCode = 0;
+
+	// true if this is the shared instance in the ExpressionFactory.
+	transient boolean interned = false;
+
 	public Expression(SourceLocation loc) {
 		this.sourceLocation = loc;
 	}
@@ -90,6 +99,45 @@ public abstract class Expression implements Node, Serializable {
 		return true;
 	}
 	
+	/**
+	 * Structural equality. Two expressions are equal if they have the
+	 * same shape and the same variables and literals at the leaves.
+	 * The source location is ignored.
+	 */
+	@Override
+	public abstract boolean equals(Object other);
+
+	@Override
+	public int hashCode() {
+		if (cachedHashCode == 0) {
+			cachedHashCode = computeHashCode();
+		}
+		return cachedHashCode;
+	}
+
+	/**
+	 * Computes the structural hash code that is cached by hashCode.
+	 * @return
+	 */
+	protected abstract int computeHashCode();
+
+	/**
+	 * The direct subexpressions, which ExpressionFactory compares by
+	 * reference. Leaves have none.
+	 * @return
+	 */
+	List<Expression> getChildren() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Returns the shared instance of e if expressions are interned (see
+	 * ExpressionFactory), and e otherwise.
+	 */
+	protected static <T extends Expression> T intern(T e) {
+		return ExpressionFactory.v().intern(e);
+	}
+
 	public abstract Expression deepCopy();
 	
 	/**
@@ -0,0 +1,122 @@
+/**
+ * 
+ */
+package soottocfg.cfg.expression;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import soottocfg.Options;
+
+/**
+ * Hash-consing for expressions. If Options.v().internExpressions() is set,
+ * substitute and substituteVarWithExpression return one shared instance
+ * for all expressions that are structurally equal, have the same source
+ * location, and, for inner nodes, the same children. Expressions are
+ * immutable, so sharing them is safe.
+ * 
+ * Children are compared by reference, because structural equality ignores
+ * their source locations. Hence, an inner node is only shared if all its
+ * children are shared instances. Nodes with other children are returned
+ * as they are, since no other node could ever match them. deepCopy always
+ * returns a new instance.
+ * 
+ * If interning is disabled, the factory returns its argument.
+ */
+public class ExpressionFactory {
+
+	private static volatile ExpressionFactory instance;
+
+	public static ExpressionFactory v() {
+		if (instance == null) {
+			synchronized (ExpressionFactory.class) {
+				if (instance == null) {
+					instance = new ExpressionFactory();
+				}
+			}
+		}
+		return instance;
+	}
+
+	public static void resetInstance() {
+		instance = null;
+	}
+
+	/**
+	 * An expression together with its source location and children. The
+	 * locations are compared by reference, because copies keep the
+	 * location of their original.
+	 */
+	private static final class Key {
+		private final Expression node;
+
+		Key(Expression node) {
+			this.node = node;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof Key) {
+				Expression o = ((Key) other).node;
+				return node.getSourceLocation() == o.getSourceLocation() && sameChildren(node, o) && node.equals(o);
+			}
+			return false;
+		}
+
+		private static boolean sameChildren(Expression a, Expression b) {
+			List<Expression> ac = a.getChildren();
+			List<Expression> bc = b.getChildren();
+			if (ac.size() != bc.size()) {
+				return false;
+			}
+			for (int i = 0; i < ac.size(); i++) {
+				if (ac.get(i) != bc.get(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			return node.hashCode();
+		}
+	}
+
+	private final ConcurrentMap<Key, Expression> pool = new ConcurrentHashMap<Key, Expression>();
+
+	private ExpressionFactory() {
+	}
+
+	/**
+	 * Returns the shared instance of e if interning is enabled and all
+	 * children of e are shared, and e otherwise.
+	 * @param e
+	 *            A new expression that is not yet visible to other threads.
+	 * @return An expression that is structurally equal to e and has the
+	 *         same source location and children.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Expression> T intern(T e) {
+		if (!Options.v().internExpressions()) {
+			return e;
+		}
+		for (Expression child : e.getChildren()) {
+			if (!child.interned) {
+				return e;
+			}
+		}
+		// set before e is published, so that every thread that gets e
+		// from the pool sees the flag.
+		e.interned = true;
+		Expression shared = pool.putIfAbsent(new Key(e), e);
+		if (shared == null) {
+			return e;
+		}
+		e.interned = false;
+		// equals is only true for expressions of the same class, so the
+		// cast is safe.
+		return (T) shared;
+	}
+}
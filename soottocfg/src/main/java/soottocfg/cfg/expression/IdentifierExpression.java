@@ -63,6 +63,19 @@ public class IdentifierExpression extends Expression {
 		return variable.getType();
 	}
 
+	@Override
+	public boolean equals(Object other) {
+		if (other instanceof IdentifierExpression) {
+			return this.variable.equals(((IdentifierExpression) other).variable);
+		}
+		return false;
+	}
+
+	@Override
+	protected int computeHashCode() {
+		return this.variable.hashCode();
+	}
+
 	@Override
 	public IdentifierExpression deepCopy() {		
 		return new IdentifierExpression(getSourceLocation(), variable);
@@ -70,9 +83,9 @@ public class IdentifierExpression extends Expression {
 	
 	public IdentifierExpression substitute(Map<Variable, Variable> subs) {
 		if (subs.containsKey(variable)) {
-			return new IdentifierExpression(getSourceLocation(), subs.get(variable));
+			return intern(new IdentifierExpression(getSourceLocation(), subs.get(variable)));
 		}
-		return new IdentifierExpression(getSourceLocation(), variable);
+		return intern(new IdentifierExpression(getSourceLocation(), variable));
 	}
 	
 	@Override
@@ -80,7 +93,7 @@ public class IdentifierExpression extends Expression {
 		if (subs.containsKey(variable)) {
 			return subs.get(variable).deepCopy();
 		}
-		return this.deepCopy();
+		return intern(this.deepCopy());
 	}
 
 
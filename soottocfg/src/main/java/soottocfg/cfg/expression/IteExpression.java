@@ -3,7 +3,9 @@
  */
 package soottocfg.cfg.expression;
 
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -74,6 +76,28 @@ public class IteExpression extends Expression {
 		return thenExpr.getType();
 	}
 
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
+		if (other instanceof IteExpression) {
+			IteExpression o = (IteExpression) other;
+			return this.hashCode() == o.hashCode() && this.condition.equals(o.condition)
+					&& this.thenExpr.equals(o.thenExpr) && this.elseExpr.equals(o.elseExpr);
+		}
+		return false;
+	}
+
+	@Override
+	protected int computeHashCode() {
+		int result = 23;
+		result = 37 * result + this.condition.hashCode();
+		result = 37 * result + this.thenExpr.hashCode();
+		result = 37 * result + this.elseExpr.hashCode();
+		return result;
+	}
+
 	@Override
 	public IteExpression deepCopy() {		
 		return new IteExpression(getSourceLocation(), condition.deepCopy(), thenExpr.deepCopy(), elseExpr.deepCopy());
@@ -81,12 +105,17 @@ public class IteExpression extends Expression {
 
 	@Override
 	public IteExpression substitute(Map<Variable, Variable> subs) {
-		return new IteExpression(getSourceLocation(), condition.substitute(subs), thenExpr.substitute(subs), elseExpr.substitute(subs));
+		return intern(new IteExpression(getSourceLocation(), condition.substitute(subs), thenExpr.substitute(subs), elseExpr.substitute(subs)));
 	}
 
 	@Override
 	public IteExpression substituteVarWithExpression(Map<Variable, Expression> subs) {
-		return new IteExpression(getSourceLocation(), condition.substituteVarWithExpression(subs), thenExpr.substituteVarWithExpression(subs), elseExpr.substituteVarWithExpression(subs));
+		return intern(new IteExpression(getSourceLocation(), condition.substituteVarWithExpression(subs), thenExpr.substituteVarWithExpression(subs), elseExpr.substituteVarWithExpression(subs)));
+	}
+
+	@Override
+	List<Expression> getChildren() {
+		return Arrays.asList(condition, thenExpr, elseExpr);
 	}
 	
 }
@@ -92,6 +92,23 @@ public class TupleAccessExpression extends Expression {
 		return projectionType;
 	}
 
+	@Override
+	public boolean equals(Object other) {
+		if (other instanceof TupleAccessExpression) {
+			TupleAccessExpression o = (TupleAccessExpression) other;
+			return this.tupleKey.equals(o.tupleKey) && this.tupleVariable.equals(o.tupleVariable);
+		}
+		return false;
+	}
+
+	@Override
+	protected int computeHashCode() {
+		int result = 29;
+		result = 37 * result + this.tupleVariable.hashCode();
+		result = 37 * result + this.tupleKey.hashCode();
+		return result;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
@@ -119,9 +136,9 @@ public class TupleAccessExpression extends Expression {
 	@Override
 	public Expression substitute(Map<Variable, Variable> subs) {
 		if (subs.containsKey(tupleVariable)) {
-			return new TupleAccessExpression(this.getSourceLocation(), subs.get(tupleVariable), tupleKey);
+			return intern(new TupleAccessExpression(this.getSourceLocation(), subs.get(tupleVariable), tupleKey));
 		}
-		return new TupleAccessExpression(this.getSourceLocation(), tupleVariable, tupleKey);
+		return intern(new TupleAccessExpression(this.getSourceLocation(), tupleVariable, tupleKey));
 	}
 
 	@Override
@@ -130,7 +147,7 @@ public class TupleAccessExpression extends Expression {
 //			return new TupleAccessExpression(this.getSourceLocation(), subs.get(tupleVariable), tupleKey);
 //			throw new RuntimeException("Not expected! " + subs.get(tupleVariable));
 		}
-		return this.deepCopy();
+		return intern(this.deepCopy());
 	}
 	
 }
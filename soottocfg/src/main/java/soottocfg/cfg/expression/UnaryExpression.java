@@ -3,7 +3,9 @@
  */
 package soottocfg.cfg.expression;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -89,6 +91,26 @@ public class UnaryExpression extends Expression {
 		throw new RuntimeException("Unknown case " + op);
 	}
 
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
+		if (other instanceof UnaryExpression) {
+			UnaryExpression o = (UnaryExpression) other;
+			return this.op == o.op && this.hashCode() == o.hashCode() && this.expression.equals(o.expression);
+		}
+		return false;
+	}
+
+	@Override
+	protected int computeHashCode() {
+		int result = 19;
+		result = 37 * result + this.op.hashCode();
+		result = 37 * result + this.expression.hashCode();
+		return result;
+	}
+
 	@Override
 	public UnaryExpression deepCopy() {		
 		return new UnaryExpression(getSourceLocation(), op, expression.deepCopy());
@@ -96,12 +118,17 @@ public class UnaryExpression extends Expression {
 
 	@Override
 	public UnaryExpression substitute(Map<Variable, Variable> subs) {
-		return new UnaryExpression(getSourceLocation(), op, expression.substitute(subs));
+		return intern(new UnaryExpression(getSourceLocation(), op, expression.substitute(subs)));
 	}
 
 	@Override
 	public UnaryExpression substituteVarWithExpression(Map<Variable, Expression> subs) {
-		return new UnaryExpression(getSourceLocation(), op, expression.substituteVarWithExpression(subs));
+		return intern(new UnaryExpression(getSourceLocation(), op, expression.substituteVarWithExpression(subs)));
+	}
+
+	@Override
+	List<Expression> getChildren() {
+		return Collections.singletonList(expression);
 	}
 	
 }
@@ -87,7 +87,7 @@ public class IntegerLiteral extends Expression implements Literal{
 	}
 
 	@Override
-	public int hashCode() {
+	protected int computeHashCode() {
 		return value.hashCode();
 	}
 
@@ -98,12 +98,12 @@ public class IntegerLiteral extends Expression implements Literal{
 	
 	@Override
 	public Expression substitute(Map<Variable, Variable> subs) {
-		return this.deepCopy();
+		return intern(new IntegerLiteral(getSourceLocation(), value));
 	}
 
 	@Override
 	public Expression substituteVarWithExpression(Map<Variable, Expression> subs) {
-		return this.deepCopy();
+		return intern(this.deepCopy());
 	}
 
 }
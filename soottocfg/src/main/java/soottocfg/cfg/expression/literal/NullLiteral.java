@@ -60,7 +60,7 @@ public class NullLiteral extends Expression implements Literal{
 	}
 
 	@Override
-	public int hashCode() {
+	protected int computeHashCode() {
 		return 17;
 	}
 
@@ -71,12 +71,12 @@ public class NullLiteral extends Expression implements Literal{
 
 	@Override
 	public Expression substitute(Map<Variable, Variable> subs) {
-		return this.deepCopy();
+		return intern(new NullLiteral(getSourceLocation()));
 	}
 
 	@Override
 	public Expression substituteVarWithExpression(Map<Variable, Expression> subs) {
-		return this.deepCopy();
+		return intern(this.deepCopy());
 	}
 	
 }
@@ -7,7 +7,10 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -17,6 +20,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.jgrapht.DirectedGraph;
+import org.jgrapht.Graphs;
 import org.jgrapht.alg.BellmanFordShortestPath;
 import org.jgrapht.ext.DOTExporter;
 import org.jgrapht.ext.StringNameProvider;
@@ -36,11 +40,13 @@ import soottocfg.cfg.SourceLocation;
 import soottocfg.cfg.expression.Expression;
 import soottocfg.cfg.expression.IdentifierExpression;
 import soottocfg.cfg.statement.AssignStatement;
+import soottocfg.cfg.statement.CallStatement;
+import soottocfg.cfg.statement.Statement;
+import soottocfg.cfg.util.GraphUtil;
 import soottocfg.cfg.type.Type;
 import soottocfg.cfg.variable.Variable;
 import soottocfg.soot.transformers.ArrayTransformer;
 import soottocfg.soot.util.SootTranslationHelpers;
-import soottocfg.util.SetOperations;
 
 /**
  * @author schaef extends DefaultDirectedGraph<Statement, DefaultEdge>
@@ -134,6 +140,67 @@ public class Method extends AbstractBaseGraph<CfgBlock, CfgEdge> implements Node
 		return subgraphMethod;
 	}
 
+	/**
+	 * Creates a method with the same signature as this method, but without
+	 * a body, in program p. See copyBodyFrom.
+	 * @param p
+	 * @return
+	 */
+	public Method createEmptyCopy(Program p) {
+		Preconditions.checkArgument(p.lookupMethod(methodName) == null,
+				"Method with name " + methodName + " already exists");
+		Method m = new Method(location, methodName, parameterList, returnTypes);
+		p.addMethod(m);
+		return m;
+	}
+
+	/**
+	 * Replaces the body of this method by a deep copy of the body of
+	 * original. Calls to a method that is a key in methodCopies are
+	 * redirected to its copy. Variables are not copied.
+	 * @param original
+	 * @param methodCopies
+	 */
+	public void copyBodyFrom(Method original, Map<Method, Method> methodCopies) {
+		removeAllVertices(new HashSet<CfgBlock>(vertexSet()));
+		Map<CfgBlock, CfgBlock> blockCopies = new HashMap<CfgBlock, CfgBlock>();
+		for (CfgBlock b : original.vertexSet()) {
+			CfgBlock copy = new CfgBlock(this, b.getLabel());
+			List<Statement> stmtCopy = new LinkedList<Statement>();
+			for (Statement s : b.getStatements()) {
+				Statement sCopy = s.deepCopy();
+				if (sCopy instanceof CallStatement) {
+					CallStatement call = (CallStatement) sCopy;
+					Method target = methodCopies.get(call.getCallTarget());
+					if (target != null) {
+						sCopy = new CallStatement(call.getSourceLocation(), target, call.getArguments(),
+								call.getReceiver());
+					}
+				}
+				stmtCopy.add(sCopy);
+			}
+			copy.setStatements(stmtCopy);
+			blockCopies.put(b, copy);
+		}
+		for (CfgEdge e : original.edgeSet()) {
+			CfgEdge copy = addEdge(blockCopies.get(original.getEdgeSource(e)),
+					blockCopies.get(original.getEdgeTarget(e)));
+			if (e.getLabel().isPresent()) {
+				copy.setLabel(e.getLabel().get().deepCopy());
+			}
+		}
+		thisVariable = original.thisVariable;
+		returnVariables = (original.returnVariables == null) ? null
+				: new LinkedList<Variable>(original.returnVariables);
+		locals = new LinkedHashSet<Variable>(original.locals);
+		source = blockCopies.get(original.source);
+		sink = blockCopies.get(original.sink);
+		isProgramEntry = original.isProgramEntry;
+		isStub = original.isStub;
+		sourceBF = null;
+		sinkBF = null;
+	}
+
 	public String getMethodName() {
 		return this.methodName;
 	}
@@ -479,47 +546,117 @@ public class Method extends AbstractBaseGraph<CfgBlock, CfgEdge> implements Node
 	/**
 	 * Return the set of live variable at the entry of each block. A variable is
 	 * live between its first and last use. Following the algorithm on p610 of
-	 * the dragon book, 2nd ed.
+	 * the dragon book, 2nd ed., but with a worklist instead of round-robin
+	 * iteration and with the sets represented as bit sets over a dense
+	 * numbering of the variables in this method.
 	 * 
 	 * @return
 	 */
 	public LiveVars<CfgBlock> computeBlockLiveVariables() {
-		Set<CfgBlock> cfg = this.vertexSet();
-
-		// Reserve the necessary size in the hashmap
-		Map<CfgBlock, Set<Variable>> in = new HashMap<CfgBlock, Set<Variable>>(cfg.size());
-		Map<CfgBlock, Set<Variable>> out = new HashMap<CfgBlock, Set<Variable>>(cfg.size());
-
-		// cache these to save time
-		Map<CfgBlock, Set<Variable>> use = new HashMap<CfgBlock, Set<Variable>>(cfg.size());
-		Map<CfgBlock, Set<Variable>> def = new HashMap<CfgBlock, Set<Variable>>(cfg.size());
-
-		// Start by initializing in to empty. The book does this separately for
-		// exit and non exit blocks, but that's not necessary
-		// TODO can exit blocks have variables? E.g. can they return values? In
-		// which case we should actually recurse over all blocks!
-		for (CfgBlock b : cfg) {
-			in.put(b, new HashSet<Variable>());
-			use.put(b, b.getUseVariables());
-			def.put(b, b.getDefVariables());
+		// A backward analysis converges fastest if blocks are visited
+		// after their successors, i.e., in reverse of the reverse postorder.
+		List<CfgBlock> order = GraphUtil.getReversePostOrder(this);
+		Collections.reverse(order);
+		final int size = order.size();
+
+		Map<CfgBlock, Integer> blockIndex = new HashMap<CfgBlock, Integer>(size);
+		for (CfgBlock b : order) {
+			blockIndex.put(b, blockIndex.size());
+		}
+		// number the variables densely, so that sets of variables can be
+		// represented as bit sets.
+		Map<Variable, Integer> varIndex = new HashMap<Variable, Integer>();
+		List<Variable> variables = new ArrayList<Variable>();
+
+		BitSet[] use = new BitSet[size];
+		BitSet[] def = new BitSet[size];
+		// the part of live out that does not depend on the successors.
+		BitSet[] outInit = new BitSet[size];
+		BitSet[] in = new BitSet[size];
+		BitSet[] out = new BitSet[size];
+		int[][] successors = new int[size][];
+		int[][] predecessors = new int[size][];
+
+		for (int i = 0; i < size; i++) {
+			CfgBlock b = order.get(i);
+			use[i] = toBitSet(b.getUseVariables(), varIndex, variables);
+			def[i] = toBitSet(b.getDefVariables(), varIndex, variables);
+			in[i] = new BitSet();
+			// Exit blocks have all out params live at exit (see
+			// CfgBlock.computeLiveOut)
+			if (b.isExit()) {
+				outInit[i] = toBitSet(getOutParams(), varIndex, variables);
+			} else {
+				Set<Variable> edgeUses = new HashSet<Variable>();
+				for (CfgEdge edge : outgoingEdgesOf(b)) {
+					if (edge.getLabel().isPresent()) {
+						edgeUses.addAll(edge.getLabel().get().getUseVariables());
+					}
+				}
+				outInit[i] = toBitSet(edgeUses, varIndex, variables);
+			}
+			successors[i] = toIndices(Graphs.successorListOf(this, b), blockIndex);
+			predecessors[i] = toIndices(Graphs.predecessorListOf(this, b), blockIndex);
 		}
 
-		boolean changed = false;
-
-		do {
-			changed = false;
-			for (CfgBlock b : cfg) {
-				out.put(b, b.computeLiveOut(in));
-				Set<Variable> newIn = SetOperations.union(use.get(b), SetOperations.minus(out.get(b), def.get(b)));
-
-				if (!newIn.equals(in.get(b))) {
-					changed = true;
-					in.put(b, newIn);
+		BitSet worklist = new BitSet(size);
+		worklist.set(0, size);
+		for (int i = worklist.nextSetBit(0); i >= 0; i = worklist.nextSetBit(0)) {
+			worklist.clear(i);
+			BitSet newOut = (BitSet) outInit[i].clone();
+			for (int suc : successors[i]) {
+				newOut.or(in[suc]);
+			}
+			out[i] = newOut;
+			BitSet newIn = (BitSet) newOut.clone();
+			newIn.andNot(def[i]);
+			newIn.or(use[i]);
+			if (!newIn.equals(in[i])) {
+				in[i] = newIn;
+				for (int pre : predecessors[i]) {
+					worklist.set(pre);
 				}
 			}
-		} while (changed);
+		}
 
-		return new LiveVars<CfgBlock>(in, out);
+		Map<CfgBlock, Set<Variable>> liveIn = new HashMap<CfgBlock, Set<Variable>>(size);
+		Map<CfgBlock, Set<Variable>> liveOut = new HashMap<CfgBlock, Set<Variable>>(size);
+		for (int i = 0; i < size; i++) {
+			liveIn.put(order.get(i), toVariables(in[i], variables));
+			liveOut.put(order.get(i), toVariables(out[i], variables));
+		}
+		return new LiveVars<CfgBlock>(liveIn, liveOut);
+	}
+
+	private static BitSet toBitSet(Collection<Variable> vars, Map<Variable, Integer> varIndex,
+			List<Variable> variables) {
+		BitSet bits = new BitSet();
+		for (Variable v : vars) {
+			Integer idx = varIndex.get(v);
+			if (idx == null) {
+				idx = variables.size();
+				varIndex.put(v, idx);
+				variables.add(v);
+			}
+			bits.set(idx);
+		}
+		return bits;
+	}
+
+	private static Set<Variable> toVariables(BitSet bits, List<Variable> variables) {
+		Set<Variable> vars = new HashSet<Variable>(bits.cardinality() * 2);
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+			vars.add(variables.get(i));
+		}
+		return vars;
+	}
+
+	private static int[] toIndices(List<CfgBlock> blocks, Map<CfgBlock, Integer> blockIndex) {
+		int[] indices = new int[blocks.size()];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = blockIndex.get(blocks.get(i));
+		}
+		return indices;
 	}
 
 	public int distanceToSource(CfgBlock b) {
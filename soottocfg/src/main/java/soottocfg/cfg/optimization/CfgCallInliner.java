@@ -3,17 +3,27 @@
  */
 package soottocfg.cfg.optimization;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jgrapht.Graphs;
 
 import com.google.common.base.Verify;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 
+import soottocfg.cfg.LiveVars;
 import soottocfg.cfg.Program;
 import soottocfg.cfg.SourceLocation;
 import soottocfg.cfg.expression.Expression;
@@ -22,8 +32,11 @@ import soottocfg.cfg.method.CfgEdge;
 import soottocfg.cfg.method.Method;
 import soottocfg.cfg.statement.AssignStatement;
 import soottocfg.cfg.statement.CallStatement;
+import soottocfg.cfg.statement.PullStatement;
+import soottocfg.cfg.statement.PushStatement;
 import soottocfg.cfg.statement.Statement;
 import soottocfg.cfg.type.ReferenceType;
+import soottocfg.cfg.util.GraphUtil;
 import soottocfg.cfg.variable.Variable;
 import soottocfg.soot.transformers.ArrayTransformer;
 
@@ -45,6 +58,96 @@ public class CfgCallInliner {
 	Set<String> alreadyInlined = new HashSet<String>();
 	final Program program;
 
+	/*
+	 * The benefit of a push/pull pair that the PushPullSimplifier may
+	 * remove after inlining, relative to the benefit of removing the call.
+	 */
+	private static final double PUSH_PULL_PAIR_WEIGHT = 2.0;
+
+	/**
+	 * What the cost model needs to know about a method.
+	 */
+	private static class MethodProfile {
+		int stmts = 0;
+		// the largest number of variables live at a block, i.e., the
+		// largest arity of the Horn predicates of the method.
+		int arity = 0;
+		final Map<String, Integer> pushs = new HashMap<String, Integer>();
+		final Map<String, Integer> pulls = new HashMap<String, Integer>();
+	}
+
+	/**
+	 * The body of a callee with a slot variable for each of its in params,
+	 * out params, and locals, so it can be copied to any call site. Each
+	 * call site creates one fresh local per slot and substitutes them into
+	 * the statements and edge labels of the template. The slots are looked
+	 * up by identity, which is cheaper than the structural equality of
+	 * variables. Slot names are unique, so an interned identifier of a slot
+	 * (see ExpressionFactory) always refers to that slot.
+	 * 
+	 * The statements are still copied at every call site, because later
+	 * passes change statements in place (e.g., PullStatement.canAffect).
+	 */
+	private static class CalleeTemplate {
+		final List<Variable> slots = new ArrayList<Variable>();
+		// the names of the copies of each slot without the suffix.
+		final List<String> namePrefixes = new ArrayList<String>();
+		final List<Variable> inParams = new ArrayList<Variable>();
+		final List<Variable> outParams = new ArrayList<Variable>();
+		final List<List<Statement>> blocks = new ArrayList<List<Statement>>();
+		// the edges, with their source and target as indices into blocks,
+		// and their labels or null.
+		final List<Expression> edgeLabels = new ArrayList<Expression>();
+		int[] edgeSources, edgeTargets;
+		// the source and sink block, or -1 if the sink is not copied.
+		int source, sink;
+		final List<Method> callTargets = new ArrayList<Method>();
+	}
+
+	// the templates of the callees that did not change since, by name.
+	private final Map<String, CalleeTemplate> templates = new HashMap<String, CalleeTemplate>();
+	private static final AtomicInteger nextSlot = new AtomicInteger();
+
+	/**
+	 * A call that may be inlined, scored when its caller and callee had
+	 * the given versions.
+	 */
+	private static class InlineCandidate {
+		final String caller;
+		final CallStatement call;
+		final int callerVersion, calleeVersion;
+		final int cost;
+		final double profit;
+
+		InlineCandidate(String caller, CallStatement call, int callerVersion, int calleeVersion, int cost,
+				double profit) {
+			this.caller = caller;
+			this.call = call;
+			this.callerVersion = callerVersion;
+			this.calleeVersion = calleeVersion;
+			this.cost = cost;
+			this.profit = profit;
+		}
+	}
+
+	// the profiles and live variables of the methods that did not change since, by name.
+	private final Map<String, MethodProfile> profiles = new HashMap<String, MethodProfile>();
+	private final Map<String, LiveVars<CfgBlock>> liveVars = new HashMap<String, LiveVars<CfgBlock>>();
+
+	// how often calls were inlined into each method, by name.
+	private final Map<String, Integer> versions = new HashMap<String, Integer>();
+
+	/*
+	 * The blocks that were replaced by inlining but are not removed yet, by
+	 * method name. They are removed at the end, because otherwise the
+	 * numbering of the blocks gets all messed up. Until then, they must not
+	 * be copied along with their method.
+	 */
+	private final Map<String, Set<CfgBlock>> replacedBlocks = new HashMap<String, Set<CfgBlock>>();
+
+	// the block of each call that is a candidate for inlining.
+	private final Map<CallStatement, CfgBlock> callBlocks = new IdentityHashMap<CallStatement, CfgBlock>();
+
 	/**
 	 * 
 	 */
@@ -60,11 +163,11 @@ public class CfgCallInliner {
 				totalCallsTo.put(m.getMethodName(), 0);
 			}
 
-			for (Method callee : calledMethods(m)) {
-				if (!totalCallsTo.containsKey(callee.getMethodName())) {
-					totalCallsTo.put(callee.getMethodName(), 0);
+			for (Entry<String, Integer> entry : p.getCallCounts(m).entrySet()) {
+				if (!totalCallsTo.containsKey(entry.getKey())) {
+					totalCallsTo.put(entry.getKey(), 0);
 				}
-				totalCallsTo.put(callee.getMethodName(), totalCallsTo.get(callee.getMethodName()) + 1);
+				totalCallsTo.put(entry.getKey(), totalCallsTo.get(entry.getKey()) + entry.getValue());
 			}
 
 			int stmtCount = 0;
@@ -74,54 +177,232 @@ public class CfgCallInliner {
 		}
 	}
 
-	private List<Method> calledMethods(Method m) {
-		List<Method> res = new LinkedList<Method>();
-		for (CfgBlock b : m.vertexSet()) {
+	public void inlineFromMain(int maxSize, int maxOccurences) {
+		if (maxSize <= 0 && maxOccurences <= 0) {
+			return;
+		}
+		Method mainMethod = program.getEntryPoint();
+		inlineCalls(mainMethod, maxSize, maxOccurences);
+		templates.clear();
+		FoldStraighLineSeq folder = new FoldStraighLineSeq();
+		folder.fold(mainMethod);
+
+		program.removeUnreachableMethods();
+
+		// System.err.println(program);
+	}
+
+	/**
+	 * Inlines the most profitable calls until the statements of all methods
+	 * that are reachable from main have grown by budgetPercent percent.
+	 * The calls of all reachable methods are ranked in one queue, and the
+	 * most profitable call that still fits into the budget is inlined
+	 * first. Calls inside of a strongly connected component of the call
+	 * graph (i.e., recursive calls) are never inlined.
+	 * 
+	 * The cost of a call is the number of statements it adds. Its benefit
+	 * is the call itself plus the push/pull pairs that may be simplified
+	 * after inlining. The profit is the benefit divided by the cost and
+	 * by the growth of the estimated Horn predicate arity of the caller.
+	 * 
+	 * Inlining a call changes the cost and profit of the calls to and from
+	 * its caller. Such calls are scored again when they reach the head of
+	 * the queue. So, a callee is only copied after all calls inside of it
+	 * that are more profitable have been inlined into it, and the calls
+	 * that are copied with its body join the queue as calls of the caller.
+	 * 
+	 * @param budgetPercent
+	 */
+	public void inlineWithBudget(int budgetPercent) {
+		Method mainMethod = program.getEntryPoint();
+		List<Method> reachable = new ArrayList<Method>();
+		long programSize = 0;
+		for (String name : program.getReachableMethodNames(mainMethod)) {
+			Method m = program.lookupMethod(name);
+			if (m != null) {
+				reachable.add(m);
+				programSize += profile(m).stmts;
+			}
+		}
+		long budget = programSize * budgetPercent / 100;
+		Map<String, Integer> sccOf = callGraphComponents(reachable);
+
+		PriorityQueue<InlineCandidate> queue = new PriorityQueue<InlineCandidate>(11,
+				new Comparator<InlineCandidate>() {
+					@Override
+					public int compare(InlineCandidate o1, InlineCandidate o2) {
+						return Double.compare(o2.profit, o1.profit);
+					}
+				});
+		for (Method caller : reachable) {
+			addCandidates(caller, caller.vertexSet(), sccOf, queue);
+		}
+
+		for (Method caller : reachable) {
+			replacedBlocks.put(caller.getMethodName(), Sets.<CfgBlock> newIdentityHashSet());
+		}
+		while (!queue.isEmpty()) {
+			InlineCandidate candidate = queue.poll();
+			if (candidate.cost > budget) {
+				// the cost never decreases, because bodies only grow.
+				continue;
+			}
+			Method caller = program.lookupMethod(candidate.caller);
+			CfgBlock block = callBlocks.get(candidate.call);
+			if (candidate.callerVersion != version(candidate.caller)
+					|| candidate.calleeVersion != version(candidate.call.getCallTarget().getMethodName())) {
+				queue.add(score(caller, block, candidate.call));
+				continue;
+			}
+			replacedBlocks.get(candidate.caller).add(block);
+			List<CfgBlock> clones = copyCalleeBody(caller, block, candidate.call);
+			budget -= candidate.cost;
+			versions.put(candidate.caller, version(candidate.caller) + 1);
+			profiles.remove(candidate.caller);
+			liveVars.remove(candidate.caller);
+			addCandidates(caller, clones, sccOf, queue);
+		}
+		for (Entry<String, Set<CfgBlock>> entry : replacedBlocks.entrySet()) {
+			program.lookupMethod(entry.getKey()).removeAllVertices(entry.getValue());
+		}
+		replacedBlocks.clear();
+		callBlocks.clear();
+		templates.clear();
+		FoldStraighLineSeq folder = new FoldStraighLineSeq();
+		folder.fold(mainMethod);
+
+		program.removeUnreachableMethods();
+	}
+
+	/**
+	 * Scores the calls in the given blocks of caller to methods outside of
+	 * its strongly connected component and adds them to the queue.
+	 */
+	private void addCandidates(Method caller, Collection<CfgBlock> blocks, Map<String, Integer> sccOf,
+			PriorityQueue<InlineCandidate> queue) {
+		Integer callerScc = sccOf.get(caller.getMethodName());
+		for (CfgBlock b : blocks) {
 			for (Statement s : b.getStatements()) {
-				if (s instanceof CallStatement) {
-					CallStatement cs = (CallStatement) s;
-					res.add(cs.getCallTarget());
+				if (!(s instanceof CallStatement)) {
+					continue;
+				}
+				CallStatement cs = (CallStatement) s;
+				Method callee = cs.getCallTarget();
+				if (callerScc.equals(sccOf.get(callee.getMethodName())) || !canBeInlined(caller, callee)
+						|| callee.getSource() == null) {
+					continue;
 				}
+				callBlocks.put(cs, b);
+				queue.add(score(caller, b, cs));
 			}
 		}
-		return res;
 	}
 
-	private Set<Method> reachableMethod(Method main) {
-		Set<Method> reachable = new HashSet<Method>();
-		List<Method> todo = new LinkedList<Method>();
-		todo.add(main);
-		while (!todo.isEmpty()) {
-			Method m = todo.remove(0);
-			reachable.add(m);
-			for (Method n : calledMethods(m)) {
-				if (!reachable.contains(n) && !todo.contains(n)) {
-					todo.add(n);
-				}
+	private InlineCandidate score(Method caller, CfgBlock b, CallStatement cs) {
+		MethodProfile callerProfile = profile(caller);
+		LiveVars<CfgBlock> live = liveVars.get(caller.getMethodName());
+		if (live == null) {
+			live = caller.computeBlockLiveVariables();
+			liveVars.put(caller.getMethodName(), live);
+		}
+		Method callee = cs.getCallTarget();
+		MethodProfile calleeProfile = profile(callee);
+		final int cost = Math.max(1, calleeProfile.stmts + callee.getInParams().size() + callee.getOutParams().size());
+		int pairs = 0;
+		for (Entry<String, Integer> entry : calleeProfile.pulls.entrySet()) {
+			if (callerProfile.pushs.containsKey(entry.getKey())) {
+				pairs += Math.min(entry.getValue(), callerProfile.pushs.get(entry.getKey()));
+			}
+		}
+		for (Entry<String, Integer> entry : calleeProfile.pushs.entrySet()) {
+			if (callerProfile.pulls.containsKey(entry.getKey())) {
+				pairs += Math.min(entry.getValue(), callerProfile.pulls.get(entry.getKey()));
 			}
 		}
-		return reachable;
+		// the variables of the caller that are live after the call
+		// are live in all inlined blocks.
+		final int arity = Math.max(callerProfile.arity, live.liveOut.get(b).size() + calleeProfile.arity);
+		final double arityGrowth = Math.max(1, arity) / (double) Math.max(1, callerProfile.arity);
+		return new InlineCandidate(caller.getMethodName(), cs, version(caller.getMethodName()),
+				version(callee.getMethodName()), cost, (1 + PUSH_PULL_PAIR_WEIGHT * pairs) / (cost * arityGrowth));
 	}
 
-	public void inlineFromMain(int maxSize, int maxOccurences) {
-		if (maxSize <= 0 && maxOccurences <= 0) {
-			return;
+	private int version(String methodName) {
+		Integer version = versions.get(methodName);
+		return version == null ? 0 : version;
+	}
+
+	/**
+	 * Records that the candidate calls in b have been moved into b.
+	 */
+	private void moveCallBlocks(CfgBlock b) {
+		for (Statement s : b.getStatements()) {
+			if (s instanceof CallStatement && callBlocks.containsKey(s)) {
+				callBlocks.put((CallStatement) s, b);
+			}
 		}
-		Method mainMethod = program.getEntryPoint();
-		inlineCalls(mainMethod, maxSize, maxOccurences);
-		FoldStraighLineSeq folder = new FoldStraighLineSeq();
-		folder.fold(mainMethod);
+	}
 
-		Set<Method> reachable = reachableMethod(mainMethod);
-		Set<Method> toRemove = new HashSet<Method>();
-		for (Method m : program.getMethods()) {
-			if (!reachable.contains(m)) {
-				toRemove.add(m);
+	private MethodProfile profile(Method m) {
+		MethodProfile profile = profiles.get(m.getMethodName());
+		if (profile != null) {
+			return profile;
+		}
+		profile = new MethodProfile();
+		Set<CfgBlock> replaced = replacedBlocks.get(m.getMethodName());
+		for (CfgBlock b : m.vertexSet()) {
+			if (replaced != null && replaced.contains(b)) {
+				continue;
 			}
+			profile.stmts += b.getStatements().size();
+			for (Statement s : b.getStatements()) {
+				if (s instanceof PushStatement) {
+					increment(profile.pushs, ((PushStatement) s).getClassSignature().getName());
+				} else if (s instanceof PullStatement) {
+					increment(profile.pulls, ((PullStatement) s).getClassSignature().getName());
+				}
+			}
+		}
+		for (Set<Variable> vars : m.computeBlockLiveVariables().liveIn.values()) {
+			profile.arity = Math.max(profile.arity, vars.size());
 		}
-		program.removeMethods(toRemove);
+		profiles.put(m.getMethodName(), profile);
+		return profile;
+	}
 
-		// System.err.println(program);
+	private static void increment(Map<String, Integer> counts, String key) {
+		Integer count = counts.get(key);
+		counts.put(key, count == null ? 1 : count + 1);
+	}
+
+	/**
+	 * Returns the strongly connected component of the call graph for each
+	 * of the given methods.
+	 */
+	private Map<String, Integer> callGraphComponents(List<Method> methods) {
+		// use names, because the hashCode of a method changes while we inline.
+		final int n = methods.size();
+		Map<String, Integer> node = new HashMap<String, Integer>();
+		for (int v = 0; v < n; v++) {
+			node.put(methods.get(v).getMethodName(), v);
+		}
+		int[][] succ = new int[n][];
+		for (int v = 0; v < n; v++) {
+			List<Integer> callees = new ArrayList<Integer>();
+			for (String callee : program.getCallCounts(methods.get(v)).keySet()) {
+				Integer w = node.get(callee);
+				if (w != null) {
+					callees.add(w);
+				}
+			}
+			succ[v] = Ints.toArray(callees);
+		}
+		int[] component = GraphUtil.stronglyConnectedComponents(succ);
+		Map<String, Integer> sccOf = new HashMap<String, Integer>();
+		for (int v = 0; v < n; v++) {
+			sccOf.put(methods.get(v).getMethodName(), component[v]);
+		}
+		return sccOf;
 	}
 
 	private boolean canBeInlined(Method caller, Method callee) {
@@ -177,7 +458,7 @@ public class CfgCallInliner {
 			}
 		}
 		method.removeAllVertices(toRemove);
-
+		templates.remove(method.getMethodName());
 	}
 
 	/**
@@ -234,6 +515,7 @@ public class CfgCallInliner {
 						m.addEdge(nextBlock, suc, newEdge);
 					}
 					m.addEdge(b, nextBlock);
+					templates.remove(m.getMethodName());
 					splitBlockIfNecessary(m, nextBlock, maxSize, maxOccurences);
 					return;
 				}
@@ -241,6 +523,71 @@ public class CfgCallInliner {
 		}
 	}
 
+	/**
+	 * Returns the template of callee, which is built on first use and
+	 * dropped whenever the body of callee changes.
+	 */
+	private CalleeTemplate template(Method callee) {
+		CalleeTemplate template = templates.get(callee.getMethodName());
+		if (template != null) {
+			return template;
+		}
+		template = new CalleeTemplate();
+		Map<Variable, Variable> slotOf = new HashMap<Variable, Variable>();
+		List<Variable> toCopy = new LinkedList<Variable>();
+		toCopy.addAll(callee.getInParams());
+		toCopy.addAll(callee.getOutParams());
+		toCopy.addAll(callee.getLocals());
+		for (Variable v : toCopy) {
+			Variable slot = new Variable("$slot" + nextSlot.incrementAndGet(), v.getType());
+			template.slots.add(slot);
+			template.namePrefixes.add("cp_" + v.getName() + "_");
+			slotOf.put(v, slot);
+		}
+		for (Variable v : callee.getInParams()) {
+			template.inParams.add(slotOf.get(v));
+		}
+		for (Variable v : callee.getOutParams()) {
+			template.outParams.add(slotOf.get(v));
+		}
+
+		Map<CfgBlock, Integer> blockIndex = new HashMap<CfgBlock, Integer>();
+		Set<CfgBlock> replaced = replacedBlocks.get(callee.getMethodName());
+		for (CfgBlock cur : callee.vertexSet()) {
+			if (replaced != null && replaced.contains(cur)) {
+				// not connected to the rest of the callee anymore.
+				continue;
+			}
+			List<Statement> statements = new ArrayList<Statement>(cur.getStatements().size());
+			for (Statement s : cur.getStatements()) {
+				statements.add(s.substitute(slotOf));
+				if (s instanceof CallStatement) {
+					template.callTargets.add(((CallStatement) s).getCallTarget());
+				}
+			}
+			blockIndex.put(cur, template.blocks.size());
+			template.blocks.add(statements);
+		}
+		List<Integer> sources = new ArrayList<Integer>();
+		List<Integer> targets = new ArrayList<Integer>();
+		for (CfgEdge edge : callee.edgeSet()) {
+			Integer src = blockIndex.get(callee.getEdgeSource(edge));
+			Integer tgt = blockIndex.get(callee.getEdgeTarget(edge));
+			if (src != null && tgt != null) {
+				sources.add(src);
+				targets.add(tgt);
+				template.edgeLabels.add(edge.getLabel().isPresent() ? edge.getLabel().get().substitute(slotOf) : null);
+			}
+		}
+		template.edgeSources = Ints.toArray(sources);
+		template.edgeTargets = Ints.toArray(targets);
+		template.source = blockIndex.get(callee.getSource());
+		Integer sink = blockIndex.get(callee.getSink());
+		template.sink = (sink == null) ? -1 : sink;
+		templates.put(callee.getMethodName(), template);
+		return template;
+	}
+
 	/**
 	 * Copies the body of callee into caller at the
 	 * position of call.
@@ -248,9 +595,9 @@ public class CfgCallInliner {
 	 * @param caller
 	 * @param block
 	 * @param call
-	 * @param callee
+	 * @return The copies of the callee blocks.
 	 */
-	private void copyCalleeBody(Method caller, CfgBlock block, CallStatement call) {
+	private List<CfgBlock> copyCalleeBody(Method caller, CfgBlock block, CallStatement call) {
 		/*
 		 * First remove block and replace it by two blocks
 		 * preBlock that contains all statements of block up to the call, and
@@ -283,6 +630,8 @@ public class CfgCallInliner {
 			caller.addEdge(postBlock, post, newEdge);
 		}
 		Verify.verify(caller.outDegreeOf(block) + caller.inDegreeOf(block) == 0);
+		moveCallBlocks(preBlock);
+		moveCallBlocks(postBlock);
 		if (caller.getSource().equals(block)) {
 			caller.setSource(preBlock);
 		} else if (caller.getSink().equals(block)) {
@@ -293,77 +642,72 @@ public class CfgCallInliner {
 
 		Method callee = call.getCallTarget();
 		Verify.verifyNotNull(callee.getSource());
+		program.removeCall(caller, callee);
+		templates.remove(caller.getMethodName());
+		CalleeTemplate template = template(callee);
 		/*
-		 * Create a map from callee locals and formals to fresh caller locals.
+		 * Create a map from the slots of the template to fresh caller locals.
 		 */
-		Map<Variable, Variable> varSubstitionMap = new HashMap<Variable, Variable>();
-		List<Variable> toCopy = new LinkedList<Variable>();
-		toCopy.addAll(callee.getInParams());
-		toCopy.addAll(callee.getOutParams());
-		toCopy.addAll(callee.getLocals());
-
-		for (Variable v : toCopy) {
-			Variable local = new Variable("cp_" + v.getName() + "_" + (++freshInt), v.getType());
+		Map<Variable, Variable> varSubstitionMap = new IdentityHashMap<Variable, Variable>(template.slots.size());
+		for (int i = 0; i < template.slots.size(); i++) {
+			Variable slot = template.slots.get(i);
+			Variable local = new Variable(template.namePrefixes.get(i) + (++freshInt), slot.getType());
 			caller.addLocalVariable(local);
-			varSubstitionMap.put(v, local);
+			varSubstitionMap.put(slot, local);
 		}
 		SourceLocation loc = call.getSourceLocation();
-		for (int i = 0; i < callee.getInParams().size(); i++) {
-			Variable v = callee.getInParam(i);
-			preBlock.addStatement(
-					new AssignStatement(loc, varSubstitionMap.get(v).mkExp(loc), call.getArguments().get(i)));
+		for (int i = 0; i < template.inParams.size(); i++) {
+			preBlock.addStatement(new AssignStatement(loc, varSubstitionMap.get(template.inParams.get(i)).mkExp(loc),
+					call.getArguments().get(i)));
 		}
 		/*
 		 * Add call reachable blocks from the callee to the caller
 		 */
-		Map<CfgBlock, CfgBlock> cloneMap = new HashMap<CfgBlock, CfgBlock>();
-
-		for (CfgBlock cur : callee.vertexSet()) {
+		List<CfgBlock> clones = new ArrayList<CfgBlock>(template.blocks.size());
+		for (List<Statement> statements : template.blocks) {
 			CfgBlock clone = new CfgBlock(caller);
-			for (Statement s : cur.getStatements()) {
+			for (Statement s : statements) {
 				clone.addStatement(s.substitute(varSubstitionMap));
 			}
-			cloneMap.put(cur, clone);
+			clones.add(clone);
+		}
+		for (Method target : template.callTargets) {
+			program.addCall(caller, target);
 		}
 		/*
 		 * Add all edges for the copied blocks.
 		 */
-		for (CfgEdge edge : callee.edgeSet()) {
-			CfgBlock src = callee.getEdgeSource(edge);
-			CfgBlock tgt = callee.getEdgeTarget(edge);
-			if (cloneMap.containsKey(src) && cloneMap.containsKey(tgt)) {
-				CfgEdge newEdge = new CfgEdge();
-				if (edge.getLabel().isPresent()) {
-					newEdge.setLabel(edge.getLabel().get().substitute(varSubstitionMap));
-					// newEdge.setLabel(edge.getLabel().get());
-				}
-				caller.addEdge(cloneMap.get(src), cloneMap.get(tgt), newEdge);
+		for (int i = 0; i < template.edgeLabels.size(); i++) {
+			CfgEdge newEdge = new CfgEdge();
+			if (template.edgeLabels.get(i) != null) {
+				newEdge.setLabel(template.edgeLabels.get(i).substitute(varSubstitionMap));
 			}
+			caller.addEdge(clones.get(template.edgeSources[i]), clones.get(template.edgeTargets[i]), newEdge);
 		}
 		/*
 		 * Connect the copies blocks with the caller.
 		 */
-		caller.addEdge(preBlock, cloneMap.get(callee.getSource()));
-		if (cloneMap.containsKey(callee.getSink())) {
+		caller.addEdge(preBlock, clones.get(template.source));
+		if (template.sink >= 0) {
 			// if callee loops forever, this might not be reached.
-			caller.addEdge(cloneMap.get(callee.getSink()), postBlock);
+			caller.addEdge(clones.get(template.sink), postBlock);
 		}
 
 		/*
 		 * Now update the out variables
 		 */
 
-		for (int i = 0; i < callee.getOutParams().size(); i++) {
+		for (int i = 0; i < template.outParams.size(); i++) {
 			Expression receiver;
 			if (i < call.getReceiver().size()) {
 				receiver = call.getReceiver().get(i);
 				postBlock.addStatement(0, new AssignStatement(loc, receiver,
-						varSubstitionMap.get(callee.getOutParams().get(i)).mkExp(loc)));
+						varSubstitionMap.get(template.outParams.get(i)).mkExp(loc)));
 			} else {
 				System.err.println("More outparams than receivers " + call);
 			}
 		}
-
+		return clones;
 	}
 
 }
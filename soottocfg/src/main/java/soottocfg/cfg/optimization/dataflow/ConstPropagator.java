@@ -35,13 +35,11 @@ import soottocfg.soot.util.SootTranslationHelpers;
 public class ConstPropagator {
 
 	private static boolean cfgEquals(Expression s1, Expression s2) {
-		// TODO: equals currently broken
-		return s1.toString().equals(s2.toString());
+		return s1.equals(s2);
 	}
 
 	private static boolean cfgEquals(Statement s1, Statement s2) {
-		// TODO: equals currently broken
-		return s1.toString().equals(s2.toString());
+		return s1.structurallyEquals(s2);
 	}
 
 	public static void main(String[] args) {
@@ -53,6 +53,19 @@ public class AssertStatement extends Statement {
 		return new HashSet<IdentifierExpression>();
 	}
 
+	@Override
+	public boolean structurallyEquals(Statement other) {
+		if (other instanceof AssertStatement) {
+			return this.expression.equals(((AssertStatement) other).expression);
+		}
+		return false;
+	}
+
+	@Override
+	public int structuralHashCode() {
+		return 31 * 3 + this.expression.hashCode();
+	}
+
 	@Override
 	public AssertStatement deepCopy() {
 		return new AssertStatement(getSourceLocation(), expression.deepCopy());
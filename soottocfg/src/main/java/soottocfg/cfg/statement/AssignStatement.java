@@ -83,6 +83,23 @@ public class AssignStatement extends Statement {
 		return res;
 	}
 
+	@Override
+	public boolean structurallyEquals(Statement other) {
+		if (other instanceof AssignStatement) {
+			AssignStatement o = (AssignStatement) other;
+			return this.left.equals(o.left) && this.right.equals(o.right);
+		}
+		return false;
+	}
+
+	@Override
+	public int structuralHashCode() {
+		int result = 7;
+		result = 31 * result + this.left.hashCode();
+		result = 31 * result + this.right.hashCode();
+		return result;
+	}
+
 	@Override
 	public Statement deepCopy() {
 		return new AssignStatement(getSourceLocation(), left.deepCopy(), right.deepCopy());
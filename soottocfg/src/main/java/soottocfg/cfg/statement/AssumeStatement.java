@@ -58,6 +58,19 @@ public class AssumeStatement extends Statement {
 		return new HashSet<IdentifierExpression>();
 	}
 
+	@Override
+	public boolean structurallyEquals(Statement other) {
+		if (other instanceof AssumeStatement) {
+			return this.expression.equals(((AssumeStatement) other).expression);
+		}
+		return false;
+	}
+
+	@Override
+	public int structuralHashCode() {
+		return 31 * 5 + this.expression.hashCode();
+	}
+
 	@Override
 	public AssumeStatement deepCopy() {
 		return new AssumeStatement(getSourceLocation(), expression.deepCopy());
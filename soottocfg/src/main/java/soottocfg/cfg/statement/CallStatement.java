@@ -129,6 +129,25 @@ public class CallStatement extends Statement {
 		return res;
 	}
 
+	@Override
+	public boolean structurallyEquals(Statement other) {
+		if (other instanceof CallStatement) {
+			CallStatement o = (CallStatement) other;
+			return this.method == o.method && this.arguments.equals(o.arguments)
+					&& this.returnReceiver.equals(o.returnReceiver);
+		}
+		return false;
+	}
+
+	@Override
+	public int structuralHashCode() {
+		int result = 11;
+		result = 31 * result + this.method.getMethodName().hashCode();
+		result = 31 * result + this.arguments.hashCode();
+		result = 31 * result + this.returnReceiver.hashCode();
+		return result;
+	}
+
 	@Override
 	public CallStatement deepCopy() {
 		List<Expression> argCopy = new LinkedList<Expression>();
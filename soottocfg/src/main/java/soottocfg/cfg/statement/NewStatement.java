@@ -86,6 +86,23 @@ public class NewStatement extends Statement {
 		return this.counterVar;
 	}
 	
+	@Override
+	public boolean structurallyEquals(Statement other) {
+		if (other instanceof NewStatement) {
+			NewStatement o = (NewStatement) other;
+			return this.left.equals(o.left) && this.classVariable.equals(o.classVariable);
+		}
+		return false;
+	}
+
+	@Override
+	public int structuralHashCode() {
+		int result = 13;
+		result = 31 * result + this.left.hashCode();
+		result = 31 * result + this.classVariable.getName().hashCode();
+		return result;
+	}
+
 	@Override
 	public NewStatement deepCopy() {
 		return new NewStatement(getSourceLocation(), left.deepCopy(), this.classVariable, this.counterVar);
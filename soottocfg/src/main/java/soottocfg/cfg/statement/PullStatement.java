@@ -127,6 +127,27 @@ public class PullStatement extends Statement {
 		return sb.toString();
 	}
 
+	@Override
+	public boolean structurallyEquals(Statement other) {
+		if (other instanceof PullStatement) {
+			PullStatement o = (PullStatement) other;
+			return this.classConstant.equals(o.classConstant) && this.object.equals(o.object)
+					&& this.left.equals(o.left)
+					&& this.ghostExpressions.equals(o.ghostExpressions);
+		}
+		return false;
+	}
+
+	@Override
+	public int structuralHashCode() {
+		int result = 17;
+		result = 31 * result + this.classConstant.getName().hashCode();
+		result = 31 * result + this.object.hashCode();
+		result = 31 * result + this.left.hashCode();
+		result = 31 * result + this.ghostExpressions.hashCode();
+		return result;
+	}
+
 	@Override
 	public PullStatement deepCopy() {
 		List<IdentifierExpression> leftCopy = new LinkedList<IdentifierExpression>();
@@ -8,6 +8,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.base.Verify;
 
@@ -31,7 +32,7 @@ public class PushStatement extends Statement {
 	private final List<Expression> ghostExpressions;
 	
 	private final int id;	
-	private static int nextID = 0;
+	private static final AtomicInteger nextID = new AtomicInteger();
 	
 	/**
 	 * @param loc
@@ -89,7 +90,7 @@ public class PushStatement extends Statement {
 	
 	// had to put this in a method to silence findBugs...
 	private static int nextID() {
-		return ++nextID;
+		return nextID.incrementAndGet();
 	}
 	
     public ClassVariable getClassSignature() {
@@ -156,6 +157,28 @@ public class PushStatement extends Statement {
 		return sb.toString();
 	}
 
+	@Override
+	public boolean structurallyEquals(Statement other) {
+		if (other instanceof PushStatement) {
+			PushStatement o = (PushStatement) other;
+			return this.id == o.id && this.classConstant.equals(o.classConstant) && this.object.equals(o.object)
+					&& this.right.equals(o.right)
+					&& this.ghostExpressions.equals(o.ghostExpressions);
+		}
+		return false;
+	}
+
+	@Override
+	public int structuralHashCode() {
+		int result = 19;
+		result = 31 * result + this.id;
+		result = 31 * result + this.classConstant.getName().hashCode();
+		result = 31 * result + this.object.hashCode();
+		result = 31 * result + this.right.hashCode();
+		result = 31 * result + this.ghostExpressions.hashCode();
+		return result;
+	}
+
 	// TODO check where this is used and what to do with ID
 	@Override
 	public Statement deepCopy() {
@@ -78,6 +78,27 @@ public abstract class Statement implements Node, Serializable {
 		return this.sourceLocation.getLineNumber();
 	}
 	
+	/**
+	 * Returns true if other is the same kind of statement as this one
+	 * and all its expressions are structurally equal. The source location
+	 * and annotations added by later analyses (e.g., the pushes that can
+	 * affect a pull) are not compared.
+	 * 
+	 * Note that equals and hashCode are not overridden. Statements are
+	 * used as keys for their position in a block (e.g., when removing
+	 * statements or in the reaching definitions), and two structurally
+	 * equal statements in different places must not be confused.
+	 * @param other
+	 * @return True, if both statements are structurally equal.
+	 */
+	public abstract boolean structurallyEquals(Statement other);
+
+	/**
+	 * Hash code that is consistent with structurallyEquals.
+	 * @return
+	 */
+	public abstract int structuralHashCode();
+
 	public abstract Statement deepCopy();
 	
 	/**
@@ -26,6 +26,7 @@ public class ReferenceType extends Type {
 	private final ClassVariable classVariable;
 
 	private Map<String, Type> elementTypes = null;
+	private int elementTypesVersion = 0;
 
 	public ReferenceType(ClassVariable var) {
 		classVariable = var;
@@ -43,12 +44,17 @@ public class ReferenceType extends Type {
 	}
 
 	public Map<String, Type> getElementTypes() {
-		if (this.elementTypes==null) {
+		if (this.elementTypes==null
+				|| (classVariable != null && classVariable.getLayoutVersion() != elementTypesVersion)) {
 			/*
 			 * Compute element types on the fly to avoid problems
 			 * with recurive definitions.
 			 */			
 			elementTypes = new LinkedHashMap<String, Type>();
+			if (classVariable != null) {
+				// recompute if fields are added to the class later.
+				elementTypesVersion = classVariable.getLayoutVersion();
+			}
 			elementTypes.put(RefFieldName, IntType.instance() );
 			elementTypes.put(TypeFieldName, new TypeType());
 			if (soottocfg.Options.v().useAllocationSiteTupleElement) {
@@ -3,6 +3,8 @@
  */
 package soottocfg.cfg.util;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -84,66 +86,107 @@ public class DataFlowUtils  {
 		}
 	}
 	
+	/**
+	 * Computes the reaching definitions for every statement in m. The
+	 * analysis works on bit vectors over a dense numbering of the
+	 * statements. It first summarizes each block by its gen and kill set,
+	 * iterates a worklist over the blocks in reverse postorder until
+	 * the in-sets of the blocks are stable, and then expands the block
+	 * results to the statements. Empty blocks pass their in-set through
+	 * unchanged.
+	 * @param m
+	 * @return
+	 */
 	public static ReachingDefinitions computeReachingDefinitions(Method m) {
+		// number all statements densely.
+		List<Statement> statements = new ArrayList<Statement>();
+		for (CfgBlock b : m.vertexSet()) {
+			statements.addAll(b.getStatements());
+		}
+		final int numStmts = statements.size();
+		BitSet[] gen = new BitSet[numStmts];
+		BitSet[] kill = new BitSet[numStmts];
+		computeGenAndKillSets(statements, gen, kill);
 
-		Map<Statement, Set<Statement>> gen = new LinkedHashMap<Statement, Set<Statement>>();
-		Map<Statement, Set<Statement>> kill = new LinkedHashMap<Statement, Set<Statement>>();
-		computeGenAndKillSets(m, gen, kill);
-		
-		// compute the predecessor-set for all statements
-		Map<Statement, Set<Statement>> predMap = getStatementPredecessorMap(m);
-		
-		Map<Statement, Set<Statement>> in = new LinkedHashMap<Statement, Set<Statement>>();
-		Map<Statement, Set<Statement>> out = new LinkedHashMap<Statement, Set<Statement>>();
-		
-		
-		List<Statement> allStatements = new LinkedList<Statement>(predMap.keySet());
-		for (Statement s : allStatements) {
-			in.put(s, new HashSet<Statement>());
-			out.put(s, new HashSet<Statement>());
+		// summarize each block by a single gen and kill set.
+		List<CfgBlock> blocks = GraphUtil.getReversePostOrder(m);
+		final int numBlocks = blocks.size();
+		Map<CfgBlock, Integer> blockIndex = new HashMap<CfgBlock, Integer>(numBlocks);
+		for (CfgBlock b : blocks) {
+			blockIndex.put(b, blockIndex.size());
+		}
+		Map<CfgBlock, Integer> firstStmt = new HashMap<CfgBlock, Integer>(numBlocks);
+		int idx = 0;
+		for (CfgBlock b : m.vertexSet()) {
+			firstStmt.put(b, idx);
+			idx += b.getStatements().size();
+		}
+		BitSet[] blockGen = new BitSet[numBlocks];
+		BitSet[] blockKill = new BitSet[numBlocks];
+		int[][] successors = new int[numBlocks][];
+		int[][] predecessors = new int[numBlocks][];
+		for (int i = 0; i < numBlocks; i++) {
+			CfgBlock b = blocks.get(i);
+			blockGen[i] = new BitSet(numStmts);
+			blockKill[i] = new BitSet(numStmts);
+			final int first = firstStmt.get(b);
+			for (int j = first; j < first + b.getStatements().size(); j++) {
+				// gen = gen[s] \cup (gen - kill[s]), kill = kill \cup kill[s]
+				blockGen[i].andNot(kill[j]);
+				blockGen[i].or(gen[j]);
+				blockKill[i].or(kill[j]);
+			}
+			successors[i] = toIndices(Graphs.successorListOf(m, b), blockIndex);
+			predecessors[i] = toIndices(Graphs.predecessorListOf(m, b), blockIndex);
 		}
-		boolean changed = true;
-		while(changed) {
-			changed = false;
-			for (Statement s : allStatements) {
 
-				//update the in-sets
-				Set<Statement> newIn = computeInSet(s, predMap, out);
-				if (!in.get(s).equals(newIn) ) {
-					changed = true;
-					in.get(s).clear();
-					in.get(s).addAll(newIn);
-				}
-				//update the out-sets
-				Set<Statement> newOut = new HashSet<Statement>();
-				//gen[s] \cup (in[s] - kill[s])
-				newOut.addAll(in.get(s));
-				newOut.removeAll(kill.get(s));
-				newOut.addAll(gen.get(s));
-				if (!out.get(s).equals(newOut)) {
-					changed = true;
-					out.get(s).clear();
-					out.get(s).addAll(newOut);
+		BitSet[] blockIn = new BitSet[numBlocks];
+		BitSet[] blockOut = new BitSet[numBlocks];
+		for (int i = 0; i < numBlocks; i++) {
+			blockIn[i] = new BitSet(numStmts);
+			blockOut[i] = new BitSet(numStmts);
+		}
+		BitSet worklist = new BitSet(numBlocks);
+		worklist.set(0, numBlocks);
+		for (int i = worklist.nextSetBit(0); i >= 0; i = worklist.nextSetBit(0)) {
+			worklist.clear(i);
+			BitSet newIn = new BitSet(numStmts);
+			for (int pre : predecessors[i]) {
+				newIn.or(blockOut[pre]);
+			}
+			blockIn[i] = newIn;
+			//gen[b] \cup (in[b] - kill[b])
+			BitSet newOut = (BitSet) newIn.clone();
+			newOut.andNot(blockKill[i]);
+			newOut.or(blockGen[i]);
+			if (!newOut.equals(blockOut[i])) {
+				blockOut[i] = newOut;
+				for (int suc : successors[i]) {
+					worklist.set(suc);
 				}
 			}
 		}
+
+		// finally, push the in-sets of the blocks through their statements.
+		Map<Statement, Set<Statement>> in = new LinkedHashMap<Statement, Set<Statement>>();
+		Map<Statement, Set<Statement>> out = new LinkedHashMap<Statement, Set<Statement>>();
+		for (CfgBlock b : m.vertexSet()) {
+			BitSet current = blockIn[blockIndex.get(b)];
+			final int first = firstStmt.get(b);
+			for (int j = first; j < first + b.getStatements().size(); j++) {
+				in.put(statements.get(j), toStatements(current, statements));
+				current = (BitSet) current.clone();
+				current.andNot(kill[j]);
+				current.or(gen[j]);
+				out.put(statements.get(j), toStatements(current, statements));
+			}
+		}
 		ReachingDefinitions reach = new ReachingDefinitions();
 		reach.in = in;
 		reach.out = out;
 		return reach;
 	}
 
-	private static Set<Statement> computeInSet(Statement s, Map<Statement, Set<Statement>> predMap, Map<Statement, Set<Statement>> out) {
-		Set<Statement> res = new HashSet<Statement>();
-		for (Statement pre : predMap.get(s)) {
-			if (!out.containsKey(s)) {
-				out.put(s, new HashSet<Statement>());
-			}
-			res.addAll(out.get(pre));
-		}
-		return res;
- 	}
-	
 	/**
 	 * Returns true if s generates an update to a variable.
 	 * @param s
@@ -153,111 +196,48 @@ public class DataFlowUtils  {
 		return s instanceof AssignStatement || s instanceof CallStatement || s instanceof PullStatement || s instanceof NewStatement;
 	}
 	
-	private static void computeGenAndKillSets(Method m, Map<Statement, Set<Statement>> gen, Map<Statement, Set<Statement>> kill) {
-		Map<Variable, Set<Statement>> defs = new HashMap<Variable, Set<Statement>>();
+	private static void computeGenAndKillSets(List<Statement> statements, BitSet[] gen, BitSet[] kill) {
+		Map<Variable, BitSet> defs = new HashMap<Variable, BitSet>();
 		// compute defs and gen sets before computing kill sets.
-		for (CfgBlock b : m.vertexSet()) {
-			for (Statement s : b.getStatements()) {
-				// create the defs set.
-				for (Variable v : s.getDefVariables()) {
-					if (!defs.containsKey(v)) {
-						defs.put(v, new HashSet<Statement>());
-					}
-					defs.get(v).add(s);
+		for (int i = 0; i < statements.size(); i++) {
+			Statement s = statements.get(i);
+			// create the defs set.
+			for (Variable v : s.getDefVariables()) {
+				if (!defs.containsKey(v)) {
+					defs.put(v, new BitSet(statements.size()));
 				}
-				// create the gen[s] map
-				Set<Statement> genSet = new HashSet<Statement>();
-				gen.put(s, genSet);
-				if (isGenStatement(s)) {
-					gen.get(s).add(s);
-				} // else do nothing.
+				defs.get(v).set(i);
 			}
+			// create the gen[s] map
+			gen[i] = new BitSet(statements.size());
+			if (isGenStatement(s)) {
+				gen[i].set(i);
+			} // else do nothing.
 		}
 		// now compute the kill sets
-		for (CfgBlock b : m.vertexSet()) {
-			for (Statement s : b.getStatements()) {
-				Set<Statement> killSet = new HashSet<Statement>();
-				kill.put(s, killSet);
-//				if (s instanceof AssignStatement || s instanceof CallStatement || s instanceof PullStatement) {
-					Set<Statement> defStatements = new HashSet<Statement>();
-					for (Variable v : s.getDefVariables()) {
-						defStatements.addAll(defs.get(v));
-					}
-					defStatements.remove(s);
-					kill.get(s).addAll(defStatements);
-//				} // else do nothing.
-			}
-		}		
-	}
- 	
-	/**
-	 * Compute the predecessor map that maps each statement in the method 
-	 * body to the set of its predecessor statements.
-	 * @param m
-	 * @return Map from statement to set of predecessor statements 
-	 */
-	private static Map<Statement, Set<Statement>> getStatementPredecessorMap(Method m) {
-		Map<Statement, Set<Statement>> pred = new LinkedHashMap<Statement, Set<Statement>>();
-
-		Map<CfgBlock, Set<Statement>> lastStmt = new HashMap<CfgBlock, Set<Statement>>();
-
-		List<CfgBlock> blockWithLastStatement = new LinkedList<CfgBlock>();
-		for (CfgBlock b : m.vertexSet()) {
-			lastStmt.put(b, new HashSet<Statement>());
-			if (!b.getStatements().isEmpty()) {
-				Statement last = b.getStatements().get(b.getStatements().size() - 1);
-				lastStmt.get(b).add(last);
-
-				Statement previousStmt = null;
-				for (Statement s : b.getStatements()) {
-					pred.put(s, new HashSet<Statement>());
-					if (previousStmt != null) {
-						pred.get(s).add(previousStmt);
-					}
-					previousStmt = s;
-				}
-			} else {
-				blockWithLastStatement.add(b);
-			}
-		}
-		
-		while (!blockWithLastStatement.isEmpty()) {
-			CfgBlock current = blockWithLastStatement.remove(0);
-			lastStmt.get(current)
-					.addAll(getPredecessorStatementRecursively(m, lastStmt, current, new HashSet<CfgBlock>()));
-		}
-		// now, the lastStmt map is complete and we can complete the pred map.
-		for (CfgBlock b : m.vertexSet()) {
-			for (CfgBlock pre : Graphs.predecessorListOf(m, b)) {
-				if (!b.getStatements().isEmpty()) {
-					pred.get(b.getStatements().get(0)).addAll(lastStmt.get(pre));
-				}
+		for (int i = 0; i < statements.size(); i++) {
+			kill[i] = new BitSet(statements.size());
+			for (Variable v : statements.get(i).getDefVariables()) {
+				kill[i].or(defs.get(v));
 			}
+			kill[i].clear(i);
 		}
-
-		return pred;
 	}
 
-	private static Set<Statement> getPredecessorStatementRecursively(Method m, Map<CfgBlock, Set<Statement>> lastStmt,
-			CfgBlock current, Set<CfgBlock> visited) {
-		Set<Statement> ret = new HashSet<Statement>();
-		if (lastStmt.containsKey(current) && !lastStmt.get(current).isEmpty()) {
-			return lastStmt.get(current);
-		} else if (visited.contains(current)) {
-			//we are in a loop
-			return ret;
+	private static int[] toIndices(List<CfgBlock> blocks, Map<CfgBlock, Integer> blockIndex) {
+		int[] indices = new int[blocks.size()];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = blockIndex.get(blocks.get(i));
 		}
+		return indices;
+	}
 
-		Set<CfgBlock> rec_visited = new HashSet<CfgBlock>(visited);
-		rec_visited.add(current);
-		for (CfgBlock pre : Graphs.predecessorListOf(m, current)) {
-			ret.addAll(getPredecessorStatementRecursively(m, lastStmt, pre, rec_visited));
-		}
-		if (!lastStmt.containsKey(current)) {
-			lastStmt.put(current, new HashSet<Statement>());
-			lastStmt.get(current).addAll(ret);
+	private static Set<Statement> toStatements(BitSet bits, List<Statement> statements) {
+		Set<Statement> res = new HashSet<Statement>(bits.cardinality() * 2);
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+			res.add(statements.get(i));
 		}
-		return ret;
+		return res;
 	}
 
 
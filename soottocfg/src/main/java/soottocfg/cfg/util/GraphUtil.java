@@ -1,6 +1,10 @@
 package soottocfg.cfg.util;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -182,6 +186,45 @@ public class GraphUtil {
 		return res;
 	}
 	
+	/**
+	 * Returns the vertices of 'g' in reverse postorder of a depth-first
+	 * search that starts at the sources of 'g'. Vertices that are not
+	 * reachable from a source are ordered by further searches that start
+	 * at the first unvisited vertex.
+	 * @param g Directed graph.
+	 * @return All vertices of 'g' in reverse postorder.
+	 */
+	public static <V> List<V> getReversePostOrder(DirectedGraph<V, ?> g) {
+		LinkedList<V> order = new LinkedList<V>();
+		Set<V> visited = new HashSet<V>();
+		List<V> roots = new LinkedList<V>(getSources(g));
+		roots.addAll(g.vertexSet());
+		for (V root : roots) {
+			if (!visited.add(root)) {
+				continue;
+			}
+			// iterative dfs, to avoid stack overflows on large graphs.
+			Deque<V> path = new ArrayDeque<V>();
+			Deque<Iterator<V>> successors = new ArrayDeque<Iterator<V>>();
+			path.push(root);
+			successors.push(Graphs.successorListOf(g, root).iterator());
+			while (!path.isEmpty()) {
+				Iterator<V> it = successors.peek();
+				if (it.hasNext()) {
+					V next = it.next();
+					if (visited.add(next)) {
+						path.push(next);
+						successors.push(Graphs.successorListOf(g, next).iterator());
+					}
+				} else {
+					successors.pop();
+					order.addFirst(path.pop());
+				}
+			}
+		}
+		return order;
+	}
+
 	public static <V> Set<V> getForwardReachableVertices(DirectedGraph<V, ?> graph, V from) {
 		BfsIterator<V> iter = new BfsIterator<V>(graph, from);
 		return new HashSet<V>(iter.getElements());
@@ -245,5 +288,67 @@ public class GraphUtil {
 		return !ce.getCrossEdges().isEmpty() && !ce.getBackwardEdges().isEmpty();
 	}
 
+	/**
+	 * Computes the strongly connected components of the graph with nodes
+	 * 0..n-1 and the given successors, using Tarjan's algorithm with
+	 * explicit stacks, so long paths do not overflow the stack. Each
+	 * component is numbered after all components that are reachable
+	 * from it, i.e., the numbers are a reverse topological order.
+	 * @param succ The successors of each node.
+	 * @return The component of each node, numbered from 0.
+	 */
+	public static int[] stronglyConnectedComponents(int[][] succ) {
+		final int n = succ.length;
+		int[] index = new int[n];
+		Arrays.fill(index, -1);
+		int[] low = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int[] callStack = new int[n];
+		int[] nextEdge = new int[n];
+		int[] component = new int[n];
+		int sp = 0, counter = 0, numComponents = 0;
+		for (int root = 0; root < n; root++) {
+			if (index[root] >= 0) {
+				continue;
+			}
+			int csp = 0;
+			callStack[csp++] = root;
+			index[root] = low[root] = counter++;
+			stack[sp++] = root;
+			onStack[root] = true;
+			while (csp > 0) {
+				final int v = callStack[csp - 1];
+				if (nextEdge[v] < succ[v].length) {
+					final int w = succ[v][nextEdge[v]++];
+					if (index[w] < 0) {
+						index[w] = low[w] = counter++;
+						stack[sp++] = w;
+						onStack[w] = true;
+						callStack[csp++] = w;
+					} else if (onStack[w]) {
+						low[v] = Math.min(low[v], index[w]);
+					}
+				} else {
+					csp--;
+					if (csp > 0) {
+						final int u = callStack[csp - 1];
+						low[u] = Math.min(low[u], low[v]);
+					}
+					if (low[v] == index[v]) {
+						int w;
+						do {
+							w = stack[--sp];
+							onStack[w] = false;
+							component[w] = numComponents;
+						} while (w != v);
+						numComponents++;
+					}
+				}
+			}
+		}
+		return component;
+	}
+
 	
 }
@@ -3,10 +3,17 @@
  */
 package soottocfg.cfg.util;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
 
@@ -18,6 +25,7 @@ import org.jgrapht.graph.DefaultEdge;
 import com.google.common.base.Optional;
 import com.google.common.base.Verify;
 
+import soottocfg.Options;
 import soottocfg.cfg.method.CfgBlock;
 import soottocfg.cfg.method.CfgEdge;
 import soottocfg.cfg.method.Method;
@@ -54,8 +62,24 @@ public class InterProceduralPullPushOrdering {
 		}
 	}
 
+	/**
+	 * A call in ipgraph. The call node has an edge to the entry of the
+	 * callee, and the exit of the callee has an edge to the return site.
+	 */
+	static class CallSite {
+		public FixedPointObject calleeEntry;
+		public FixedPointObject returnSite;
+	}
+
+	// the call sites by call node, and the entry of the method of each node.
+	private final Map<FixedPointObject, CallSite> callSites = new HashMap<FixedPointObject, CallSite>();
+	private final Map<FixedPointObject, FixedPointObject> nodeEntry = new HashMap<FixedPointObject, FixedPointObject>();
+
 	private Map<PullStatement, FixedPointObject> pullMap = new HashMap<PullStatement, FixedPointObject>();
 
+	// the pushs that influence each pull, computed on first use.
+	private Map<FixedPointObject, Set<FixedPointObject>> influencingPushs = null;
+
 	private final DirectedGraph<FixedPointObject, DefaultEdge> ipgraph;
 
 	public InterProceduralPullPushOrdering(Method entryPoint) {
@@ -143,45 +167,378 @@ public class InterProceduralPullPushOrdering {
 	}
 
 	private Set<FixedPointObject> getFPOsInfluencing(PullStatement pull) {
-
-		Set<FixedPointObject> ret = new HashSet<FixedPointObject>();
-
 		if (!pullMap.containsKey(pull)) {
 //			System.err.println("Pull not reachable from program entry: " + pull);
-			return ret;
+			return new HashSet<FixedPointObject>();
+		}
+		if (influencingPushs == null) {
+			influencingPushs = computeInfluencingPushs();
 		}
+//		Verify.verify(!ret.isEmpty(),
+//				"Cannot find a push that affects this pull. This would introduce an assume(false): " + pull);		
+		return new HashSet<FixedPointObject>(influencingPushs.get(pullMap.get(pull)));
+	}
 
-		FixedPointObject fpo = pullMap.get(pull);
-		Queue<FixedPointObject> todo = new LinkedList<FixedPointObject>();
-		todo.addAll(Graphs.predecessorListOf(ipgraph, fpo));
-		Set<FixedPointObject> done = new HashSet<FixedPointObject>();
-		while (!todo.isEmpty()) {
-			FixedPointObject cur = todo.remove();
-			done.add(cur);
-			boolean stopTraverse = false;
-			if (cur.stmt.isPresent() && cur.stmt.get() instanceof PushStatement) {
-				PushStatement push = (PushStatement) cur.stmt.get();
+	/**
+	 * Computes the pushs that influence each pull with one forward
+	 * "reaching pushs" analysis over ipgraph. A push influences a pull if it
+	 * may alias the pull and there is a path from the push to the pull on
+	 * which no other push must shadow it (see mayAlias and mustShadow).
+	 * 
+	 * Which pushs shadow depends on the pull. So the pulls are grouped by
+	 * their set of shadowing pushs, and a fact of the analysis is a push
+	 * together with such a group. A push kills the facts of all groups that
+	 * it shadows, and generates its own facts. The facts are kept in
+	 * bit-vectors indexed by push and group.
+	 * 
+	 * @return The influencing pushs for each pull in ipgraph.
+	 */
+	private Map<FixedPointObject, Set<FixedPointObject>> computeInfluencingPushs() {
+		List<FixedPointObject> nodes = new ArrayList<FixedPointObject>(ipgraph.vertexSet());
+		Map<FixedPointObject, Integer> nodeIndex = new HashMap<FixedPointObject, Integer>();
+		List<FixedPointObject> pushNodes = new ArrayList<FixedPointObject>();
+		List<FixedPointObject> pullNodes = new ArrayList<FixedPointObject>();
+		for (FixedPointObject fpo : nodes) {
+			nodeIndex.put(fpo, nodeIndex.size());
+			if (fpo.stmt.isPresent() && fpo.stmt.get() instanceof PushStatement) {
+				pushNodes.add(fpo);
+			} else if (fpo.stmt.isPresent() && fpo.stmt.get() instanceof PullStatement) {
+				pullNodes.add(fpo);
+			}
+		}
+
+		// group the pulls by the pushs that shadow them.
+		Map<BitSet, Integer> groupIndex = new HashMap<BitSet, Integer>();
+		List<BitSet> groupShadows = new ArrayList<BitSet>();
+		List<BitSet> groupAliases = new ArrayList<BitSet>();
+		Map<FixedPointObject, Integer> pullGroup = new HashMap<FixedPointObject, Integer>();
+		Map<FixedPointObject, BitSet> pullAliases = new HashMap<FixedPointObject, BitSet>();
+		for (FixedPointObject pullNode : pullNodes) {
+			PullStatement pull = (PullStatement) pullNode.stmt.get();
+			BitSet aliases = new BitSet();
+			BitSet shadows = new BitSet();
+			for (int i = 0; i < pushNodes.size(); i++) {
+				PushStatement push = (PushStatement) pushNodes.get(i).stmt.get();
 				if (mayAlias(push, pull)) {
-					ret.add(cur);
-//					System.out.println("Must shadow " + push + " -> " + pull + " ?");
+					aliases.set(i);
 					if (mustShadow(push, pull)) {
-//						System.out.println("Yes!");
-						stopTraverse = true;
+						shadows.set(i);
 					}
 				}
 			}
-			
-			if (!stopTraverse) {
-				for (FixedPointObject pre : Graphs.predecessorListOf(ipgraph, cur)) {
-					if (!todo.contains(pre) && !done.contains(pre)) {
-						todo.add(pre);
+			Integer group = groupIndex.get(shadows);
+			if (group == null) {
+				group = groupShadows.size();
+				groupIndex.put(shadows, group);
+				groupShadows.add(shadows);
+				groupAliases.add(new BitSet());
+			}
+			groupAliases.get(group).or(aliases);
+			pullGroup.put(pullNode, group);
+			pullAliases.put(pullNode, aliases);
+		}
+
+		// number the facts, i.e., the pushs that may alias a pull of a group.
+		List<Integer> factPush = new ArrayList<Integer>();
+		List<BitSet> groupFacts = new ArrayList<BitSet>();
+		BitSet[] gen = new BitSet[pushNodes.size()];
+		BitSet[] kill = new BitSet[pushNodes.size()];
+		for (int i = 0; i < pushNodes.size(); i++) {
+			gen[i] = new BitSet();
+			kill[i] = new BitSet();
+		}
+		for (int group = 0; group < groupShadows.size(); group++) {
+			BitSet facts = new BitSet();
+			BitSet aliases = groupAliases.get(group);
+			for (int i = aliases.nextSetBit(0); i >= 0; i = aliases.nextSetBit(i + 1)) {
+				facts.set(factPush.size());
+				gen[i].set(factPush.size());
+				factPush.add(i);
+			}
+			groupFacts.add(facts);
+		}
+		for (int group = 0; group < groupShadows.size(); group++) {
+			BitSet shadows = groupShadows.get(group);
+			for (int i = shadows.nextSetBit(0); i >= 0; i = shadows.nextSetBit(i + 1)) {
+				kill[i].or(groupFacts.get(group));
+			}
+		}
+		BitSet[] nodeGen = new BitSet[nodes.size()];
+		BitSet[] nodeKill = new BitSet[nodes.size()];
+		for (int i = 0; i < pushNodes.size(); i++) {
+			nodeGen[nodeIndex.get(pushNodes.get(i))] = gen[i];
+			nodeKill[nodeIndex.get(pushNodes.get(i))] = kill[i];
+		}
+
+		final Map<FixedPointObject, BitSet> reaching;
+		if (Options.v().contextSensitivePullPushOrdering()) {
+			reaching = reachingFactsWithSummaries(nodes, nodeIndex, nodeGen, nodeKill, pullNodes);
+		} else {
+			reaching = reachingFacts(nodes, nodeIndex, nodeGen, nodeKill, pullNodes);
+		}
+
+		Map<FixedPointObject, Set<FixedPointObject>> result = new HashMap<FixedPointObject, Set<FixedPointObject>>();
+		for (FixedPointObject pullNode : pullNodes) {
+			BitSet facts = reaching.get(pullNode);
+			facts.and(groupFacts.get(pullGroup.get(pullNode)));
+			BitSet aliases = pullAliases.get(pullNode);
+			Set<FixedPointObject> pushs = new HashSet<FixedPointObject>();
+			for (int f = facts.nextSetBit(0); f >= 0; f = facts.nextSetBit(f + 1)) {
+				if (aliases.get(factPush.get(f))) {
+					pushs.add(pushNodes.get(factPush.get(f)));
+				}
+			}
+			result.put(pullNode, pushs);
+		}
+		return result;
+	}
+
+	/**
+	 * Forward fixpoint over ipgraph. Calls and returns are ordinary edges,
+	 * so facts that flow into a method at one call site flow out of it at
+	 * all of its call sites.
+	 * 
+	 * @return The facts that reach the beginning of each pull.
+	 */
+	private Map<FixedPointObject, BitSet> reachingFacts(List<FixedPointObject> nodes,
+			Map<FixedPointObject, Integer> nodeIndex, BitSet[] gen, BitSet[] kill, List<FixedPointObject> pullNodes) {
+		// out[n] are the facts that reach the end of n.
+		final int n = nodes.size();
+		int[][] preds = new int[n][];
+		int[][] succs = new int[n][];
+		for (int i = 0; i < n; i++) {
+			preds[i] = toIndices(Graphs.predecessorListOf(ipgraph, nodes.get(i)), nodeIndex);
+			succs[i] = toIndices(Graphs.successorListOf(ipgraph, nodes.get(i)), nodeIndex);
+		}
+		BitSet[] out = new BitSet[n];
+		for (int i = 0; i < n; i++) {
+			out[i] = new BitSet();
+		}
+		Deque<Integer> todo = new ArrayDeque<Integer>();
+		boolean[] onList = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			todo.add(i);
+			onList[i] = true;
+		}
+		while (!todo.isEmpty()) {
+			final int cur = todo.poll();
+			onList[cur] = false;
+			BitSet facts = join(preds[cur], out);
+			if (gen[cur] != null) {
+				facts.andNot(kill[cur]);
+				facts.or(gen[cur]);
+			}
+			if (!facts.equals(out[cur])) {
+				out[cur] = facts;
+				for (int succ : succs[cur]) {
+					if (!onList[succ]) {
+						onList[succ] = true;
+						todo.add(succ);
 					}
 				}
 			}
 		}
-//		Verify.verify(!ret.isEmpty(),
-//				"Cannot find a push that affects this pull. This would introduce an assume(false): " + pull);		
-		return ret;
+
+		Map<FixedPointObject, BitSet> reaching = new HashMap<FixedPointObject, BitSet>();
+		for (FixedPointObject pullNode : pullNodes) {
+			reaching.put(pullNode, join(preds[nodeIndex.get(pullNode)], out));
+		}
+		return reaching;
+	}
+
+	/**
+	 * Context-sensitive variant of reachingFacts that only follows paths on
+	 * which each return goes back to the call site of its call. The transfer
+	 * of each push is a gen/kill function, and so is the effect of any path
+	 * through a method. The analysis has two phases:
+	 * 
+	 * 1. For each node, compute the function from the facts at the entry of
+	 * its method to the facts at the end of the node. The function of a
+	 * method's exit is its summary, which is applied at each call site
+	 * instead of following the call and return edges.
+	 * 
+	 * 2. Compute the facts at the entry of each method from the facts at its
+	 * call sites, starting with no facts at the entry of the program. The
+	 * facts at a pull are its function applied to the facts at the entry of
+	 * its method.
+	 * 
+	 * @return The facts that reach the beginning of each pull.
+	 */
+	private Map<FixedPointObject, BitSet> reachingFactsWithSummaries(List<FixedPointObject> nodes,
+			Map<FixedPointObject, Integer> nodeIndex, BitSet[] gen, BitSet[] kill, List<FixedPointObject> pullNodes) {
+		final int n = nodes.size();
+		// the call site of each return site and vice versa.
+		int[] callOf = new int[n];
+		int[] returnOf = new int[n];
+		Arrays.fill(callOf, -1);
+		Arrays.fill(returnOf, -1);
+		// the entry of the method that contains each node.
+		int[] entryOf = new int[n];
+		// the exit of each entry, and the return sites of each entry.
+		Map<Integer, Integer> exitOf = new HashMap<Integer, Integer>();
+		Map<Integer, List<Integer>> returnSites = new HashMap<Integer, List<Integer>>();
+		for (Pair<FixedPointObject, FixedPointObject> entryExit : methodEntryExit.values()) {
+			final int entryIdx = nodeIndex.get(entryExit.getFirst());
+			exitOf.put(entryIdx, nodeIndex.get(entryExit.getSecond()));
+			returnSites.put(entryIdx, new ArrayList<Integer>());
+		}
+		for (Entry<FixedPointObject, FixedPointObject> entry : nodeEntry.entrySet()) {
+			entryOf[nodeIndex.get(entry.getKey())] = nodeIndex.get(entry.getValue());
+		}
+		for (Entry<FixedPointObject, CallSite> entry : callSites.entrySet()) {
+			final int call = nodeIndex.get(entry.getKey());
+			final int ret = nodeIndex.get(entry.getValue().returnSite);
+			callOf[ret] = call;
+			returnOf[call] = ret;
+			returnSites.get(nodeIndex.get(entry.getValue().calleeEntry)).add(ret);
+		}
+		// the edges inside of methods, i.e., without call and return edges.
+		int[][] preds = new int[n][];
+		int[][] succs = new int[n][];
+		for (int i = 0; i < n; i++) {
+			preds[i] = callOf[i] >= 0 ? new int[0]
+					: toIndices(Graphs.predecessorListOf(ipgraph, nodes.get(i)), nodeIndex);
+			succs[i] = returnOf[i] >= 0 ? new int[0]
+					: toIndices(Graphs.successorListOf(ipgraph, nodes.get(i)), nodeIndex);
+		}
+
+		// phase 1: phiKill[i], phiGen[i] is the function from the entry of
+		// the method to the end of node i, or null if i is not reached.
+		BitSet[] phiKill = new BitSet[n];
+		BitSet[] phiGen = new BitSet[n];
+		Deque<Integer> todo = new ArrayDeque<Integer>();
+		boolean[] onList = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			todo.add(i);
+			onList[i] = true;
+		}
+		while (!todo.isEmpty()) {
+			final int cur = todo.poll();
+			onList[cur] = false;
+			BitSet k = null, g = null;
+			if (entryOf[cur] == cur) {
+				k = new BitSet();
+				g = new BitSet();
+			}
+			for (int pred : preds[cur]) {
+				if (phiKill[pred] != null) {
+					if (k == null) {
+						k = (BitSet) phiKill[pred].clone();
+						g = (BitSet) phiGen[pred].clone();
+					} else {
+						k.and(phiKill[pred]);
+						g.or(phiGen[pred]);
+					}
+				}
+			}
+			if (callOf[cur] >= 0) {
+				final int call = callOf[cur];
+				final int calleeExit = exitOf.get(nodeIndex.get(callSites.get(nodes.get(call)).calleeEntry));
+				if (phiKill[call] != null && phiKill[calleeExit] != null) {
+					// apply the summary of the callee.
+					BitSet callK = (BitSet) phiKill[call].clone();
+					callK.or(phiKill[calleeExit]);
+					BitSet callG = (BitSet) phiGen[call].clone();
+					callG.andNot(phiKill[calleeExit]);
+					callG.or(phiGen[calleeExit]);
+					k = callK;
+					g = callG;
+				}
+			}
+			if (k == null) {
+				continue;
+			}
+			if (gen[cur] != null) {
+				k.or(kill[cur]);
+				g.andNot(kill[cur]);
+				g.or(gen[cur]);
+			}
+			if (!k.equals(phiKill[cur]) || !g.equals(phiGen[cur])) {
+				phiKill[cur] = k;
+				phiGen[cur] = g;
+				List<Integer> next = new ArrayList<Integer>();
+				for (int succ : succs[cur]) {
+					next.add(succ);
+				}
+				if (returnOf[cur] >= 0) {
+					next.add(returnOf[cur]);
+				}
+				if (exitOf.get(entryOf[cur]) == cur) {
+					next.addAll(returnSites.get(entryOf[cur]));
+				}
+				for (int succ : next) {
+					if (!onList[succ]) {
+						onList[succ] = true;
+						todo.add(succ);
+					}
+				}
+			}
+		}
+
+		// phase 2: the facts at the entry of each method.
+		Map<Integer, BitSet> entryFacts = new HashMap<Integer, BitSet>();
+		Map<Integer, List<Integer>> callsIn = new HashMap<Integer, List<Integer>>();
+		for (Integer entryIdx : returnSites.keySet()) {
+			entryFacts.put(entryIdx, new BitSet());
+			callsIn.put(entryIdx, new ArrayList<Integer>());
+		}
+		for (FixedPointObject call : callSites.keySet()) {
+			callsIn.get(entryOf[nodeIndex.get(call)]).add(nodeIndex.get(call));
+		}
+		Deque<Integer> methods = new ArrayDeque<Integer>(entryFacts.keySet());
+		Set<Integer> onMethodList = new HashSet<Integer>(entryFacts.keySet());
+		while (!methods.isEmpty()) {
+			final int entryIdx = methods.poll();
+			onMethodList.remove(entryIdx);
+			for (int call : callsIn.get(entryIdx)) {
+				if (phiKill[call] == null) {
+					continue;
+				}
+				BitSet facts = (BitSet) entryFacts.get(entryIdx).clone();
+				facts.andNot(phiKill[call]);
+				facts.or(phiGen[call]);
+				final int callee = nodeIndex.get(callSites.get(nodes.get(call)).calleeEntry);
+				BitSet calleeFacts = entryFacts.get(callee);
+				facts.andNot(calleeFacts);
+				if (!facts.isEmpty()) {
+					calleeFacts.or(facts);
+					if (onMethodList.add(callee)) {
+						methods.add(callee);
+					}
+				}
+			}
+		}
+
+		Map<FixedPointObject, BitSet> reaching = new HashMap<FixedPointObject, BitSet>();
+		for (FixedPointObject pullNode : pullNodes) {
+			final int pull = nodeIndex.get(pullNode);
+			BitSet facts = new BitSet();
+			// a pull does not change the facts, so its function is the
+			// function at its beginning.
+			if (phiKill[pull] != null) {
+				facts.or(entryFacts.get(entryOf[pull]));
+				facts.andNot(phiKill[pull]);
+				facts.or(phiGen[pull]);
+			}
+			reaching.put(pullNode, facts);
+		}
+		return reaching;
+	}
+
+	private static BitSet join(int[] preds, BitSet[] out) {
+		BitSet facts = new BitSet();
+		for (int pred : preds) {
+			facts.or(out[pred]);
+		}
+		return facts;
+	}
+
+	private static int[] toIndices(List<FixedPointObject> fpos, Map<FixedPointObject, Integer> nodeIndex) {
+		int[] indices = new int[fpos.size()];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = nodeIndex.get(fpos.get(i));
+		}
+		return indices;
 	}
 
 	/**
@@ -244,6 +601,8 @@ public class InterProceduralPullPushOrdering {
 		FixedPointObject fpExit = new FixedPointObject();
 		ipgraph.addVertex(fpEntry);
 		ipgraph.addVertex(fpExit);
+		nodeEntry.put(fpEntry, fpEntry);
+		nodeEntry.put(fpExit, fpEntry);
 		Pair<FixedPointObject, FixedPointObject> ret = new Pair<FixedPointObject, FixedPointObject>(fpEntry, fpExit);
 
 		methodEntryExit.put(method, ret);
@@ -258,8 +617,7 @@ public class InterProceduralPullPushOrdering {
 			if (cur == method.getSource()) {
 				fpo = fpEntry;
 			} else {
-				fpo = new FixedPointObject();
-				ipgraph.addVertex(fpo);
+				fpo = addNode(fpEntry);
 			}
 
 			// create the subgraph from the current cfg block
@@ -269,15 +627,17 @@ public class InterProceduralPullPushOrdering {
 					CallStatement cs = (CallStatement) st;
 					Pair<FixedPointObject, FixedPointObject> pair = buildInterProcGraph(cs.getCallTarget(), ipgraph);
 					ipgraph.addEdge(fpo, pair.getFirst());
-					fpo = new FixedPointObject();
-					ipgraph.addVertex(fpo);
+					CallSite callSite = new CallSite();
+					callSite.calleeEntry = pair.getFirst();
+					callSites.put(fpo, callSite);
+					fpo = addNode(fpEntry);
 					ipgraph.addEdge(pair.getSecond(), fpo);
+					callSite.returnSite = fpo;
 				} else if (st instanceof PushStatement || st instanceof PullStatement) {
 					fpo.stmt = Optional.of(st);
 					// fpo.containingCfgBlock = cur;
 					fpo.containingMethod = method;
-					FixedPointObject nextFpo = new FixedPointObject();
-					ipgraph.addVertex(nextFpo);
+					FixedPointObject nextFpo = addNode(fpEntry);
 					ipgraph.addEdge(fpo, nextFpo);
 					fpo = nextFpo;
 				} else {
@@ -303,4 +663,11 @@ public class InterProceduralPullPushOrdering {
 		return ret;
 	}
 
+	private FixedPointObject addNode(FixedPointObject fpEntry) {
+		FixedPointObject fpo = new FixedPointObject();
+		ipgraph.addVertex(fpo);
+		nodeEntry.put(fpo, fpEntry);
+		return fpo;
+	}
+
 }
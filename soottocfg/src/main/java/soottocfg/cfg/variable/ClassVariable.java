@@ -9,6 +9,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import soottocfg.cfg.type.ReferenceType;
 import soottocfg.cfg.type.TypeType;
@@ -22,6 +23,8 @@ public class ClassVariable extends Variable  {
 	private static final long serialVersionUID = -1647842783828780974L;	
 	private final Set<ClassVariable> parentConstants;
 	private List<Variable> associatedFields, inlineableFields;
+	private int layoutVersion = 0;
+	private static final AtomicInteger layoutEpoch = new AtomicInteger();
 
 	public ClassVariable(String name, Collection<ClassVariable> parents) {
 		super(name, new TypeType(), true, true); //TODO, its actually not reference type.	
@@ -63,12 +66,35 @@ public class ClassVariable extends Variable  {
 				if (v.isInlineable()) {
 					inlineableFields.add(v);
 				}
+				layoutVersion++;
+				layoutEpoch.incrementAndGet();
 			} else {
 				//warn about that.
 			}
 		}
 	}
 
+	/**
+	 * Returns a counter that is incremented every time addFields changes
+	 * the fields of this class. Used to detect that types which were
+	 * derived from the fields are out of date.
+	 * @return
+	 */
+	public int getLayoutVersion() {
+		return layoutVersion;
+	}
+
+	/**
+	 * Returns a counter that is incremented every time addFields changes
+	 * the fields of any class. Types that embed the layouts of other
+	 * classes, e.g., through inlineable fields of reference type, are
+	 * out of date if this counter changed.
+	 * @return
+	 */
+	public static int getLayoutEpoch() {
+		return layoutEpoch.get();
+	}
+
 	public Variable[] getAssociatedFields() {
 		return associatedFields.toArray(new Variable[associatedFields.size()]);
 	}
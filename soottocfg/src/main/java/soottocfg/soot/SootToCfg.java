@@ -5,15 +5,23 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
 
 import soot.Body;
 import soot.RefType;
@@ -32,6 +40,7 @@ import soot.jimple.toolkits.scalar.UnreachableCodeEliminator;
 import soottocfg.Options;
 import soottocfg.cfg.Program;
 import soottocfg.cfg.SourceLocation;
+import soottocfg.cfg.expression.ExpressionFactory;
 import soottocfg.cfg.method.CfgBlock;
 import soottocfg.cfg.method.Method;
 import soottocfg.cfg.optimization.CfgCallInliner;
@@ -46,6 +55,7 @@ import soottocfg.soot.memory_model.MemoryModel;
 import soottocfg.soot.memory_model.NewMemoryModel;
 import soottocfg.soot.memory_model.PushIdentifierAdder;
 import soottocfg.soot.memory_model.PushPullSimplifier;
+import soottocfg.soot.transformers.AbstractSceneTransformer;
 import soottocfg.soot.transformers.ArrayTransformer;
 import soottocfg.soot.transformers.AssertionReconstruction;
 import soottocfg.soot.transformers.ExceptionTransformer;
@@ -57,7 +67,9 @@ import soottocfg.soot.util.DuplicatedCatchDetection;
 import soottocfg.soot.util.FlowBasedPointsToAnalysis;
 import soottocfg.soot.util.MethodInfo;
 import soottocfg.soot.util.SootTranslationHelpers;
+import soottocfg.soot.util.TranslationContext;
 import soottocfg.soot.visitors.SootStmtSwitch;
+import soottocfg.util.Metrics;
 
 /**
  * This is the main class for the translation. It first invokes Soot to load all
@@ -92,6 +104,7 @@ public class SootToCfg {
 		this.resolvedClassNames = resolvedClassNames;
 		// first reset everything:
 		soot.G.reset();
+		ExpressionFactory.resetInstance();
 		SootTranslationHelpers.initialize(program);
 	}
 
@@ -105,9 +118,90 @@ public class SootToCfg {
 	 *            https://github.com/Sable/android-platforms
 	 */
 	public void run(String input, String classPath) {
+		translate(input, classPath);
+
+		// inline method calls
+		Metrics.Sample phase = Metrics.v().timer("soottocfg.inlining").start();
+		CfgCallInliner inliner = new CfgCallInliner(program);
+		if (Options.v().getInlineBudget() >= 0) {
+			inliner.inlineWithBudget(Options.v().getInlineBudget());
+		} else {
+			inliner.inlineFromMain(Options.v().getInlineMaxSize(), Options.v().getInlineCount());
+		}
+		program.removeUnreachableMethods();
+		phase.stop();
+		
+		
+		
+		if (program.getEntryPoint() == null) {
+			System.err.println("WARNING: No entry point found in program!");
+			SootTranslationHelpers.v().reset();
+			return;
+		}
+		
+		/*
+		 * Simplify until nothing changes anymore. After the first round, we
+		 * only simplify the methods that changed in the previous round, or
+		 * whose points-to sets changed. All other methods are already
+		 * simplified and would not change again.
+		 */
+		setPointsToAnalysis(new FlowBasedPointsToAnalysis());
+		// Method inherits a structural hashCode from the graph, so we use identity sets.
+		Set<Method> changed = Sets.newIdentityHashSet();
+		changed.addAll(Arrays.asList(program.getMethods()));
+		boolean firstRound = true;
+		while (!changed.isEmpty()) {
+			Metrics.v().counter("soottocfg.simplification_rounds").inc();
+			phase = Metrics.v().timer("soottocfg.pullpush_simplification").start();
+			Set<Method> simplified = applyPullPushSimplification(changed);
+			phase.stop();
+			phase = Metrics.v().timer("soottocfg.dataflow_simplification").start();
+			changed = applyDataFlowSimplifications(firstRound ? changed : simplified);
+			changed.addAll(simplified);
+			program.updateCalls(changed);
+			phase.stop();
+			firstRound = false;
+		}
+		// add push IDs
+		phase = Metrics.v().timer("soottocfg.push_ids").start();
+		PushIdentifierAdder pia = new PushIdentifierAdder();
+		pia.addIDs(program);
+		phase.stop();
+
+		// print CFG
+		if (Options.v().printCFG()) {
+			System.out.println(program);
+		}
+
+		// reset all the soot stuff.
+		SootTranslationHelpers.v().reset();
+	}
+
+	/**
+	 * Like run, but stops before method calls are inlined and the CFG is
+	 * simplified. This method is only needed to benchmark these passes
+	 * on the program they get in run.
+	 * 
+	 * @param input
+	 * @param classPath
+	 */
+	public void runUntilInlining(String input, String classPath) {
+		translate(input, classPath);
+		SootTranslationHelpers.v().reset();
+	}
+
+	/**
+	 * Loads the classes with Soot, transforms them, and constructs the
+	 * CFG of every method with unbound fields and methods stubbed.
+	 * @param input
+	 * @param classPath
+	 */
+	private void translate(String input, String classPath) {
 		// run soot to load all classes.
+		Metrics.Sample phase = Metrics.v().timer("soottocfg.soot_load").start();
 		SootRunner runner = new SootRunner();
 		runner.run(input, classPath);
+		phase.stop();
 
 		/*
 		 * Get a reference for the main method. We have to get the
@@ -118,7 +212,10 @@ public class SootToCfg {
 		performBehaviorPreservingTransformations();
 		performAbstractionTransformations();
 
+		phase = Metrics.v().timer("soottocfg.construct_cfg").start();
 		constructCfg();
+		phase.stop();
+		Metrics.v().counter("soottocfg.methods").add(program.getMethods().length);
 
 		// now set the entry points.
 		Method m = program.lookupMethod(mainMethod.getSignature());
@@ -130,63 +227,81 @@ public class SootToCfg {
 		}
 
 		// stub
+		phase = Metrics.v().timer("soottocfg.stubbing").start();
 		CfgStubber stubber = new CfgStubber();
 		stubber.stubUnboundFieldsAndMethods(program);
-
-		// inline method calls
-		CfgCallInliner inliner = new CfgCallInliner(program);
-		inliner.inlineFromMain(Options.v().getInlineMaxSize(), Options.v().getInlineCount());
-		removeUnreachableMethods(program);	
-		
-		
-		
-		if (program.getEntryPoint() == null) {
-			System.err.println("WARNING: No entry point found in program!");
-			SootTranslationHelpers.v().reset();
-			return;
-		}
-		
-		boolean changed = true;
-		while(changed) {			
-			changed = applyPullPushSimplification();
-			changed = applyDataFlowSimplifications() ? true : changed;
-		}
-		// add push IDs
-		PushIdentifierAdder pia = new PushIdentifierAdder();
-		pia.addIDs(program);
-
-		// print CFG
-		if (Options.v().printCFG()) {
-			System.out.println(program);
-		}
-
-		// reset all the soot stuff.
-		SootTranslationHelpers.v().reset();
+		phase.stop();
 	}
-
 	
-	private boolean applyPullPushSimplification() {
-		boolean programChanged = false;
+	/**
+	 * Updates the points-to analysis for the methods that changed and
+	 * simplifies the pushes and pulls of all methods that changed or
+	 * whose points-to sets changed.
+	 * @param changed
+	 *            The methods that changed since the last call.
+	 * @return The methods that were simplified.
+	 */
+	private Set<Method> applyPullPushSimplification(Set<Method> changed) {
+		Set<Method> simplified = Sets.newIdentityHashSet();
 		// alias analysis
-		setPointsToAnalysis(new FlowBasedPointsToAnalysis());
+		Set<Method> dirty = Sets.newIdentityHashSet();
+		dirty.addAll(changed);
 		if (Options.v().memPrecision() >= Options.MEMPREC_PTA) {
-			getPointsToAnalysis().run(program);
+			Set<Variable> changedPointsTo = getPointsToAnalysis().update(program, changed);
+			if (!changedPointsTo.isEmpty()) {
+				for (Method method : program.getMethods()) {
+					if (!dirty.contains(method) && usesAny(method, changedPointsTo)) {
+						dirty.add(method);
+					}
+				}
+			}
 		}
 
 		// simplify push-pull
 		if (Options.v().memPrecision() >= Options.MEMPREC_SIMPLIFY) {
 			PushPullSimplifier pps = new PushPullSimplifier();
-			programChanged = pps.simplify(program);
+			for (Method method : program.getMethods()) {
+				if (dirty.contains(method) && pps.simplify(method)) {
+					simplified.add(method);
+				}
+			}
 			if (Options.v().outDir() != null)
 				writeFile(".simpl.cfg", program.toString());
 		}
-		return programChanged;
+		return simplified;
+	}
+
+	private static boolean usesAny(Method method, Set<Variable> variables) {
+		for (CfgBlock b : method.vertexSet()) {
+			for (Statement s : b.getStatements()) {
+				for (Variable v : s.getUseVariables()) {
+					if (variables.contains(v)) {
+						return true;
+					}
+				}
+				for (Variable v : s.getDefVariables()) {
+					if (variables.contains(v)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
 	}
 	
-	private boolean applyDataFlowSimplifications() {
-		boolean programChanged = false;
+	/**
+	 * Applies the data flow simplifications to the given methods until
+	 * they do not change anymore.
+	 * @param methods
+	 * @return The methods that changed.
+	 */
+	private Set<Method> applyDataFlowSimplifications(Set<Method> methods) {
+		Set<Method> changedMethods = Sets.newIdentityHashSet();
 		if (Options.v().optimizeMethods) {
 			for (Method method : program.getMethods()) {
+				if (!methods.contains(method)) {
+					continue;
+				}
 				boolean changed = true;
 				while (changed) {					
 					changed = false;
@@ -197,7 +312,9 @@ public class SootToCfg {
 						changed = true;
 					}
 					changed = DeadCodeElimination.eliminateDeadCode(method) ? true : changed ;
-					programChanged = programChanged || changed;
+					if (changed) {
+						changedMethods.add(method);
+					}
 				}
 				//now remove the locals that have been eliminated.
 				Set<Variable> allVars = new HashSet<Variable>();
@@ -208,7 +325,7 @@ public class SootToCfg {
 				method.getLocals().retainAll(allVars);				
 			}			
 		}
-		return programChanged;
+		return changedMethods;
 	}
 	
 	
@@ -235,37 +352,49 @@ public class SootToCfg {
 		return locations;
 	}
 
-	private void constructCfg(SootClass sc) {
-		SootTranslationHelpers.v().setCurrentClass(sc);
-		for (SootMethod sm : sc.getMethods()) {
-			if (sm.isConcrete()) {
-				constructCfg(sm);
-			}
-		}
-	}
-
-	private void constructCfg(SootMethod sm) {
+	/**
+	 * Retrieves the body of a method, applies Soot's intra-procedural
+	 * optimizations to it, and creates the context for its translation.
+	 * Uses the current class of SootTranslationHelpers.
+	 * 
+	 * @param sm
+	 * @return The context, or null if the method is not translated.
+	 */
+	private TranslationContext prepareCfg(SootMethod sm) {
 		if (sm.equals(SootTranslationHelpers.v().getAssertMethod())) {
 			// Do not translate the assertion method.
-			return;
+			return null;
 		}
 		SootTranslationHelpers.v().setCurrentMethod(sm);
+		try {
+			Body body = sm.retrieveActiveBody();
+			performSootOptimizations(body);
+		} catch (RuntimeException e) {
+			// TODO: print warning that body couldn't be retrieved.
+			return null;
+		}
+		return new TranslationContext(sm, SootTranslationHelpers.v().getCurrentSourceFileName());
+	}
 
+	/**
+	 * Translates the body of context.getMethod() and adds it to the program.
+	 * The context is bound to the current thread during the translation.
+	 * 
+	 * @param context
+	 */
+	private void constructCfg(TranslationContext context) {
+		final SootMethod sm = context.getMethod();
+		SootTranslationHelpers.v().setTranslationContext(context);
 		try {
-			Body body = null;
-			try {
-				body = sm.retrieveActiveBody();
-				performSootOptimizations(body);
-			} catch (RuntimeException e) {
-				// TODO: print warning that body couldn't be retrieved.
-				return;
-			}
-			MethodInfo mi = new MethodInfo(body.getMethod(), SootTranslationHelpers.v().getCurrentSourceFileName());
+			Body body = sm.getActiveBody();
+			MethodInfo mi = new MethodInfo(body.getMethod(), context.getSourceFileName());
+			context.setMethodInfo(mi);
 
 			// pre-calculate when to pull/push
 			MemoryModel mm = SootTranslationHelpers.v().getMemoryModel();
 			if (mm instanceof NewMemoryModel) {
 				((NewMemoryModel) mm).clearFieldToLocalMap();
+				((NewMemoryModel) mm).computePushPullPoints(body);
 			}
 
 			// System.err.println(sm.getSignature()+"\n"+body);
@@ -278,9 +407,21 @@ public class SootToCfg {
 			e.printStackTrace(System.err);
 			// return;
 			throw e;
+		} finally {
+			SootTranslationHelpers.v().setTranslationContext(null);
 		}
 	}
 
+	/**
+	 * Translates the bodies of all application classes. All bodies are
+	 * prepared first, because Soot's optimizations are not thread safe.
+	 * Then the memory model collects the static fields that the bodies use,
+	 * which may retrieve further bodies and thus change the scene. Only
+	 * after that, the bodies are translated, one after another or, if
+	 * Options.v().parallelCfgConstruction() is set, by one worker per core.
+	 * Each body has its own TranslationContext; the program and the memory
+	 * model are shared and synchronized.
+	 */
 	private void constructCfg() {
 		//ingest all class definitions first.
 		List<SootClass> classes = new LinkedList<SootClass>(Scene.v().getClasses());
@@ -290,27 +431,87 @@ public class SootToCfg {
 			}
 		}				
 
+		List<TranslationContext> contexts = new LinkedList<TranslationContext>();
 		for (SootClass sc : classes) {
 			if (sc.resolvingLevel() >= SootClass.SIGNATURES && sc.isApplicationClass()) {
 				if ((!sc.isJavaLibraryClass() && !sc.isLibraryClass())) {
-					constructCfg(sc);
+					SootTranslationHelpers.v().setCurrentClass(sc);
+					for (SootMethod sm : new ArrayList<SootMethod>(sc.getMethods())) {
+						if (sm.isConcrete()) {
+							TranslationContext context = prepareCfg(sm);
+							if (context != null) {
+								contexts.add(context);
+							}
+						}
+					}
 				}
 			}
 		}
+		MemoryModel mm = SootTranslationHelpers.v().getMemoryModel();
+		if (mm instanceof NewMemoryModel) {
+			((NewMemoryModel) mm).collectStaticFieldUses();
+		}
+		constructCfgInParallel(contexts);
 	}
 
-	private void performAbstractionTransformations() {
-		StaticInitializerTransformer sit = new StaticInitializerTransformer();
-		sit.applyTransformation();
+	private void constructCfgInParallel(List<TranslationContext> contexts) {
+		final int threads = Math.min(Runtime.getRuntime().availableProcessors(), contexts.size());
+		if (!Options.v().parallelCfgConstruction() || threads <= 1) {
+			for (TranslationContext context : contexts) {
+				constructCfg(context);
+			}
+			return;
+		}
+		final Queue<TranslationContext> todo = new ConcurrentLinkedQueue<TranslationContext>(contexts);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> workers = new ArrayList<Future<?>>();
+			for (int i = 0; i < threads; i++) {
+				workers.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						TranslationContext context;
+						while ((context = todo.poll()) != null) {
+							constructCfg(context);
+						}
+					}
+				}));
+			}
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 
-		ArrayTransformer atrans = new ArrayTransformer();
-		atrans.applyTransformation();
+	private void performAbstractionTransformations() {
+		applyTransformation(new StaticInitializerTransformer());
+		applyTransformation(new ArrayTransformer());
 		if (Options.v().useBuiltInSpecs()) {
-			SpecClassTransformer spctrans = new SpecClassTransformer();
-			spctrans.applyTransformation();
+			applyTransformation(new SpecClassTransformer());
 		}
 	}
 
+	/**
+	 * Applies a scene transformation and records its time in the metrics.
+	 * @param transformer
+	 */
+	private void applyTransformation(AbstractSceneTransformer transformer) {
+		Metrics.Sample phase = Metrics.v()
+				.timer("soottocfg.transform." + transformer.getClass().getSimpleName()).start();
+		transformer.applyTransformation();
+		phase.stop();
+	}
+
 	/**
 	 * Perform a sequence of behavior preserving transformations to the body
 	 * of each method:
@@ -323,6 +524,7 @@ public class SootToCfg {
 		// add a field for the dynamic type of an object to each class.
 		// SootTranslationHelpers.createTypeFields();
 
+		Metrics.Sample phase = Metrics.v().timer("soottocfg.transform.body_cleanup").start();
 		List<SootClass> classes = new LinkedList<SootClass>(Scene.v().getClasses());
 		for (SootClass sc : classes) {
 			if (sc == SootTranslationHelpers.v().getAssertionClass()) {
@@ -367,15 +569,12 @@ public class SootToCfg {
 				}
 			}
 		}
-		AssertionReconstruction ar = new AssertionReconstruction();
-		ar.applyTransformation();
-		ExceptionTransformer em = new ExceptionTransformer(Options.v().excAsAssert());
-		em.applyTransformation();
-		SwitchStatementRemover so = new SwitchStatementRemover();
-		so.applyTransformation();
+		phase.stop();
+		applyTransformation(new AssertionReconstruction());
+		applyTransformation(new ExceptionTransformer(Options.v().excAsAssert()));
+		applyTransformation(new SwitchStatementRemover());
 		if (Options.v().resolveVirtualCalls()) {
-			VirtualCallResolver vc = new VirtualCallResolver();
-			vc.applyTransformation();
+			applyTransformation(new VirtualCallResolver());
 		}
 	}
 
@@ -468,47 +667,12 @@ public class SootToCfg {
 		return pta;
 	}
 
-	private static void setPointsToAnalysis(FlowBasedPointsToAnalysis pointsto) {
+	/**
+	 * Sets the points-to analysis that the push-pull simplification uses.
+	 * Only needed outside of run, e.g., to benchmark the simplification.
+	 * @param pointsto
+	 */
+	public static void setPointsToAnalysis(FlowBasedPointsToAnalysis pointsto) {
 		pta = pointsto;
 	}
-
-	private void removeUnreachableMethods(Program program) {
-		Set<Method> reachable = reachableMethod(program.getEntryPoint());
-		Set<Method> toRemove = new HashSet<Method>();
-		for (Method m : program.getMethods()) {
-			if (!reachable.contains(m)) {
-				toRemove.add(m);
-			}
-		}
-		program.removeMethods(toRemove);
-	}
-
-	private Set<Method> reachableMethod(Method main) {
-		Set<Method> reachable = new HashSet<Method>();
-		List<Method> todo = new LinkedList<Method>();
-		todo.add(main);
-		while (!todo.isEmpty()) {
-			Method m = todo.remove(0);
-			reachable.add(m);
-			for (Method n : calledMethods(m)) {
-				if (!reachable.contains(n) && !todo.contains(n)) {
-					todo.add(n);
-				}
-			}
-		}
-		return reachable;
-	}
-
-	private List<Method> calledMethods(Method m) {
-		List<Method> res = new LinkedList<Method>();
-		for (CfgBlock b : m.vertexSet()) {
-			for (Statement s : b.getStatements()) {
-				if (s instanceof CallStatement) {
-					CallStatement cs = (CallStatement) s;
-					res.add(cs.getCallTarget());
-				}
-			}
-		}
-		return res;
-	}
 }
@@ -51,6 +51,8 @@ import soottocfg.soot.util.SootTranslationHelpers;
 public abstract class BasicMemoryModel extends MemoryModel {
 
 	protected Program program;
+	// shared by all bodies, which may be translated in parallel, so the
+	// methods that use these maps are synchronized.
 	protected final Map<soot.Type, soottocfg.cfg.type.Type> types = new HashMap<soot.Type, soottocfg.cfg.type.Type>();
 	protected final Map<SootField, Variable> fieldGlobals = new HashMap<SootField, Variable>();
 
@@ -106,11 +108,11 @@ public abstract class BasicMemoryModel extends MemoryModel {
 	 * @see jayhorn.soot.memory_model.MemoryModel#mkStringLengthExpr(soot.Value)
 	 */
 	@Override
-	public Expression mkStringLengthExpr(Value arg0) {
+	public synchronized Expression mkStringLengthExpr(Value arg0) {
 		//TODO
 		Variable v = SootTranslationHelpers.v().getProgram().lookupGlobalVariable(
 				"TODO" + constantDictionary.size(), IntType.instance());
-		return new IdentifierExpression(this.statementSwitch.getCurrentLoc(),v);
+		return new IdentifierExpression(statementSwitch().getCurrentLoc(),v);
 	}
 
 	/*
@@ -130,12 +132,12 @@ public abstract class BasicMemoryModel extends MemoryModel {
 	 * StringConstant)
 	 */
 	@Override
-	public Expression mkStringConstant(StringConstant arg0) {
+	public synchronized Expression mkStringConstant(StringConstant arg0) {
 		if (!constantDictionary.containsKey(arg0)) {
 			constantDictionary.put(arg0, SootTranslationHelpers.v().getProgram().lookupGlobalVariable(
 					"$string" + constantDictionary.size(), lookupType(arg0.getType())));
 		}
-		return new IdentifierExpression(this.statementSwitch.getCurrentLoc(), constantDictionary.get(arg0));
+		return new IdentifierExpression(statementSwitch().getCurrentLoc(), constantDictionary.get(arg0));
 	}
 
 	/*
@@ -145,12 +147,12 @@ public abstract class BasicMemoryModel extends MemoryModel {
 	 * DoubleConstant)
 	 */
 	@Override
-	public Expression mkDoubleConstant(DoubleConstant arg0) {
+	public synchronized Expression mkDoubleConstant(DoubleConstant arg0) {
 		if (!constantDictionary.containsKey(arg0)) {
 			constantDictionary.put(arg0, SootTranslationHelpers.v().getProgram().lookupGlobalVariable(
 					"$double" + constantDictionary.size(), lookupType(arg0.getType())));
 		}
-		return new IdentifierExpression(this.statementSwitch.getCurrentLoc(), constantDictionary.get(arg0));
+		return new IdentifierExpression(statementSwitch().getCurrentLoc(), constantDictionary.get(arg0));
 	}
 
 	/*
@@ -160,12 +162,12 @@ public abstract class BasicMemoryModel extends MemoryModel {
 	 * FloatConstant)
 	 */
 	@Override
-	public Expression mkFloatConstant(FloatConstant arg0) {
+	public synchronized Expression mkFloatConstant(FloatConstant arg0) {
 		if (!constantDictionary.containsKey(arg0)) {
 			constantDictionary.put(arg0, SootTranslationHelpers.v().getProgram().lookupGlobalVariable(
 					"$float" + constantDictionary.size(), lookupType(arg0.getType())));
 		}
-		return new IdentifierExpression(this.statementSwitch.getCurrentLoc(), constantDictionary.get(arg0));
+		return new IdentifierExpression(statementSwitch().getCurrentLoc(), constantDictionary.get(arg0));
 	}
 
 	// @Override
@@ -186,7 +188,7 @@ public abstract class BasicMemoryModel extends MemoryModel {
 	 * TODO: check which types to use for Short, Lond, Double, and Float.
 	 */
 	@Override
-	public Type lookupType(soot.Type t) {
+	public synchronized Type lookupType(soot.Type t) {
 		if (!types.containsKey(t)) {
 			Type type = null;
 			if (t instanceof soot.BooleanType) {
@@ -220,7 +222,7 @@ public abstract class BasicMemoryModel extends MemoryModel {
 		List<Expression> receiver = new LinkedList<Expression>();
 		Method method = SootTranslationHelpers.v().lookupOrCreateMethod(constructor);
 		CallStatement stmt = new CallStatement(SootTranslationHelpers.v().getSourceLocation(u), method, args, receiver);
-		this.statementSwitch.push(stmt);
+		statementSwitch().push(stmt);
 	}
 
 	protected Type lookupRefLikeType(RefLikeType t) {
@@ -241,7 +243,7 @@ public abstract class BasicMemoryModel extends MemoryModel {
 		return className.replace('/', '.');
 	}
 	
-	public ClassVariable lookupClassVariable(ClassConstant cc) {
+	public synchronized ClassVariable lookupClassVariable(ClassConstant cc) {
 		if (!this.constantDictionary.containsKey(cc)) {
 			final String name = cc.getValue();
 			final String sootClassName = classNameToSootName(name);
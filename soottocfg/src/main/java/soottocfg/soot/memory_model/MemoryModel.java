@@ -20,6 +20,7 @@ import soot.jimple.StringConstant;
 import soottocfg.cfg.expression.Expression;
 import soottocfg.cfg.type.Type;
 import soottocfg.cfg.variable.ClassVariable;
+import soottocfg.soot.util.SootTranslationHelpers;
 import soottocfg.soot.visitors.SootStmtSwitch;
 import soottocfg.soot.visitors.SootValueSwitch;
 
@@ -29,18 +30,28 @@ import soottocfg.soot.visitors.SootValueSwitch;
  */
 public abstract class MemoryModel {
 
-	protected SootStmtSwitch statementSwitch;
-	protected SootValueSwitch valueSwitch;
-
 	public MemoryModel() {
 	}
 
+	/*
+	 * The switches belong to the body that is translated, so they are kept
+	 * in its translation context. This allows the memory model to be shared
+	 * by bodies that are translated in parallel.
+	 */
 	public void setStmtSwitch(SootStmtSwitch ss) {
-		this.statementSwitch = ss;
+		SootTranslationHelpers.v().getTranslationContext().setStatementSwitch(ss);
 	}
 
 	public void setValueSwitch(SootValueSwitch vs) {
-		this.valueSwitch = vs;
+		SootTranslationHelpers.v().getTranslationContext().setValueSwitch(vs);
+	}
+
+	protected SootStmtSwitch statementSwitch() {
+		return SootTranslationHelpers.v().getTranslationContext().getStatementSwitch();
+	}
+
+	protected SootValueSwitch valueSwitch() {
+		return SootTranslationHelpers.v().getTranslationContext().getValueSwitch();
 	}
 
 	public abstract void mkHeapWriteStatement(Unit u, FieldRef field, Value rhs);
@@ -3,6 +3,7 @@
  */
 package soottocfg.soot.memory_model;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -12,9 +13,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.common.base.Verify;
 
+import soot.Body;
 import soot.Local;
 import soot.Scene;
 import soot.SootClass;
@@ -51,6 +54,7 @@ import soottocfg.cfg.variable.ClassVariable;
 import soottocfg.cfg.variable.Variable;
 import soottocfg.soot.util.MethodInfo;
 import soottocfg.soot.util.SootTranslationHelpers;
+import soottocfg.soot.util.TranslationContext;
 
 /**
  * @author schaef
@@ -59,10 +63,9 @@ import soottocfg.soot.util.SootTranslationHelpers;
  */
 public class NewMemoryModel extends BasicMemoryModel {
 
-	private Map<Variable, Map<String, Variable>> fieldToLocalMap = new HashMap<Variable, Map<String, Variable>>();
-
+	// The field locals of the current method are in its TranslationContext.
 	// This one sticks around between method calls...
-	private Map<Variable, SootField> localToFieldMap = new HashMap<Variable, SootField>();
+	private final Map<Variable, SootField> localToFieldMap = new ConcurrentHashMap<Variable, SootField>();
 
 	// private static Variable staticFieldContainerVariable;
 	// private static List<SootField> usedStaticFields;
@@ -85,7 +88,30 @@ public class NewMemoryModel extends BasicMemoryModel {
 	public void clearFieldToLocalMap() {
 		// TODO: this is only here because we know it's only called once per
 		// method:
-		fieldToLocalMap.clear();
+		fieldToLocalMap().clear();
+	}
+
+	private Map<Variable, Map<String, Variable>> fieldToLocalMap() {
+		return SootTranslationHelpers.v().getTranslationContext().getFieldToLocalMap();
+	}
+
+	/**
+	 * Pre-calculates where to pull and push in the body of a constructor
+	 * or static initializer, so that pullAt and pushAt do not have to
+	 * search the unit graph for every field access. Must be called before
+	 * the body is translated.
+	 * @param body
+	 */
+	public void computePushPullPoints(Body body) {
+		SootTranslationHelpers.v().getTranslationContext().setPushPullPoints(new PushPullPoints(body));
+	}
+
+	private PushPullPoints getPushPullPoints(SootMethod m) {
+		TranslationContext context = SootTranslationHelpers.v().getTranslationContext();
+		if (context.getPushPullPoints() == null || context.getPushPullPoints().body != m.getActiveBody()) {
+			computePushPullPoints(m.getActiveBody());
+		}
+		return context.getPushPullPoints();
 	}
 
 	private boolean pullAt(Unit u, FieldRef fr) {
@@ -98,12 +124,7 @@ public class NewMemoryModel extends BasicMemoryModel {
 			if (m.isConstructor() && ifr.getBase().equals(m.getActiveBody().getThisLocal())) {
 				
 				// ...except after a method call
-				UnitGraph graph = new CompleteUnitGraph(m.getActiveBody());
-				if (methodCallAfterLastFieldRef(u, graph, m.getActiveBody().getThisLocal())) {
-					return true;
-				}
-				
-				return false;
+				return getPushPullPoints(m).pullThis.contains(u);
 			}
 		} else if (fr instanceof StaticFieldRef) {
 
@@ -113,33 +134,211 @@ public class NewMemoryModel extends BasicMemoryModel {
 		}
 		return true;
 	}
-	
-	private boolean methodCallAfterLastFieldRef(Unit u, UnitGraph graph, Local thisLocal) {
-		Queue<Unit> todo = new LinkedList<Unit>();
-		Set<Unit> done = new HashSet<Unit>();
-		todo.addAll(graph.getPredsOf(u));
-		while (!todo.isEmpty()) {
-			Unit unit = todo.poll();
-			done.add(unit);
-			Stmt s = (Stmt) unit;
-			if (s.containsInvokeExpr()) {
-				return true;
-			} else if (s.containsFieldRef()) {
-				FieldRef fr2 = s.getFieldRef();
-				if (fr2 instanceof InstanceFieldRef) {
-					InstanceFieldRef ifr2 = (InstanceFieldRef) fr2;
-					if (ifr2.getBase().equals(thisLocal) && !u.equals(unit)) {
-						continue;
+
+	/**
+	 * The units of a constructor or static initializer after which we pull
+	 * or push. Each set is computed by one pass over the unit graph.
+	 */
+	public static class PushPullPoints {
+		private final Body body;
+		// in a constructor, the units where a method call may have happened
+		// since the last access to 'this'.
+		private final Set<Unit> pullThis = new HashSet<Unit>();
+		// in a constructor, the writes to 'this' from which some path reaches
+		// the end of the constructor without another write to 'this'.
+		private final Set<Unit> pushThis = new HashSet<Unit>();
+		// in a static initializer, the accesses to static fields from which
+		// some path reaches the end without another access to a static field.
+		private final Set<Unit> pushStatic = new HashSet<Unit>();
+
+		private final List<Unit> units;
+		private final Map<Unit, Integer> index = new HashMap<Unit, Integer>();
+		private final List<List<Integer>> preds = new ArrayList<List<Integer>>();
+		private final List<List<Integer>> succs = new ArrayList<List<Integer>>();
+		private final boolean[] tail;
+
+		private PushPullPoints(Body body) {
+			this.body = body;
+			SootMethod m = body.getMethod();
+			if (!m.isConstructor() && !m.isStaticInitializer()) {
+				units = new ArrayList<Unit>();
+				tail = new boolean[0];
+				return;
+			}
+			final UnitGraph graph;
+			// building the exceptional graph uses Soot's shared caches.
+			synchronized (Scene.v()) {
+				graph = new CompleteUnitGraph(body);
+			}
+			units = new ArrayList<Unit>(body.getUnits());
+			for (Unit u : units) {
+				index.put(u, index.size());
+				preds.add(new ArrayList<Integer>());
+				succs.add(new ArrayList<Integer>());
+			}
+			for (Unit u : units) {
+				for (Unit p : graph.getPredsOf(u)) {
+					preds.get(index.get(u)).add(index.get(p));
+				}
+				for (Unit s : graph.getSuccsOf(u)) {
+					succs.get(index.get(u)).add(index.get(s));
+				}
+			}
+			tail = new boolean[units.size()];
+			for (Unit u : graph.getTails()) {
+				tail[index.get(u)] = true;
+			}
+
+			if (m.isConstructor()) {
+				computePullThis(body.getThisLocal());
+				computePushThis(body.getThisLocal());
+			} else {
+				computePushStatic();
+			}
+		}
+
+		/**
+		 * A unit pulls 'this' if there is a path from a method call to it
+		 * that does not access 'this' in between.
+		 */
+		private void computePullThis(Local thisLocal) {
+			final int n = units.size();
+			// out[i]: a call may have happened since the last access to 'this'
+			// after unit i.
+			boolean[] out = new boolean[n];
+			Queue<Integer> todo = new LinkedList<Integer>();
+			for (int i = 0; i < n; i++) {
+				if (((Stmt) units.get(i)).containsInvokeExpr()) {
+					out[i] = true;
+					todo.add(i);
+				}
+			}
+			List<List<Integer>> users = invert(preds);
+			while (!todo.isEmpty()) {
+				final int i = todo.poll();
+				for (int j : users.get(i)) {
+					pullThis.add(units.get(j));
+					if (!out[j] && !accessesThis((Stmt) units.get(j), thisLocal)) {
+						out[j] = true;
+						todo.add(j);
 					}
 				}
 			}
-			for (Unit prev : graph.getPredsOf(unit)) {
-				if (!todo.contains(prev) && !done.contains(prev)) {
-					todo.add(prev);
+		}
+
+		/**
+		 * A write to 'this' pushes if there is a path from it to a tail that
+		 * neither writes 'this' again nor calls the super constructor, and
+		 * that does not end in a method call.
+		 */
+		private void computePushThis(Local thisLocal) {
+			final int n = units.size();
+			boolean[] stop = new boolean[n];
+			boolean[] reachesEnd = new boolean[n];
+			for (int i = 0; i < n; i++) {
+				Stmt s = (Stmt) units.get(i);
+				stop[i] = writesThis(s, thisLocal) || callsSuperConstructor(s, thisLocal);
+				reachesEnd[i] = !stop[i] && tail[i] && !s.containsInvokeExpr();
+			}
+			propagateToPredecessors(stop, reachesEnd);
+			for (int i = 0; i < n; i++) {
+				if (writesThis((Stmt) units.get(i), thisLocal)) {
+					if (tail[i] ? !((Stmt) units.get(i)).containsInvokeExpr() : anySuccessor(i, reachesEnd)) {
+						pushThis.add(units.get(i));
+					}
+				}
+			}
+		}
+
+		/**
+		 * An access to a static field pushes if there is a path from it to a
+		 * tail that does not access a static field again.
+		 */
+		private void computePushStatic() {
+			final int n = units.size();
+			boolean[] stop = new boolean[n];
+			boolean[] reachesEnd = new boolean[n];
+			for (int i = 0; i < n; i++) {
+				Stmt s = (Stmt) units.get(i);
+				stop[i] = s.containsFieldRef() && s.getFieldRef() instanceof StaticFieldRef;
+				reachesEnd[i] = !stop[i] && tail[i];
+			}
+			propagateToPredecessors(stop, reachesEnd);
+			for (int i = 0; i < n; i++) {
+				if (stop[i] && (tail[i] || anySuccessor(i, reachesEnd))) {
+					pushStatic.add(units.get(i));
+				}
+			}
+		}
+
+		/**
+		 * Marks every unit that is not a stop and not a tail, and that has a
+		 * successor which is already marked.
+		 */
+		private void propagateToPredecessors(boolean[] stop, boolean[] marked) {
+			Queue<Integer> todo = new LinkedList<Integer>();
+			for (int i = 0; i < marked.length; i++) {
+				if (marked[i]) {
+					todo.add(i);
+				}
+			}
+			List<List<Integer>> users = invert(succs);
+			while (!todo.isEmpty()) {
+				final int i = todo.poll();
+				for (int j : users.get(i)) {
+					if (!marked[j] && !stop[j] && !tail[j]) {
+						marked[j] = true;
+						todo.add(j);
+					}
+				}
+			}
+		}
+
+		private boolean anySuccessor(int i, boolean[] marked) {
+			for (int j : succs.get(i)) {
+				if (marked[j]) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Returns for each unit i the units j with i in edges.get(j).
+		 */
+		private static List<List<Integer>> invert(List<List<Integer>> edges) {
+			List<List<Integer>> inverse = new ArrayList<List<Integer>>();
+			for (int i = 0; i < edges.size(); i++) {
+				inverse.add(new ArrayList<Integer>());
+			}
+			for (int j = 0; j < edges.size(); j++) {
+				for (int i : edges.get(j)) {
+					inverse.get(i).add(j);
 				}
 			}
+			return inverse;
+		}
+
+		private static boolean accessesThis(Stmt s, Local thisLocal) {
+			return s.containsFieldRef() && s.getFieldRef() instanceof InstanceFieldRef
+					&& ((InstanceFieldRef) s.getFieldRef()).getBase().equals(thisLocal);
+		}
+
+		private static boolean writesThis(Stmt s, Local thisLocal) {
+			if (s instanceof AssignStmt && s.containsFieldRef()) {
+				Value left = ((AssignStmt) s).getLeftOp();
+				return left instanceof InstanceFieldRef && ((InstanceFieldRef) left).getBase().equals(thisLocal);
+			}
+			return false;
+		}
+
+		private static boolean callsSuperConstructor(Stmt s, Local thisLocal) {
+			if (s.containsInvokeExpr() && s.getInvokeExpr() instanceof SpecialInvokeExpr) {
+				SpecialInvokeExpr ivk = (SpecialInvokeExpr) s.getInvokeExpr();
+				return ivk.getMethod().isConstructor() && ivk.getBase().equals(thisLocal);
+			}
+			return false;
 		}
-		return false;
 	}
 
 	/**
@@ -151,9 +350,9 @@ public class NewMemoryModel extends BasicMemoryModel {
 		if (!m.isConstructor() || m.isStatic() || !m.isConcrete()) {
 			return;
 		}
-		SourceLocation loc = this.statementSwitch.getCurrentLoc();
+		SourceLocation loc = statementSwitch().getCurrentLoc();
 
-		Variable thisLocal = this.statementSwitch.getMethodInfo().lookupLocalVariable(m.getActiveBody().getThisLocal());
+		Variable thisLocal = statementSwitch().getMethodInfo().lookupLocalVariable(m.getActiveBody().getThisLocal());
 		ClassVariable classVar = ((ReferenceType) thisLocal.getType()).getClassVariable();
 
 		List<Variable> vars = new LinkedList<Variable>();
@@ -167,12 +366,11 @@ public class NewMemoryModel extends BasicMemoryModel {
 		}
 
 		PushStatement push = new PushStatement(loc, classVar, new IdentifierExpression(loc, thisLocal), packedVars);
-		this.statementSwitch.push(push);
+		statementSwitch().push(push);
 	}
 
 	private boolean pushAt(Unit u, FieldRef fr) {
 		SootMethod m = SootTranslationHelpers.v().getCurrentMethod();
-		UnitGraph graph = new CompleteUnitGraph(m.getActiveBody());
 
 		if (fr instanceof InstanceFieldRef) {
 			InstanceFieldRef ifr = (InstanceFieldRef) fr;
@@ -182,81 +380,15 @@ public class NewMemoryModel extends BasicMemoryModel {
 
 				// check if there is any path from 'u' to the tail(s) that does
 				// not contain an write to 'this'
-				List<Unit> tails = graph.getTails();
-				List<Unit> todo = new LinkedList<Unit>();
-				Set<Unit> done = new HashSet<Unit>();
-				todo.add(u);
-				boolean foundPathWithoutAccess = false;
-				while (!todo.isEmpty()) {
-					Unit unit = todo.remove(0);
-					done.add(unit);
-					// if it contains another write to 'this', stop exploring
-					// this path
-					Stmt s = (Stmt) unit;
-					if (s instanceof AssignStmt && s.containsFieldRef()) {
-						AssignStmt as = (AssignStmt) s;
-						if (as.getLeftOp() instanceof InstanceFieldRef) {
-							InstanceFieldRef ifr2 = (InstanceFieldRef) as.getLeftOp();
-							if (ifr2.getBase().equals(m.getActiveBody().getThisLocal()) && !u.equals(unit)) {
-								continue;
-							}
-						}
-					} else if (s.containsInvokeExpr() && s.getInvokeExpr() instanceof SpecialInvokeExpr) {
-						// also stop exploring if there is a call to the
-						// super class constructor.
-						SpecialInvokeExpr ivk = (SpecialInvokeExpr) s.getInvokeExpr();
-
-						if (ivk.getMethod().isConstructor() && ivk.getBase().equals(m.getActiveBody().getThisLocal())) {
-							// super class constructor.
-							continue;
-						}
-					}
-
-					if (tails.contains(unit)) {
-						if (!s.containsInvokeExpr()) {
-							foundPathWithoutAccess = true; // at the end of this
-															// path
-						}
-					} else {
-						for (Unit next : graph.getSuccsOf(unit)) {
-							if (!todo.contains(next) && !done.contains(next)) {
-								todo.add(next);
-							}
-						}
-						// todo.addAll(graph.getSuccsOf(unit));
-					}
-				}
-				return foundPathWithoutAccess;
+				return getPushPullPoints(m).pushThis.contains(u);
 			}
 		} else if (fr instanceof StaticFieldRef) {
 			// in static initializer only push at the end
 			if (m.isStaticInitializer()) {
 
 				// check if there is any path from 'u' to the tail(s) that does
-				// not contain an access to 'this'
-				List<Unit> tails = graph.getTails();
-				List<Unit> todo = new LinkedList<Unit>();
-				todo.add(u);
-				boolean foundPathWithoutAccess = false;
-				while (!todo.isEmpty()) {
-					Unit unit = todo.remove(0);
-
-					// if it contains another access to a static field, stop
-					// exploring this path
-					Stmt s = (Stmt) unit;
-					if (s.containsFieldRef()) {
-						FieldRef fr2 = s.getFieldRef();
-						if (fr2 instanceof StaticFieldRef && !u.equals(unit))
-							continue;
-					}
-
-					if (tails.contains(unit))
-						foundPathWithoutAccess = true; // at the end of this
-														// path
-					else
-						todo.addAll(graph.getSuccsOf(unit));
-				}
-				return foundPathWithoutAccess;
+				// not contain an access to a static field
+				return getPushPullPoints(m).pushStatic.contains(u);
 			}
 		}
 		return true;
@@ -266,8 +398,8 @@ public class NewMemoryModel extends BasicMemoryModel {
 	public void mkHeapWriteStatement(Unit u, FieldRef fieldRef, Value rhs) {
 		SourceLocation loc = SootTranslationHelpers.v().getSourceLocation(u);
 
-		rhs.apply(valueSwitch);
-		Expression value = valueSwitch.popExpression();
+		rhs.apply(valueSwitch());
+		Expression value = valueSwitch().popExpression();
 
 		ClassVariable classVar;
 		IdentifierExpression base;
@@ -275,8 +407,8 @@ public class NewMemoryModel extends BasicMemoryModel {
 
 		if (fieldRef instanceof InstanceFieldRef) {
 			InstanceFieldRef ifr = (InstanceFieldRef) fieldRef;
-			ifr.getBase().apply(valueSwitch);
-			base = (IdentifierExpression) valueSwitch.popExpression();
+			ifr.getBase().apply(valueSwitch());
+			base = (IdentifierExpression) valueSwitch().popExpression();
 			// classVar = lookupClassVariable(
 			// SootTranslationHelpers.v().getClassConstant(fieldRef.getField().getDeclaringClass().getType()));
 			classVar = ((ReferenceType) base.getType()).getClassVariable();
@@ -313,20 +445,20 @@ public class NewMemoryModel extends BasicMemoryModel {
 		if (pullAt(u, fieldRef)) {
 			List<IdentifierExpression> unpackedVars = new LinkedList<IdentifierExpression>();
 			for (int i = 0; i < vars.length; i++) {
-				unpackedVars.add(new IdentifierExpression(this.statementSwitch.getCurrentLoc(), vars[i]));
+				unpackedVars.add(new IdentifierExpression(statementSwitch().getCurrentLoc(), vars[i]));
 			}
-			this.statementSwitch.push(new PullStatement(loc, classVar, base, unpackedVars));
+			statementSwitch().push(new PullStatement(loc, classVar, base, unpackedVars));
 		}
 		// ------------------------------------
-		this.statementSwitch.push(new AssignStatement(loc,
-				new IdentifierExpression(this.statementSwitch.getCurrentLoc(), fieldVar), value));
+		statementSwitch().push(new AssignStatement(loc,
+				new IdentifierExpression(statementSwitch().getCurrentLoc(), fieldVar), value));
 		// ------------- push -----------------
 		if (pushAt(u, fieldRef)) {
 			List<Expression> packedVars = new LinkedList<Expression>();
 			for (int i = 0; i < vars.length; i++) {
-				packedVars.add(new IdentifierExpression(this.statementSwitch.getCurrentLoc(), vars[i]));
+				packedVars.add(new IdentifierExpression(statementSwitch().getCurrentLoc(), vars[i]));
 			}
-			this.statementSwitch.push(new PushStatement(loc, classVar, base, packedVars));
+			statementSwitch().push(new PushStatement(loc, classVar, base, packedVars));
 		}
 		// ------------------------------------
 
@@ -337,16 +469,16 @@ public class NewMemoryModel extends BasicMemoryModel {
 		SourceLocation loc = SootTranslationHelpers.v().getSourceLocation(u);
 		// Variable fieldVar = lookupField(fieldRef.getField());
 
-		lhs.apply(valueSwitch);
-		IdentifierExpression left = (IdentifierExpression) valueSwitch.popExpression();
+		lhs.apply(valueSwitch());
+		IdentifierExpression left = (IdentifierExpression) valueSwitch().popExpression();
 
 		ClassVariable classVar;
 		IdentifierExpression base;
 		List<Variable> fieldLocals = new LinkedList<Variable>();
 		if (fieldRef instanceof InstanceFieldRef) {
 			InstanceFieldRef ifr = (InstanceFieldRef) fieldRef;
-			ifr.getBase().apply(valueSwitch);
-			base = (IdentifierExpression) valueSwitch.popExpression();
+			ifr.getBase().apply(valueSwitch());
+			base = (IdentifierExpression) valueSwitch().popExpression();
 			// classVar = lookupClassVariable(
 			// SootTranslationHelpers.v().getClassConstant(fieldRef.getField().getDeclaringClass().getType()));
 			classVar = ((ReferenceType) base.getType()).getClassVariable();
@@ -376,7 +508,7 @@ public class NewMemoryModel extends BasicMemoryModel {
 		if (SootTranslationHelpers.v().isWrittenOnce(field)) {
 			if (!field.isStatic()) {
 				TupleAccessExpression tae = new TupleAccessExpression(loc, base.getVariable(), field.getName());
-				this.statementSwitch.push(new AssignStatement(loc, left, tae));
+				statementSwitch().push(new AssignStatement(loc, left, tae));
 				// New, needs testing!
 				/*
 				 * We don't need to do this for writing these variables
@@ -398,13 +530,13 @@ public class NewMemoryModel extends BasicMemoryModel {
 		if (pullAt(u, fieldRef)) {
 			List<IdentifierExpression> unpackedVars = new LinkedList<IdentifierExpression>();
 			for (int i = 0; i < vars.length; i++) {
-				unpackedVars.add(new IdentifierExpression(this.statementSwitch.getCurrentLoc(), vars[i]));
+				unpackedVars.add(new IdentifierExpression(statementSwitch().getCurrentLoc(), vars[i]));
 			}
-			this.statementSwitch.push(new PullStatement(loc, classVar, base, unpackedVars));
+			statementSwitch().push(new PullStatement(loc, classVar, base, unpackedVars));
 		}
 		// ------------------------------------
-		this.statementSwitch.push(new AssignStatement(loc, left,
-				new IdentifierExpression(this.statementSwitch.getCurrentLoc(), fieldVar)));
+		statementSwitch().push(new AssignStatement(loc, left,
+				new IdentifierExpression(statementSwitch().getCurrentLoc(), fieldVar)));
 		// ------------- push -----------------
 		// if (pushAt(u, fieldRef)) {
 		// List<Expression> packedVars = new LinkedList<Expression>();
@@ -419,47 +551,72 @@ public class NewMemoryModel extends BasicMemoryModel {
 	}
 
 	Map<SootClass, Variable> staticClassGlobals = new LinkedHashMap<SootClass, Variable>();
-	Map<Variable, List<SootField>> staticFieldsPerClass = new HashMap<Variable, List<SootField>>();
+	// read without the lock of getStaticFieldContainerVariable
+	Map<Variable, List<SootField>> staticFieldsPerClass = new ConcurrentHashMap<Variable, List<SootField>>();
+	// the static fields that the bodies of the scene use, by declaring class.
+	private Map<SootClass, List<SootField>> staticFieldUses;
 
-	protected Variable getStaticFieldContainerVariable(SootClass sootClass) {
-		if (!staticClassGlobals.containsKey(sootClass)) {
-			ClassVariable classVar = new ClassVariable("$StaticFields_" + sootClass.getName(),
-					new LinkedList<ClassVariable>());
-			List<SootField> usedFields = new LinkedList<SootField>();
-			List<Variable> fieldVars = new LinkedList<Variable>();
-
-			for (SootClass sc : new LinkedList<SootClass>(Scene.v().getClasses())) {
-				if (sc.resolvingLevel() >= SootClass.BODIES) {
-					for (SootMethod sm : sc.getMethods()) {
-						try {
-							for (Unit u : sm.retrieveActiveBody().getUnits()) {
-								Stmt st = (Stmt) u;
-								if (st.containsFieldRef()) {
-									SootField sf = st.getFieldRef().getField();
-									if (sf.isStatic() && !usedFields.contains(sf)
-											&& sf.getDeclaringClass().equals(sootClass)) {
-										if (!sf.equals(SootTranslationHelpers.v().getExceptionGlobal())) {
-											fieldVars.add(
-													new Variable(sf.getDeclaringClass().getName() + "." + sf.getName(),
-															this.lookupType(sf.getType())));
-											usedFields.add(sf);
-										}
+	/**
+	 * Collects the static fields that the bodies of the scene use.
+	 * Retrieving a body may create it, which changes the scene. So this is
+	 * done once before the bodies are translated, and not while other
+	 * threads translate bodies.
+	 */
+	public synchronized void collectStaticFieldUses() {
+		staticFieldUses = new HashMap<SootClass, List<SootField>>();
+		for (SootClass sc : new LinkedList<SootClass>(Scene.v().getClasses())) {
+			if (sc.resolvingLevel() >= SootClass.BODIES) {
+				for (SootMethod sm : sc.getMethods()) {
+					try {
+						for (Unit u : sm.retrieveActiveBody().getUnits()) {
+							Stmt st = (Stmt) u;
+							if (st.containsFieldRef()) {
+								SootField sf = st.getFieldRef().getField();
+								if (sf.isStatic() && !sf.equals(SootTranslationHelpers.v().getExceptionGlobal())) {
+									List<SootField> usedFields = staticFieldUses.get(sf.getDeclaringClass());
+									if (usedFields == null) {
+										usedFields = new LinkedList<SootField>();
+										staticFieldUses.put(sf.getDeclaringClass(), usedFields);
+									}
+									if (!usedFields.contains(sf)) {
+										usedFields.add(sf);
 									}
 								}
 							}
-						} catch (Exception e) {
-
 						}
+					} catch (Exception e) {
+
 					}
 				}
 			}
+		}
+	}
+
+	protected synchronized Variable getStaticFieldContainerVariable(SootClass sootClass) {
+		if (!staticClassGlobals.containsKey(sootClass)) {
+			if (staticFieldUses == null) {
+				collectStaticFieldUses();
+			}
+			ClassVariable classVar = new ClassVariable("$StaticFields_" + sootClass.getName(),
+					new LinkedList<ClassVariable>());
+			List<SootField> usedFields = new LinkedList<SootField>();
+			if (staticFieldUses.containsKey(sootClass)) {
+				usedFields.addAll(staticFieldUses.get(sootClass));
+			}
+			List<Variable> fieldVars = new LinkedList<Variable>();
+			for (SootField sf : usedFields) {
+				fieldVars.add(new Variable(sf.getDeclaringClass().getName() + "." + sf.getName(),
+						this.lookupType(sf.getType())));
+			}
 			classVar.addFields(fieldVars);
 			SootTranslationHelpers.v().getProgram().addClassVariable(classVar);
 			Variable var = new Variable(GlobalsClassName + sootClass.getName(), new ReferenceType(classVar), true,
 					true);
 			staticClassGlobals.put(sootClass, var);
 			staticFieldsPerClass.put(var, usedFields);
-			this.program.getGlobalsMap().put(sootClass.getName(), var);
+			synchronized (this.program) {
+				this.program.getGlobalsMap().put(sootClass.getName(), var);
+			}
 		}
 		return staticClassGlobals.get(sootClass);
 
@@ -513,7 +670,7 @@ public class NewMemoryModel extends BasicMemoryModel {
 		Method method = SootTranslationHelpers.v().lookupOrCreateMethod(constructor);
 
 		List<Expression> receiver = new LinkedList<Expression>();
-		receiver.add(this.statementSwitch.getMethodInfo().getExceptionVariable());
+		receiver.add(statementSwitch().getMethodInfo().getExceptionVariable());
 
 		SootClass declClass = constructor.getDeclaringClass();
 		SootClass currentClass = SootTranslationHelpers.v().getCurrentMethod().getDeclaringClass();
@@ -524,7 +681,7 @@ public class NewMemoryModel extends BasicMemoryModel {
 			 * values to assign all field locals.
 			 */
 			JimpleBody jb = (JimpleBody) SootTranslationHelpers.v().getCurrentMethod().getActiveBody();
-			Variable thisLocal = this.statementSwitch.getMethodInfo().lookupLocalVariable(jb.getThisLocal());
+			Variable thisLocal = statementSwitch().getMethodInfo().lookupLocalVariable(jb.getThisLocal());
 
 			for (SootField sf : SootTranslationHelpers.findNonStaticFieldsRecursively(declClass)) {
 				receiver.add(new IdentifierExpression(loc, lookupFieldLocal(thisLocal, sf)));
@@ -532,7 +689,7 @@ public class NewMemoryModel extends BasicMemoryModel {
 			verifyArgLength(u, method, receiver);
 
 			CallStatement stmt = new CallStatement(loc, method, args, receiver);
-			this.statementSwitch.push(stmt);
+			statementSwitch().push(stmt);
 			// TODO: this is a hack at should be handeled properly.
 			// TODO: @Rody, instead of pushing after the consturctor call,
 			// we could just use the field locals and treat the constructor
@@ -570,11 +727,11 @@ public class NewMemoryModel extends BasicMemoryModel {
 			verifyArgLength(u, method, receiver);
 
 			CallStatement stmt = new CallStatement(loc, method, args, receiver);
-			this.statementSwitch.push(stmt);
+			statementSwitch().push(stmt);
 			for (AssumeStatement s : assumeTupleVals) {
 				// System.err.println("sfgdfgd\t" + s);
 				// TODO: debug if this is reachable
-				this.statementSwitch.push(s);
+				statementSwitch().push(s);
 			}
 		}
 
@@ -605,17 +762,18 @@ public class NewMemoryModel extends BasicMemoryModel {
 	@Override
 	public void mkCopy(Local lhs, Local rhs) {
 		// System.out.println("Copying " + rhs + " into " + lhs);
-		lhs.apply(valueSwitch);
-		IdentifierExpression base = (IdentifierExpression) valueSwitch.popExpression();
-		for (Map.Entry<Variable, Map<String, Variable>> e : fieldToLocalMap.entrySet()) {
+		lhs.apply(valueSwitch());
+		IdentifierExpression base = (IdentifierExpression) valueSwitch().popExpression();
+		for (Map.Entry<Variable, Map<String, Variable>> e : fieldToLocalMap().entrySet()) {
 			if (e.getKey().getName().equals(rhs.getName())) {
-				fieldToLocalMap.put(base.getVariable(), e.getValue());
+				fieldToLocalMap().put(base.getVariable(), e.getValue());
 				return;
 			}
 		}
 	}
 
 	private Map<String, Variable> getMapForVar(Variable baseVar) {
+		Map<Variable, Map<String, Variable>> fieldToLocalMap = fieldToLocalMap();
 		if (!fieldToLocalMap.containsKey(baseVar)) {
 			fieldToLocalMap.put(baseVar, new HashMap<String, Variable>());
 		}
@@ -631,15 +789,15 @@ public class NewMemoryModel extends BasicMemoryModel {
 			 * Unless it is a static field, then we treat it
 			 * like any other field.
 			 */
-			if (this.statementSwitch.getMethod().isConstructor()) {
-				JimpleBody jb = (JimpleBody) this.statementSwitch.getMethod().getActiveBody();
-				Variable thisVar = statementSwitch.getMethodInfo().lookupLocalVariable(jb.getThisLocal());
+			if (statementSwitch().getMethod().isConstructor()) {
+				JimpleBody jb = (JimpleBody) statementSwitch().getMethod().getActiveBody();
+				Variable thisVar = statementSwitch().getMethodInfo().lookupLocalVariable(jb.getThisLocal());
 				if (baseVar.equals(thisVar)) {
 					int i = 1;
 					for (SootField cfield : SootTranslationHelpers
 							.findNonStaticFieldsRecursively(sf.getDeclaringClass())) {
 						if (cfield.equals(sf)) {
-							Variable outVar = statementSwitch.getMethodInfo().getOutVariable(i);
+							Variable outVar = statementSwitch().getMethodInfo().getOutVariable(i);
 							if (!f2l.containsKey(sf.getDeclaration())) {
 								f2l.put(sf.getDeclaration(), outVar);
 							}
@@ -653,7 +811,7 @@ public class NewMemoryModel extends BasicMemoryModel {
 				}
 			}
 
-			MethodInfo currentMethodInfo = this.statementSwitch.getMethodInfo();
+			MethodInfo currentMethodInfo = statementSwitch().getMethodInfo();
 			soottocfg.cfg.type.Type tp = this.lookupType(sf.getType());
 			String name = baseVar.getName() + "_" + sf.getName() + "_" + sf.getNumber();
 			if (sf.isStatic()) {
@@ -676,8 +834,8 @@ public class NewMemoryModel extends BasicMemoryModel {
 		Variable baseVar = null;
 		if (fieldRef instanceof InstanceFieldRef) {
 			InstanceFieldRef ifr = (InstanceFieldRef) fieldRef;
-			ifr.getBase().apply(valueSwitch);
-			IdentifierExpression base = (IdentifierExpression) valueSwitch.popExpression();
+			ifr.getBase().apply(valueSwitch());
+			IdentifierExpression base = (IdentifierExpression) valueSwitch().popExpression();
 			baseVar = base.getVariable();
 		} else if (fieldRef instanceof StaticFieldRef) {
 			baseVar = getStaticFieldContainerVariable(fieldRef.getField().getDeclaringClass());
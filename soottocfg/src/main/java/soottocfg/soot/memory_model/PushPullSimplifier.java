@@ -42,36 +42,42 @@ public class PushPullSimplifier {
 		boolean change = false;
 		Method[] ms = p.getMethods();
 		for (Method m : ms) {
-			if (debug) {
-				System.out.println("Simplifying method " + m.getMethodName());
-				System.out.println(m);
-			}
-			
-			// find loop headers
-			if (!loopHeaders.containsKey(m)) {
-				Dominators<CfgBlock> doms = new Dominators<CfgBlock>(m, m.getSource());
-				LoopFinder<CfgBlock> lf = new LoopFinder<CfgBlock>(doms);
-				loopHeaders.put(m, lf.getLoopHeaders());
+			change = simplify(m) ? true : change;
+		}
+		return change;
+	}
+	
+	public boolean simplify(Method m) {
+		boolean change = false;
+		if (debug) {
+			System.out.println("Simplifying method " + m.getMethodName());
+			System.out.println(m);
+		}
+		
+		// find loop headers
+		if (!loopHeaders.containsKey(m)) {
+			Dominators<CfgBlock> doms = new Dominators<CfgBlock>(m, m.getSource());
+			LoopFinder<CfgBlock> lf = new LoopFinder<CfgBlock>(doms);
+			loopHeaders.put(m, lf.getLoopHeaders());
+		}
+		
+		Set<CfgBlock> blocks = m.vertexSet();
+		int simplifications;
+		do {
+			// intra-block simplification
+			for (CfgBlock block : blocks) {
+				change = simplify(block) ? true : change;
 			}
 			
-			Set<CfgBlock> blocks = m.vertexSet();
-			int simplifications;
-			do {
-				// intra-block simplification
-				for (CfgBlock block : blocks) {
-					change = simplify(block) ? true : change;
-				}
-				
-				// inter-block simplifications
-				simplifications = 0;
-				simplifications += movePullsUpInCFG(m);
-				simplifications += movePushesDownInCFG(m);
-				change = (simplifications>0) ? true : change;
-			} while (simplifications > 0);
-			
-			if (debug)
-				System.out.println("SIMPLIFIED:\n"+m);			
-		}
+			// inter-block simplifications
+			simplifications = 0;
+			simplifications += movePullsUpInCFG(m);
+			simplifications += movePushesDownInCFG(m);
+			change = (simplifications>0) ? true : change;
+		} while (simplifications > 0);
+		
+		if (debug)
+			System.out.println("SIMPLIFIED:\n"+m);			
 		return change;
 	}
 	
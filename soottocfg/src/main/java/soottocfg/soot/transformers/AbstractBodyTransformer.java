@@ -0,0 +1,127 @@
+/**
+ * 
+ */
+package soottocfg.soot.transformers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import soot.Body;
+import soot.Scene;
+import soot.jimple.JimpleBody;
+import soot.toolkits.graph.CompleteUnitGraph;
+import soot.toolkits.graph.UnitGraph;
+import soottocfg.Options;
+
+/**
+ * A scene transformer that transforms each body of the scene on its own.
+ * 
+ * @author schaef
+ *
+ */
+public abstract class AbstractBodyTransformer extends AbstractSceneTransformer {
+
+	@Override
+	public void applyTransformation() {
+		transformSceneBodies();
+	}
+
+	/**
+	 * Transforms a single body.
+	 * 
+	 * @param body
+	 */
+	protected abstract void transformBody(JimpleBody body);
+
+	/**
+	 * Returns the transformer that a worker thread uses in parallel to this
+	 * one. Transformers that keep per-body state in fields must return a
+	 * new instance.
+	 * 
+	 * @return
+	 */
+	protected AbstractBodyTransformer newWorker() {
+		return this;
+	}
+
+	/**
+	 * Calls transformBody for each body of the scene. If
+	 * Options.v().parallelTransformations() is set, the bodies are
+	 * distributed over one worker per core. transformBody must then only
+	 * change its own body; everything that changes the scene, or uses Soot's
+	 * shared caches (unit graphs, validation), has to be synchronized on the
+	 * Scene, e.g., by using newUnitGraph and validate.
+	 */
+	protected void transformSceneBodies() {
+		Set<JimpleBody> bodies = getSceneBodies();
+		final int threads = Math.min(Runtime.getRuntime().availableProcessors(), bodies.size());
+		if (!Options.v().parallelTransformations() || threads <= 1) {
+			for (JimpleBody body : bodies) {
+				transformBody(body);
+			}
+			return;
+		}
+		final Queue<JimpleBody> todo = new ConcurrentLinkedQueue<JimpleBody>(bodies);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> workers = new ArrayList<Future<?>>();
+			for (int i = 0; i < threads; i++) {
+				final AbstractBodyTransformer worker = newWorker();
+				workers.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						JimpleBody body;
+						while ((body = todo.poll()) != null) {
+							worker.transformBody(body);
+						}
+					}
+				}));
+			}
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Creates a CompleteUnitGraph. The exceptional edges are computed with
+	 * Soot's global ThrowableSet caches, which are not thread safe.
+	 * 
+	 * @param body
+	 * @return
+	 */
+	protected UnitGraph newUnitGraph(Body body) {
+		synchronized (Scene.v()) {
+			return new CompleteUnitGraph(body);
+		}
+	}
+
+	/**
+	 * Validates the body. Some of Soot's validators build exceptional unit
+	 * graphs, so this is synchronized like newUnitGraph.
+	 * 
+	 * @param body
+	 */
+	protected void validate(Body body) {
+		synchronized (Scene.v()) {
+			body.validate();
+		}
+	}
+}
@@ -5,7 +5,9 @@ package soottocfg.soot.transformers;
 
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import soot.Body;
 import soot.Local;
@@ -103,10 +105,38 @@ public abstract class AbstractSceneTransformer {
 		return Jimple.v().newNeExpr(v, IntConstant.v(0));
 	}
 
-	private long counter = 0;
+	/**
+	 * Next free helper number per body. Each body is only transformed by
+	 * one thread, so the counter of a body is never updated concurrently.
+	 */
+	private final Map<Body, Integer> nextHelper = new ConcurrentHashMap<Body, Integer>();
 
+	/**
+	 * Adds a new local to body. The name is only unique within body, so it
+	 * does not depend on the order in which the bodies are transformed.
+	 * The locals of body are only scanned on the first call for body.
+	 * 
+	 * @param body
+	 * @param t
+	 * @return
+	 */
 	protected Local getFreshLocal(Body body, Type t) {
-		Local local = Jimple.v().newLocal("$helper" + (counter++), t);
+		Integer i = nextHelper.get(body);
+		if (i == null) {
+			i = body.getLocalCount();
+			for (Local l : body.getLocals()) {
+				String name = l.getName();
+				if (name.startsWith("$helper")) {
+					try {
+						i = Math.max(i, Integer.parseInt(name.substring("$helper".length())) + 1);
+					} catch (NumberFormatException e) {
+						// not one of ours.
+					}
+				}
+			}
+		}
+		nextHelper.put(body, i + 1);
+		Local local = Jimple.v().newLocal("$helper" + i, t);
 		body.getLocals().add(local);
 		return local;
 	}
@@ -35,7 +35,7 @@ import soottocfg.soot.util.SootTranslationHelpers;
  * @author schaef
  *
  */
-public class AssertionReconstruction extends AbstractSceneTransformer {
+public class AssertionReconstruction extends AbstractBodyTransformer {
 
 	/*
 	 * Code to handle Java Assertions.
@@ -43,14 +43,8 @@ public class AssertionReconstruction extends AbstractSceneTransformer {
 	private static final String javaAssertionType = "java.lang.AssertionError";
 	private static final String javaAssertionFlag = "$assertionsDisabled";
 
-	public void applyTransformation() {
-		for (JimpleBody body : this.getSceneBodies()) {
-			transform(body);
-		}
-	}
-	
-	
-	private void transform(Body body) {		
+	@Override
+	protected void transformBody(JimpleBody body) {		
 		removeAssertionRelatedNonsense(body); //TODO: is it sufficient to do this
 		                                      //for constructors?
 		reconstructJavaAssertions(body);
@@ -144,7 +138,7 @@ public class AssertionReconstruction extends AbstractSceneTransformer {
 			// System.out.println("removed useless block in
 			// "+body.getMethod().getBytecodeSignature());
 			body.getUnits().removeAll(unitsToRemove);
-			body.validate();
+			validate(body);
 		}
 	}
 
@@ -287,7 +281,7 @@ public class AssertionReconstruction extends AbstractSceneTransformer {
 		}
 
 		body.getUnits().removeAll(unitsToRemove);
-		body.validate();
+		validate(body);
 	}
 
 	/**
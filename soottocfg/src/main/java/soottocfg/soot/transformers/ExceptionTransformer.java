@@ -8,6 +8,8 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -119,12 +121,25 @@ public class ExceptionTransformer extends AbstractSceneTransformer {
 		}
 	}
 
+	/**
+	 * Soot does not assign line numbers to @caughtexception statements
+	 * deterministically (see DuplicatedCatchDetection), so the statements
+	 * that replace them take the tags of the next statement in the handler.
+	 * 
+	 * @param caughtExceptionStmt
+	 * @return
+	 */
+	private Host handlerTags(Unit caughtExceptionStmt) {
+		Unit next = body.getUnits().getSuccOf(caughtExceptionStmt);
+		return next != null ? next : caughtExceptionStmt;
+	}
+
 	private void transform(Body b) {
-		runtimeExceptions = new HashMap<Unit, List<Pair<Value, SootClass>>>();
-		methodInvokes = new HashSet<Pair<Unit, InvokeExpr>>();
-		throwStatements = new HashSet<Pair<Unit, Value>>();
-		caughtExceptionLocal = new HashMap<Unit, Local>();
-		generatedThrowStatements = new HashMap<SootClass, Unit>();
+		runtimeExceptions = new LinkedHashMap<Unit, List<Pair<Value, SootClass>>>();
+		methodInvokes = new LinkedHashSet<Pair<Unit, InvokeExpr>>();
+		throwStatements = new LinkedHashSet<Pair<Unit, Value>>();
+		caughtExceptionLocal = new LinkedHashMap<Unit, Local>();
+		generatedThrowStatements = new LinkedHashMap<SootClass, Unit>();
 
 		body = b;
 		this.nullnessAnalysis = new NullnessAnalysis(new CompleteUnitGraph(body));
@@ -137,14 +152,14 @@ public class ExceptionTransformer extends AbstractSceneTransformer {
 			collectPossibleExceptions(u);
 		}
 
-		Set<Trap> usedTraps = new HashSet<Trap>();
+		Set<Trap> usedTraps = new LinkedHashSet<Trap>();
 
 		usedTraps.addAll(handleRuntimeException());
 		usedTraps.addAll(handleMethodCalls());
 		usedTraps.addAll(handleThrowStatements());
 
 		// now remove the @caughtexceptionrefs
-		Map<Unit, Unit> replacementMap = new HashMap<Unit, Unit>();
+		Map<Unit, Unit> replacementMap = new LinkedHashMap<Unit, Unit>();
 		for (Trap t : usedTraps) {
 			// Replace the caughtExceptionRef in the handler unit by
 			// the exception local so that we can remove the traps.
@@ -164,7 +179,7 @@ public class ExceptionTransformer extends AbstractSceneTransformer {
 							right = Jimple.v().newCastExpr(right, left.getType());
 						}
 
-						Unit newAssign = assignStmtFor(left, right, ds);
+						Unit newAssign = assignStmtFor(left, right, handlerTags(ds));
 						replacementMap.put(ds, newAssign);
 					}
 				} else {
@@ -182,7 +197,7 @@ public class ExceptionTransformer extends AbstractSceneTransformer {
 			// after the exception is caught, set the
 			// $exception variable back to Null.
 			toInsert.add(assignStmtFor(SootTranslationHelpers.v().getExceptionGlobalRef(), NullConstant.v(),
-					entry.getKey()));
+					handlerTags(entry.getKey())));
 			body.getUnits().insertAfter(toInsert, entry.getKey());
 			body.getUnits().remove(entry.getKey());
 		}
@@ -194,7 +209,7 @@ public class ExceptionTransformer extends AbstractSceneTransformer {
 					body.getMethod().getSignature());
 			// TODO!!!!!
 			body.getTraps().clear();
-			Set<Unit> caughtExceptionUnits = new HashSet<Unit>();
+			Set<Unit> caughtExceptionUnits = new LinkedHashSet<Unit>();
 
 			for (Unit u : body.getUnits()) {
 				if (u instanceof DefinitionStmt && ((DefinitionStmt) u).getRightOp() instanceof CaughtExceptionRef) {
@@ -210,7 +225,7 @@ public class ExceptionTransformer extends AbstractSceneTransformer {
 	}
 
 	private Set<Trap> handleRuntimeException() {
-		Set<Trap> usedTraps = new HashSet<Trap>();
+		Set<Trap> usedTraps = new LinkedHashSet<Trap>();
 		// handle the runtime exceptions first.
 		for (Entry<Unit, List<Pair<Value, SootClass>>> entry : runtimeExceptions.entrySet()) {
 			Unit u = entry.getKey();
@@ -236,7 +251,7 @@ public class ExceptionTransformer extends AbstractSceneTransformer {
 	}
 
 	private Set<Trap> handleMethodCalls() {
-		Set<Trap> usedTraps = new HashSet<Trap>();
+		Set<Trap> usedTraps = new LinkedHashSet<Trap>();
 		// now handle method calls.
 		for (Pair<Unit, InvokeExpr> pair : methodInvokes) {
 			Unit u = pair.getFirst();
@@ -444,9 +459,9 @@ public class ExceptionTransformer extends AbstractSceneTransformer {
 	}
 
 	private Set<Trap> handleThrowStatements() {
-		Set<Trap> usedTraps = new HashSet<Trap>();
+		Set<Trap> usedTraps = new LinkedHashSet<Trap>();
 		// last but not least eliminate all throw statements that are caught.
-		Set<Unit> removeThrowStatements = new HashSet<Unit>();
+		Set<Unit> removeThrowStatements = new LinkedHashSet<Unit>();
 		for (Pair<Unit, Value> pair : throwStatements) {
 			Unit u = pair.getFirst();
 			// must be a RefType
@@ -779,7 +794,7 @@ public class ExceptionTransformer extends AbstractSceneTransformer {
 	 */
 	private void removeMonitorTraps(Body body) {
 		List<Trap> monitorTraps = new LinkedList<Trap>();
-		Map<Trap, List<Unit>> catchBlocks = new HashMap<Trap, List<Unit>>();
+		Map<Trap, List<Unit>> catchBlocks = new LinkedHashMap<Trap, List<Unit>>();
 
 		// first collect all monitor traps.
 		for (Trap t : body.getTraps()) {
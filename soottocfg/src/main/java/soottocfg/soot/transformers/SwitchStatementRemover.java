@@ -23,24 +23,22 @@ import soot.jimple.TableSwitchStmt;
  * @author schaef
  *
  */
-public class SwitchStatementRemover extends AbstractSceneTransformer {
+public class SwitchStatementRemover extends AbstractBodyTransformer {
 
-	public void applyTransformation() {
-
-		for (JimpleBody body : this.getSceneBodies()) {
-			Map<Unit, List<Unit>> toReplace = new LinkedHashMap<Unit, List<Unit>>();
-			PatchingChain<Unit> units = body.getUnits();
-			for (Unit u : units) {
-				if (u instanceof SwitchStmt) {
-					toReplace.put(u, replaceSwitchStatement((SwitchStmt) u));
-				}
-			}
-			for (Entry<Unit, List<Unit>> entry : toReplace.entrySet()) {
-				units.insertBefore(entry.getValue(), entry.getKey());
-				units.remove(entry.getKey());
+	@Override
+	protected void transformBody(JimpleBody body) {
+		Map<Unit, List<Unit>> toReplace = new LinkedHashMap<Unit, List<Unit>>();
+		PatchingChain<Unit> units = body.getUnits();
+		for (Unit u : units) {
+			if (u instanceof SwitchStmt) {
+				toReplace.put(u, replaceSwitchStatement((SwitchStmt) u));
 			}
-			body.validate();
 		}
+		for (Entry<Unit, List<Unit>> entry : toReplace.entrySet()) {
+			units.insertBefore(entry.getValue(), entry.getKey());
+			units.remove(entry.getKey());
+		}
+		validate(body);
 	}
 
 	/**
@@ -39,7 +39,6 @@ import soot.jimple.JimpleBody;
 import soot.jimple.SpecialInvokeExpr;
 import soot.jimple.Stmt;
 import soot.tagkit.Host;
-import soot.toolkits.graph.CompleteUnitGraph;
 import soottocfg.soot.util.LocalTypeFinder;
 import soottocfg.util.Pair;
 
@@ -47,7 +46,7 @@ import soottocfg.util.Pair;
  * @author schaef
  *
  */
-public class VirtualCallResolver extends AbstractSceneTransformer {
+public class VirtualCallResolver extends AbstractBodyTransformer {
 
 	private final Hierarchy hierarchy;
 
@@ -57,18 +56,24 @@ public class VirtualCallResolver extends AbstractSceneTransformer {
 	 * 
 	 */
 	public VirtualCallResolver() {
-		hierarchy = Scene.v().getActiveHierarchy();
+		this(Scene.v().getActiveHierarchy());
 	}
 
-	public void applyTransformation() {
-		for (JimpleBody body : this.getSceneBodies()) {
-			transform(body);
-		}
+	private VirtualCallResolver(Hierarchy hierarchy) {
+		this.hierarchy = hierarchy;
+	}
+
+	@Override
+	protected AbstractBodyTransformer newWorker() {
+		// Hierarchy caches its results in plain maps, so each worker
+		// gets its own.
+		return new VirtualCallResolver(new Hierarchy());
 	}
 
-	private void transform(Body body) {
+	@Override
+	protected void transformBody(JimpleBody body) {
 
-		ltf = new LocalTypeFinder(new CompleteUnitGraph(body), body);
+		ltf = new LocalTypeFinder(newUnitGraph(body), body, hierarchy);
 
 		Map<Unit, Pair<InstanceInvokeExpr, List<SootMethod>>> callsToResolve = new HashMap<Unit, Pair<InstanceInvokeExpr, List<SootMethod>>>();
 
@@ -122,7 +127,7 @@ public class VirtualCallResolver extends AbstractSceneTransformer {
 			// if its not run form within eclipse ... dig into that.
 			body.getUnits().remove(originalCall);
 		}
-		body.validate();
+		validate(body);
 	}
 
 	private List<Unit> createVirtualCall(Body body, SootMethod callee, Unit originalCall, InstanceInvokeExpr ivk) {
@@ -1,13 +1,20 @@
 package soottocfg.soot.util;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import com.google.common.base.Verify;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 
 import soottocfg.cfg.Program;
 import soottocfg.cfg.expression.Expression;
@@ -19,110 +26,255 @@ import soottocfg.cfg.statement.CallStatement;
 import soottocfg.cfg.statement.NewStatement;
 import soottocfg.cfg.statement.Statement;
 import soottocfg.cfg.type.ReferenceType;
+import soottocfg.cfg.type.Type;
+import soottocfg.cfg.util.GraphUtil;
+import soottocfg.cfg.variable.ClassVariable;
 import soottocfg.cfg.variable.Variable;
 import soottocfg.soot.memory_model.NewMemoryModel;
 import soottocfg.soot.transformers.ArrayTransformer;
 
 /**
+ * Flow-insensitive points-to analysis over the assignments and calls of
+ * the CFG. Each reference variable is a node of a constraint graph and
+ * each well-typed assignment (including parameter passing and returns) is
+ * an edge from the right to the left variable. Points-to sets are bit sets
+ * over the allocation sites.
+ * 
+ * The graph does not change while we solve it, so we collapse its strongly
+ * connected components and propagate the sets once along the edges in
+ * topological order. That is the same least fixpoint the old round-robin
+ * iteration computed, in time linear in the size of the graph times the
+ * size of the sets. The constraints are kept per method, so after a
+ * simplification only the methods that changed have to be scanned again
+ * (see update).
+ * 
  * @author rodykers
  */
 public class FlowBasedPointsToAnalysis {
 	
 	private int nextAliasClass = 0;
-	private Map<Variable,Set<Integer>> pointsTo = new HashMap<Variable,Set<Integer>>();
+
+	// the constraints of each method: allocations and edges from right to left.
+	private final Map<Method, MethodConstraints> constraints = new IdentityHashMap<Method, MethodConstraints>();
+	private final Map<NewStatement, Integer> allocationSites = new IdentityHashMap<NewStatement, Integer>();
+
+	// the constraint graph: one node per variable.
+	private final Map<Variable, Integer> nodes = new HashMap<Variable, Integer>();
+	private final List<Set<Integer>> successors = new ArrayList<Set<Integer>>();
+	private final List<BitSet> seeds = new ArrayList<BitSet>();
+
+	// the solution.
+	private Map<Variable, BitSet> pointsTo = new HashMap<Variable, BitSet>();
+
+	// the objects of the Jayhorn classes, one per type.
+	private final Map<Type, Integer> typeObjects = new IdentityHashMap<Type, Integer>();
+
+	private static class MethodConstraints {
+		private final List<Variable> allocated = new ArrayList<Variable>();
+		private final List<Integer> allocationSites = new ArrayList<Integer>();
+		private final List<Variable> sources = new ArrayList<Variable>();
+		private final List<Variable> targets = new ArrayList<Variable>();
+	}
 	
 	public void run(Program program) {
-		// first add allocation site / alias class to all constructor calls
-		for (Method m : program.getMethods()) {
-			for (CfgBlock b : m.vertexSet()) {
-				for (Statement s : b.getStatements()) {
-					if (s instanceof NewStatement) {
-						NewStatement ns = (NewStatement) s;
-						Set<Integer> pt = getPointsToSet(ns.getLeft());
-						pt.add(nextAliasClass++);
-					}
-				}
+		update(program, Arrays.asList(program.getMethods()));
+	}
+
+	/**
+	 * Collects the constraints of the methods that changed since the last
+	 * run again and solves the constraint graph. The constraints of all
+	 * other methods are reused, and so are the allocation sites, so the
+	 * points-to sets of two runs can be compared.
+	 * @param program
+	 * @param changed
+	 *            The methods that changed since the last run.
+	 * @return The variables whose points-to sets changed.
+	 */
+	public Set<Variable> update(Program program, Collection<Method> changed) {
+		Set<Method> methods = Sets.newIdentityHashSet();
+		methods.addAll(Arrays.asList(program.getMethods()));
+		constraints.keySet().retainAll(methods);
+		for (Method m : changed) {
+			if (methods.contains(m)) {
+				constraints.put(m, collectConstraints(m));
 			}
 		}
-		
-		// then propagate point to sets until we reach a fixpoint
-//		InterProceduralPullPushOrdering ordering = new InterProceduralPullPushOrdering(program.getEntryPoint());
-		int changes;
-		do {
-			changes = 0;
-
-			// go over all assignments and method calls and update points to sets
-			for (Method m : program.getMethods()) {
-				for (CfgBlock b : m.vertexSet()) {
-					for (Statement s : b.getStatements()) {
-						if (s instanceof AssignStatement) {
-							AssignStatement as = (AssignStatement) s;
-							if (refType(as.getLeft()) && refType(as.getRight())
-									&& !(as.getRight() instanceof NullLiteral)) {
-								Variable left = variableFromExpression(as.getLeft());
-								Variable right = variableFromExpression(as.getRight());
-								changes += rightIntoLeft(right, left);
-							}
-						} else if (s instanceof CallStatement) {
-							CallStatement cs = (CallStatement) s;
-							Method target = cs.getCallTarget();
-							List<Variable> params = target.getInParams();
-							List<Expression> args = cs.getArguments();
-							Verify.verify(params.size()==args.size());
-							for (int i = 0; i < params.size(); i++) {
-								Variable left = params.get(i);
-								if (refType(left) && refType(args.get(i))
-										&& !(args.get(i) instanceof NullLiteral)) {
-									Variable right = variableFromExpression(args.get(i));
-									changes += rightIntoLeft(right, left);
-								}
-							}
-							List<Variable> rets = target.getOutParams();
-							List<Expression> rec = cs.getReceiver();
-							Verify.verify(rec.size()==1 || rets.size()==rec.size(),
-									"In "+m.getMethodName()+ " for "+ cs+": "+rets.size()+"!="+rec.size());
-							for (int i = 1; i < rec.size(); i++) {
-								if (refType(rec.get(i)) && refType(rets.get(i-1))) {
-									Variable left = variableFromExpression(rec.get(i));
-									Variable right = rets.get(i-1);
-									changes += rightIntoLeft(right, left);
-								}
-							}
-//						} else if (s instanceof PullStatement) {
-//							PullStatement pull = (PullStatement) s;
-//							Variable left = variableFromExpression(pull.getObject());
-//							Set<PushStatement> pushes = ordering.getPushsInfluencing(pull);
-//							for (PushStatement push : pushes) {
-//								Variable right = variableFromExpression(push.getObject());
-//								changes += rightIntoLeft(right, left);
-//							}
+
+		Map<Variable, BitSet> previous = pointsTo;
+		pointsTo = solve();
+		Set<Variable> changedVariables = new HashSet<Variable>();
+		for (Entry<Variable, BitSet> entry : pointsTo.entrySet()) {
+			BitSet before = previous.get(entry.getKey());
+			if (before == null ? !entry.getValue().isEmpty() : !before.equals(entry.getValue())) {
+				changedVariables.add(entry.getKey());
+			}
+		}
+		for (Entry<Variable, BitSet> entry : previous.entrySet()) {
+			if (!pointsTo.containsKey(entry.getKey()) && !entry.getValue().isEmpty()) {
+				changedVariables.add(entry.getKey());
+			}
+		}
+		return changedVariables;
+	}
+
+	private MethodConstraints collectConstraints(Method m) {
+		MethodConstraints mc = new MethodConstraints();
+		for (CfgBlock b : m.vertexSet()) {
+			for (Statement s : b.getStatements()) {
+				if (s instanceof NewStatement) {
+					// add allocation site / alias class to all constructor calls
+					NewStatement ns = (NewStatement) s;
+					Variable left = variableFromExpression(ns.getLeft());
+					if (!isJayhornType(left)) {
+						mc.allocated.add(left);
+						mc.allocationSites.add(allocationSite(ns));
+					}
+				} else if (s instanceof AssignStatement) {
+					AssignStatement as = (AssignStatement) s;
+					if (refType(as.getLeft()) && refType(as.getRight())
+							&& !(as.getRight() instanceof NullLiteral)) {
+						Variable left = variableFromExpression(as.getLeft());
+						Variable right = variableFromExpression(as.getRight());
+						rightIntoLeft(right, left, mc);
+					}
+				} else if (s instanceof CallStatement) {
+					CallStatement cs = (CallStatement) s;
+					Method target = cs.getCallTarget();
+					List<Variable> params = target.getInParams();
+					List<Expression> args = cs.getArguments();
+					Verify.verify(params.size()==args.size());
+					for (int i = 0; i < params.size(); i++) {
+						Variable left = params.get(i);
+						if (refType(left) && refType(args.get(i))
+								&& !(args.get(i) instanceof NullLiteral)) {
+							Variable right = variableFromExpression(args.get(i));
+							rightIntoLeft(right, left, mc);
+						}
+					}
+					List<Variable> rets = target.getOutParams();
+					List<Expression> rec = cs.getReceiver();
+					Verify.verify(rec.size()==1 || rets.size()==rec.size(),
+							"In "+m.getMethodName()+ " for "+ cs+": "+rets.size()+"!="+rec.size());
+					for (int i = 1; i < rec.size(); i++) {
+						if (refType(rec.get(i)) && refType(rets.get(i-1))) {
+							Variable left = variableFromExpression(rec.get(i));
+							Variable right = rets.get(i-1);
+							rightIntoLeft(right, left, mc);
 						}
 					}
 				}
 			}
-		
-		} while (changes > 0);
+		}
+		return mc;
 	}
-	
-	private int rightIntoLeft(Variable right, Variable left) {
-		int changes = 0;
-		if (refType(left) && refType(right)) {
-			ReferenceType rtleft = (ReferenceType) left.getType();
-			ReferenceType rtright = (ReferenceType) right.getType();
-			Set<Integer> ptleft = getPointsToSet(left);
-			Set<Integer> ptright = getPointsToSet(right);
-			if (!ptleft.containsAll(ptright)){
-				for (Integer allocSite : ptright) {
-					// only consider well typed assignments
-					if (!ptleft.contains(allocSite) 
-							&& rtleft.getClassVariable().superclassOf(rtright.getClassVariable())) {
-						ptleft.add(allocSite);
-						changes++;
-					}
+
+	/**
+	 * Adds the edge right -> left to the constraints if the assignment is
+	 * well typed. The sets of the Jayhorn classes are fixed, so nothing
+	 * flows into them.
+	 */
+	private void rightIntoLeft(Variable right, Variable left, MethodConstraints mc) {
+		if (refType(left) && refType(right) && !isJayhornType(left)) {
+			ClassVariable cvleft = ((ReferenceType) left.getType()).getClassVariable();
+			ClassVariable cvright = ((ReferenceType) right.getType()).getClassVariable();
+			// only consider well typed assignments
+			if (cvleft != null && cvright != null && cvleft.superclassOf(cvright)) {
+				mc.sources.add(right);
+				mc.targets.add(left);
+			}
+		}
+	}
+
+	private int allocationSite(NewStatement ns) {
+		Integer site = allocationSites.get(ns);
+		if (site == null) {
+			site = nextAliasClass++;
+			allocationSites.put(ns, site);
+		}
+		return site;
+	}
+
+	private int node(Variable v) {
+		Integer n = nodes.get(v);
+		if (n == null) {
+			n = nodes.size();
+			nodes.put(v, n);
+			successors.add(new HashSet<Integer>());
+			BitSet seed = new BitSet();
+			if (isJayhornType(v)) {
+				seed.set(typeObject(v.getType()));
+			}
+			seeds.add(seed);
+		}
+		return n;
+	}
+
+	/**
+	 * Builds the constraint graph from the constraints of all methods,
+	 * computes its SCCs, and then propagates the points-to sets along the edges between them.
+	 * Each SCC is numbered after all SCCs reachable from it (see
+	 * GraphUtil.stronglyConnectedComponents), so we propagate from the
+	 * highest to the lowest number.
+	 */
+	private Map<Variable, BitSet> solve() {
+		nodes.clear();
+		successors.clear();
+		seeds.clear();
+		for (MethodConstraints mc : constraints.values()) {
+			for (int i = 0; i < mc.allocated.size(); i++) {
+				seeds.get(node(mc.allocated.get(i))).set(mc.allocationSites.get(i));
+			}
+			for (int i = 0; i < mc.sources.size(); i++) {
+				final int from = node(mc.sources.get(i));
+				final int to = node(mc.targets.get(i));
+				if (from != to) {
+					successors.get(from).add(to);
+				}
+			}
+		}
+
+		final int n = successors.size();
+		int[][] succ = new int[n][];
+		for (int v = 0; v < n; v++) {
+			succ[v] = Ints.toArray(successors.get(v));
+		}
+		int[] component = GraphUtil.stronglyConnectedComponents(succ);
+		int numComponents = 0;
+		for (int c : component) {
+			numComponents = Math.max(numComponents, c + 1);
+		}
+
+		BitSet[] componentPointsTo = new BitSet[numComponents];
+		for (int c = 0; c < numComponents; c++) {
+			componentPointsTo[c] = new BitSet();
+		}
+		// sort the nodes by descending component number.
+		int[] start = new int[numComponents + 1];
+		for (int v = 0; v < n; v++) {
+			componentPointsTo[component[v]].or(seeds.get(v));
+			start[numComponents - component[v]]++;
+		}
+		for (int c = 0; c < numComponents; c++) {
+			start[c + 1] += start[c];
+		}
+		int[] order = new int[n];
+		for (int v = 0; v < n; v++) {
+			order[start[numComponents - 1 - component[v]]++] = v;
+		}
+		for (int v : order) {
+			final BitSet pt = componentPointsTo[component[v]];
+			for (int w : succ[v]) {
+				if (component[w] != component[v]) {
+					componentPointsTo[component[w]].or(pt);
 				}
 			}
 		}
-		return changes;
+
+		Map<Variable, BitSet> solution = new HashMap<Variable, BitSet>();
+		for (Entry<Variable, Integer> entry : nodes.entrySet()) {
+			solution.put(entry.getKey(), componentPointsTo[component[entry.getValue()]]);
+		}
+		return solution;
 	}
 	
 	public boolean mustAlias(Expression ref1, Expression ref2) {
@@ -145,9 +297,9 @@ public class FlowBasedPointsToAnalysis {
 				return true;
 		}
 		
-		Set<Integer> pt1 = getPointsToSet(ref1);
-		Set<Integer> pt2 = getPointsToSet(ref2);
-		return pt1.size()==1 && pt2.size()==1 && pt1.containsAll(pt2);
+		BitSet pt1 = getPointsToSet(ref1);
+		BitSet pt2 = getPointsToSet(ref2);
+		return pt1.cardinality()==1 && pt1.equals(pt2);
 	}
 	
 	public boolean mayAlias(Expression ref1, Expression ref2) {
@@ -166,37 +318,52 @@ public class FlowBasedPointsToAnalysis {
 				&& !rt1.getClassVariable().superclassOf(rt2.getClassVariable()))
 			return false;
 		
-		Set<Integer> pt1 = getPointsToSet(ref1);
-		Set<Integer> pt2 = getPointsToSet(ref2);
+		BitSet pt1 = getPointsToSet(ref1);
+		BitSet pt2 = getPointsToSet(ref2);
 		
 		// If we did not collect points to info, err on the safe side
 		if (pt1.isEmpty() || pt2.isEmpty()) return true;
 		
-		return !(Collections.disjoint(pt1,pt2));
+		return pt1.intersects(pt2);
 	}
 	
-	private Set<Integer> getPointsToSet(Variable v) {
-		if (!this.pointsTo.containsKey(v))
-			this.pointsTo.put(v, new HashSet<Integer>());
-		
+	private BitSet getPointsToSet(Variable v) {
 		// bit of a hack to get this to work with the Jayhorn classes
-		if (v.getType().toString().startsWith(NewMemoryModel.GlobalsClassName)
-				|| v.getType().toString().startsWith(ArrayTransformer.arrayTypeName)) {
-			Set<Integer> pointsto = new HashSet<Integer>();
-			int ptid = -v.getType().hashCode();
-			pointsto.add(ptid);
+		if (isJayhornType(v)) {
+			BitSet pointsto = new BitSet();
+			pointsto.set(typeObject(v.getType()));
 			return pointsto;
 		}
-		
-		return this.pointsTo.get(v);
+		BitSet pt = pointsTo.get(v);
+		if (pt == null) {
+			return new BitSet();
+		}
+		return pt;
 	}
 	
-	private Set<Integer> getPointsToSet(Expression e) {
+	private BitSet getPointsToSet(Expression e) {
 		if (e instanceof NullLiteral) {
-			return new HashSet<Integer>();
+			return new BitSet();
 		}
 		return getPointsToSet(variableFromExpression(e));
 	}
+
+	private boolean isJayhornType(Variable v) {
+		return v.getType().toString().startsWith(NewMemoryModel.GlobalsClassName)
+				|| v.getType().toString().startsWith(ArrayTransformer.arrayTypeName);
+	}
+
+	/**
+	 * Returns the object that all variables of a Jayhorn class point to.
+	 */
+	private int typeObject(Type t) {
+		Integer obj = typeObjects.get(t);
+		if (obj == null) {
+			obj = nextAliasClass++;
+			typeObjects.put(t, obj);
+		}
+		return obj;
+	}
 	
 	private Variable variableFromExpression(Expression e) {
 		Verify.verify(e.getUseVariables().size()==1,
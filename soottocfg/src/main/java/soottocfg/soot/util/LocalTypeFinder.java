@@ -39,9 +39,17 @@ public class LocalTypeFinder extends ForwardFlowAnalysis<Unit, Map<Local, Set<Ty
 	private final Body body;
 
 	public LocalTypeFinder(DirectedGraph<Unit> graph, Body b) {
+		this(graph, b, Scene.v().getActiveHierarchy());
+	}
+
+	/**
+	 * Soot's Hierarchy caches its results, so threads that analyze bodies
+	 * in parallel must each use their own.
+	 */
+	public LocalTypeFinder(DirectedGraph<Unit> graph, Body b, Hierarchy hierarchy) {
 		super(graph);
 		this.body = b;
-		hierarchy = Scene.v().getActiveHierarchy();
+		this.hierarchy = hierarchy;
 		this.doAnalysis();
 	}
 
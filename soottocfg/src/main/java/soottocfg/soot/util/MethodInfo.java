@@ -6,6 +6,7 @@ package soottocfg.soot.util;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -48,7 +49,7 @@ public class MethodInfo {
 
 	private CfgBlock source = null, sink = null;
 	private Map<Unit, CfgBlock> unitToBlockMap = new HashMap<Unit, CfgBlock>();
-	private Map<Local, Variable> localsMap = new HashMap<Local, Variable>();
+	private Map<Local, Variable> localsMap = new LinkedHashMap<Local, Variable>();
 
 	private Variable thisVariable;
 	private Variable exceptionVariable;
@@ -77,19 +77,23 @@ public enum SootTranslationHelpers {
 	 * @return
 	 */
 	public SootMethod getHavocMethod(soot.Type t) {
-		if (!Scene.v().containsClass(HavocClassName)) {
-			SootClass sClass = new SootClass(HavocClassName, Modifier.PUBLIC | Modifier.PUBLIC);
-			sClass.setSuperclass(Scene.v().getSootClass("java.lang.Object"));
-			sClass.setResolvingLevel(SootClass.SIGNATURES);
-			Scene.v().addClass(sClass);
-		}
-		SootClass cls = Scene.v().getSootClass(HavocClassName);
-		final String havocMethodName = HavocMethodName + t.toString();
-		if (!cls.declaresMethodByName(havocMethodName)) {
-			cls.addMethod(new SootMethod(havocMethodName, Arrays.asList(new Type[] {}), t,
-					Modifier.PUBLIC | Modifier.STATIC));
+		// bodies may be translated in parallel, so the scene changes are
+		// synchronized.
+		synchronized (Scene.v()) {
+			if (!Scene.v().containsClass(HavocClassName)) {
+				SootClass sClass = new SootClass(HavocClassName, Modifier.PUBLIC | Modifier.PUBLIC);
+				sClass.setSuperclass(Scene.v().getSootClass("java.lang.Object"));
+				sClass.setResolvingLevel(SootClass.SIGNATURES);
+				Scene.v().addClass(sClass);
+			}
+			SootClass cls = Scene.v().getSootClass(HavocClassName);
+			final String havocMethodName = HavocMethodName + t.toString();
+			if (!cls.declaresMethodByName(havocMethodName)) {
+				cls.addMethod(new SootMethod(havocMethodName, Arrays.asList(new Type[] {}), t,
+						Modifier.PUBLIC | Modifier.STATIC));
+			}
+			return cls.getMethodByName("havoc_" + t.toString());
 		}
-		return cls.getMethodByName("havoc_" + t.toString());
 	}
 
 	public static void initialize(Program program) {
@@ -116,18 +120,30 @@ public enum SootTranslationHelpers {
 
 	private transient Program program;
 
+	// the context of the body that the current thread translates, if any.
+	private final transient ThreadLocal<TranslationContext> boundContext = new ThreadLocal<TranslationContext>();
+	// the context that is used if no context is bound to the thread, e.g.,
+	// when bodies are translated one after another.
+	private transient TranslationContext defaultContext;
+
+	// methods are looked up and created atomically under this lock.
+	private final transient Object methodLock = new Object();
+
 	public void reset() {
 		currentMethod = null;
 		currentSourceFileName = null;
 		memoryModel = null;
 		program = null;
+		boundContext.remove();
+		defaultContext = null;
 		writtenOnceFields = null;
+		recursivelyDefinedClasses = null;
 	}
 
 
 	private Set<SootField> writtenOnceFields;
 	
-	public boolean isWrittenOnce(SootField f) {
+	public synchronized boolean isWrittenOnce(SootField f) {
 		if (writtenOnceFields==null) {
 			writtenOnceFields = InlineableFieldCollector.getInlineableFields();
 		}
@@ -135,7 +151,7 @@ public enum SootTranslationHelpers {
 	}
 	
 	private Set<SootClass> recursivelyDefinedClasses;
-	public Set<SootClass> getRecursivelyDefinedClasses() {
+	public synchronized Set<SootClass> getRecursivelyDefinedClasses() {
 		if (recursivelyDefinedClasses==null) {
 			recursivelyDefinedClasses = InlineableFieldCollector.getRecursivelyDefinedClasses();
 		}
@@ -232,9 +248,15 @@ public enum SootTranslationHelpers {
 	}
 
 	public Method lookupOrCreateMethod(SootMethod m) {
-		if (this.program.lookupMethod(m.getSignature()) != null) {
-			return this.program.lookupMethod(m.getSignature());
+		synchronized (methodLock) {
+			if (this.program.lookupMethod(m.getSignature()) != null) {
+				return this.program.lookupMethod(m.getSignature());
+			}
+			return createMethod(m);
 		}
+	}
+
+	private Method createMethod(SootMethod m) {
 		int parameterCount = 0;
 		final List<Variable> parameterList = new LinkedList<Variable>();
 		if (!m.isStatic()) {
@@ -326,7 +348,7 @@ public enum SootTranslationHelpers {
 		if (lineNumber < 0) {
 			lineNumber = SootTranslationHelpers.v().getJavaSourceLine(SootTranslationHelpers.v().getCurrentMethod());
 		}
-		return new SourceLocation(this.currentSourceFileName, lineNumber);
+		return new SourceLocation(getCurrentSourceFileName(), lineNumber);
 	}
 
 	public SourceLocation getSourceLocation(SootMethod sm) {
@@ -336,7 +358,7 @@ public enum SootTranslationHelpers {
 			lineNumber = SootTranslationHelpers.v().getJavaSourceLine(SootTranslationHelpers.v().getCurrentMethod());
 		}
 
-		return new SourceLocation(this.currentSourceFileName, lineNumber);
+		return new SourceLocation(getCurrentSourceFileName(), lineNumber);
 	}
 
 	void setMemoryModelKind(MemModel kind) {
@@ -386,6 +408,10 @@ public enum SootTranslationHelpers {
 	}
 
 	public SootMethod getCurrentMethod() {
+		TranslationContext context = boundContext.get();
+		if (context != null) {
+			return context.getMethod();
+		}
 		return currentMethod;
 	}
 
@@ -398,9 +424,44 @@ public enum SootTranslationHelpers {
 	}
 
 	public String getCurrentSourceFileName() {
+		TranslationContext context = boundContext.get();
+		if (context != null) {
+			return context.getSourceFileName();
+		}
 		return this.currentSourceFileName;
 	}
 
+	/**
+	 * Binds the context of the body that the current thread translates
+	 * until it is unbound with null. While a context is bound, the current
+	 * method and source file are taken from the context.
+	 * 
+	 * @param context
+	 *            The context, or null to unbind it.
+	 */
+	public void setTranslationContext(TranslationContext context) {
+		if (context == null) {
+			boundContext.remove();
+		} else {
+			boundContext.set(context);
+		}
+	}
+
+	/**
+	 * @return The context bound to the current thread or, if there is
+	 *         none, the default context.
+	 */
+	public TranslationContext getTranslationContext() {
+		TranslationContext context = boundContext.get();
+		if (context != null) {
+			return context;
+		}
+		if (defaultContext == null) {
+			defaultContext = new TranslationContext(null, null);
+		}
+		return defaultContext;
+	}
+
 	public int getJavaSourceLine(AbstractHost ah) {
 		return ah.getJavaSourceStartLineNumber();
 	}
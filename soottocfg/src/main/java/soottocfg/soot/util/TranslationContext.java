@@ -0,0 +1,93 @@
+package soottocfg.soot.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import soot.SootMethod;
+import soottocfg.cfg.variable.Variable;
+import soottocfg.soot.memory_model.NewMemoryModel;
+import soottocfg.soot.visitors.SootStmtSwitch;
+import soottocfg.soot.visitors.SootValueSwitch;
+
+/**
+ * Everything that belongs to the translation of one method body: the
+ * method and its source file, its MethodInfo, the statement and value
+ * switch that translate it, and the field locals of the memory model.
+ *
+ * Each translation task binds its own context to the thread that runs it
+ * (see SootTranslationHelpers.setTranslationContext), so that bodies can
+ * be translated in parallel. Everything that is not in the context (the
+ * Program, the types and class variables of the memory model) is shared
+ * between all tasks.
+ */
+public class TranslationContext {
+
+	private final SootMethod method;
+	private final String sourceFileName;
+
+	private MethodInfo methodInfo;
+	private SootStmtSwitch statementSwitch;
+	private SootValueSwitch valueSwitch;
+
+	private final Map<Variable, Map<String, Variable>> fieldToLocalMap = new HashMap<Variable, Map<String, Variable>>();
+	private NewMemoryModel.PushPullPoints pushPullPoints;
+
+	/**
+	 * @param method
+	 *            The method that is translated, or null for the context
+	 *            that is used outside of the CFG construction.
+	 * @param sourceFileName
+	 */
+	public TranslationContext(SootMethod method, String sourceFileName) {
+		this.method = method;
+		this.sourceFileName = sourceFileName;
+	}
+
+	public SootMethod getMethod() {
+		return method;
+	}
+
+	public String getSourceFileName() {
+		return sourceFileName;
+	}
+
+	public MethodInfo getMethodInfo() {
+		return methodInfo;
+	}
+
+	public void setMethodInfo(MethodInfo mi) {
+		this.methodInfo = mi;
+	}
+
+	public SootStmtSwitch getStatementSwitch() {
+		return statementSwitch;
+	}
+
+	public void setStatementSwitch(SootStmtSwitch ss) {
+		this.statementSwitch = ss;
+	}
+
+	public SootValueSwitch getValueSwitch() {
+		return valueSwitch;
+	}
+
+	public void setValueSwitch(SootValueSwitch vs) {
+		this.valueSwitch = vs;
+	}
+
+	/**
+	 * The field locals of the memory model, by base variable and field.
+	 * @return
+	 */
+	public Map<Variable, Map<String, Variable>> getFieldToLocalMap() {
+		return fieldToLocalMap;
+	}
+
+	public NewMemoryModel.PushPullPoints getPushPullPoints() {
+		return pushPullPoints;
+	}
+
+	public void setPushPullPoints(NewMemoryModel.PushPullPoints ppp) {
+		this.pushPullPoints = ppp;
+	}
+}
@@ -31,6 +31,7 @@ import soot.Body;
 import soot.Local;
 import soot.PatchingChain;
 import soot.RefType;
+import soot.Scene;
 import soot.SootClass;
 import soot.SootMethod;
 import soot.Unit;
@@ -113,7 +114,11 @@ public class SootStmtSwitch implements StmtSwitch {
 
 		units = body.getUnits();
 		Unit head = units.getFirst();
-		unitGraph = new CompleteUnitGraph(sootBody);
+		// building the exceptional graph uses Soot's shared caches, and
+		// bodies may be translated in parallel.
+		synchronized (Scene.v()) {
+			unitGraph = new CompleteUnitGraph(sootBody);
+		}
 		// check if the block is empty.
 		if (head != null) {
 			this.entryBlock = methodInfo.lookupCfgBlock(head);
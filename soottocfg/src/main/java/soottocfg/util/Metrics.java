@@ -0,0 +1,297 @@
+package soottocfg.util;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Timers, counters, and histograms for the phases of the translation and
+ * the encoding. Metrics are created on first use and identified by a
+ * dotted name such as "soottocfg.soot_load". They can be written as JSON
+ * or in the Prometheus text format.
+ *
+ * All metrics are thread safe.
+ */
+public class Metrics {
+
+	private static volatile Metrics instance;
+
+	public static void resetInstance() {
+		instance = null;
+	}
+
+	public static Metrics v() {
+		Metrics metrics = instance;
+		if (null == metrics) {
+			synchronized (Metrics.class) {
+				if (null == instance) {
+					instance = new Metrics();
+				}
+				metrics = instance;
+			}
+		}
+		return metrics;
+	}
+
+	private Metrics() {
+	}
+
+	private final Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+
+	/**
+	 * Accumulates the time spent in a phase and how often it ran.
+	 */
+	public static class Timer {
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+
+		public Sample start() {
+			return new Sample(this);
+		}
+
+		public void record(long nanos) {
+			count.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		public long getTotalNanos() {
+			return totalNanos.get();
+		}
+	}
+
+	/**
+	 * One running measurement of a Timer.
+	 */
+	public static class Sample {
+		private final Timer timer;
+		private final long start = System.nanoTime();
+
+		private Sample(Timer timer) {
+			this.timer = timer;
+		}
+
+		/**
+		 * Records the time since start in the timer.
+		 * @return the elapsed time in nanoseconds.
+		 */
+		public long stop() {
+			final long elapsed = System.nanoTime() - start;
+			timer.record(elapsed);
+			return elapsed;
+		}
+	}
+
+	public static class Counter {
+		private final AtomicLong value = new AtomicLong();
+
+		public void inc() {
+			value.incrementAndGet();
+		}
+
+		public void add(long n) {
+			value.addAndGet(n);
+		}
+
+		public long getValue() {
+			return value.get();
+		}
+	}
+
+	/**
+	 * Distribution of non-negative values in buckets with the upper bounds
+	 * 0, 1, 2, 4, ..., 2^20, and infinity.
+	 */
+	public static class Histogram {
+		private static final int BUCKETS = 22;
+		private final long[] buckets = new long[BUCKETS + 1];
+		private long count = 0, sum = 0, max = 0;
+
+		public synchronized void record(long value) {
+			Preconditions.checkArgument(value >= 0, "Negative value " + value);
+			count++;
+			sum += value;
+			max = Math.max(max, value);
+			int bucket = 0;
+			while (bucket < BUCKETS && value > upperBound(bucket)) {
+				bucket++;
+			}
+			buckets[bucket]++;
+		}
+
+		private static long upperBound(int bucket) {
+			return (bucket == 0) ? 0 : 1L << (bucket - 1);
+		}
+
+		public synchronized long getCount() {
+			return count;
+		}
+
+		public synchronized long getSum() {
+			return sum;
+		}
+
+		public synchronized long getMax() {
+			return max;
+		}
+	}
+
+	public Timer timer(String name) {
+		return get(name, Timer.class);
+	}
+
+	public Counter counter(String name) {
+		return get(name, Counter.class);
+	}
+
+	public Histogram histogram(String name) {
+		return get(name, Histogram.class);
+	}
+
+	private synchronized <T> T get(String name, Class<T> kind) {
+		Object metric = metrics.get(name);
+		if (metric == null) {
+			try {
+				metric = kind.newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new RuntimeException(e);
+			}
+			metrics.put(name, metric);
+		}
+		Preconditions.checkArgument(kind.isInstance(metric),
+				name + " is a " + metric.getClass().getSimpleName() + ", not a " + kind.getSimpleName());
+		return kind.cast(metric);
+	}
+
+	private synchronized Map<String, Object> snapshot() {
+		return new LinkedHashMap<String, Object>(metrics);
+	}
+
+	/**
+	 * Writes all metrics as one JSON object with the fields timers,
+	 * counters, and histograms. Times are in seconds.
+	 * @param info
+	 *            Additional string values, e.g., the verdict, or null.
+	 * @return
+	 */
+	public String toJson(Map<String, String> info) {
+		Map<String, Object> all = snapshot();
+		StringBuilder timers = new StringBuilder();
+		StringBuilder counters = new StringBuilder();
+		StringBuilder histograms = new StringBuilder();
+		for (Entry<String, Object> entry : all.entrySet()) {
+			final Object metric = entry.getValue();
+			if (metric instanceof Timer) {
+				Timer t = (Timer) metric;
+				appendKey(timers, entry.getKey());
+				timers.append(String.format(Locale.ROOT, "{\"count\": %d, \"seconds\": %.6f}", t.getCount(),
+						t.getTotalNanos() / 1e9));
+			} else if (metric instanceof Counter) {
+				appendKey(counters, entry.getKey());
+				counters.append(((Counter) metric).getValue());
+			} else {
+				Histogram h = (Histogram) metric;
+				appendKey(histograms, entry.getKey());
+				synchronized (h) {
+					histograms.append(String.format("{\"count\": %d, \"sum\": %d, \"max\": %d, \"buckets\": {", h.count,
+							h.sum, h.max));
+					String comma = "";
+					for (int i = 0; i <= Histogram.BUCKETS; i++) {
+						if (h.buckets[i] > 0) {
+							histograms.append(comma);
+							histograms.append(quote(i < Histogram.BUCKETS ? String.valueOf(Histogram.upperBound(i)) : "+Inf"));
+							histograms.append(": ");
+							histograms.append(h.buckets[i]);
+							comma = ", ";
+						}
+					}
+					histograms.append("}}");
+				}
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append("{");
+		if (info != null) {
+			StringBuilder infos = new StringBuilder();
+			for (Entry<String, String> entry : info.entrySet()) {
+				appendKey(infos, entry.getKey());
+				infos.append(quote(entry.getValue()));
+			}
+			sb.append("\n  \"info\": {").append(infos).append("\n  },");
+		}
+		sb.append("\n  \"timers\": {").append(timers).append("\n  },");
+		sb.append("\n  \"counters\": {").append(counters).append("\n  },");
+		sb.append("\n  \"histograms\": {").append(histograms).append("\n  }");
+		sb.append("\n}\n");
+		return sb.toString();
+	}
+
+	private static void appendKey(StringBuilder sb, String key) {
+		if (sb.length() > 0) {
+			sb.append(",");
+		}
+		sb.append("\n    ");
+		sb.append(quote(key));
+		sb.append(": ");
+	}
+
+	private static String quote(String s) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (char c : String.valueOf(s).toCharArray()) {
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * Writes all metrics in the Prometheus text format. Each name is
+	 * prefixed with "jayhorn_" and all characters that are not allowed
+	 * in metric names are replaced by underscores. Timers are written as
+	 * summaries in seconds.
+	 * @return
+	 */
+	public String toPrometheus() {
+		StringBuilder sb = new StringBuilder();
+		for (Entry<String, Object> entry : snapshot().entrySet()) {
+			final String name = "jayhorn_" + entry.getKey().replaceAll("[^a-zA-Z0-9_]", "_");
+			final Object metric = entry.getValue();
+			if (metric instanceof Timer) {
+				Timer t = (Timer) metric;
+				sb.append("# TYPE ").append(name).append("_seconds summary\n");
+				sb.append(String.format(Locale.ROOT, "%s_seconds_sum %.6f\n", name, t.getTotalNanos() / 1e9));
+				sb.append(name).append("_seconds_count ").append(t.getCount()).append("\n");
+			} else if (metric instanceof Counter) {
+				sb.append("# TYPE ").append(name).append("_total counter\n");
+				sb.append(name).append("_total ").append(((Counter) metric).getValue()).append("\n");
+			} else {
+				Histogram h = (Histogram) metric;
+				sb.append("# TYPE ").append(name).append(" histogram\n");
+				synchronized (h) {
+					long cumulative = 0;
+					for (int i = 0; i < Histogram.BUCKETS; i++) {
+						cumulative += h.buckets[i];
+						sb.append(name).append("_bucket{le=\"").append(Histogram.upperBound(i)).append("\"} ")
+								.append(cumulative).append("\n");
+					}
+					sb.append(name).append("_bucket{le=\"+Inf\"} ").append(h.count).append("\n");
+					sb.append(name).append("_sum ").append(h.sum).append("\n");
+					sb.append(name).append("_count ").append(h.count).append("\n");
+				}
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,222 @@
+package soottocfg.test.optimization_test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soottocfg.cfg.Program;
+import soottocfg.cfg.SourceLocation;
+import soottocfg.cfg.expression.BinaryExpression;
+import soottocfg.cfg.expression.BinaryExpression.BinaryOperator;
+import soottocfg.cfg.expression.Expression;
+import soottocfg.cfg.expression.IdentifierExpression;
+import soottocfg.cfg.expression.literal.BooleanLiteral;
+import soottocfg.cfg.expression.literal.IntegerLiteral;
+import soottocfg.cfg.method.CfgBlock;
+import soottocfg.cfg.method.Method;
+import soottocfg.cfg.optimization.CfgCallInliner;
+import soottocfg.cfg.statement.AssignStatement;
+import soottocfg.cfg.statement.AssumeStatement;
+import soottocfg.cfg.statement.CallStatement;
+import soottocfg.cfg.statement.PullStatement;
+import soottocfg.cfg.statement.PushStatement;
+import soottocfg.cfg.statement.Statement;
+import soottocfg.cfg.type.IntType;
+import soottocfg.cfg.type.ReferenceType;
+import soottocfg.cfg.type.Type;
+import soottocfg.cfg.variable.ClassVariable;
+import soottocfg.cfg.variable.Variable;
+
+/**
+ * Inlines calls in small hand-built programs. Each method has one block
+ * with its statements and an empty exit block.
+ */
+public class CfgCallInlinerTest {
+
+	private final SourceLocation loc = SourceLocation.ANALYSIS;
+
+	private final ClassVariable classK = new ClassVariable("K", new LinkedList<ClassVariable>());
+
+	private final Program program = new Program();
+
+	@Test
+	public void testStaleCandidateIsRescored() {
+		// f is inlined into g first, because it is smaller. This makes the
+		// call to g more expensive than the remaining budget of 5, so it
+		// must not be inlined with the cost it had when it was queued.
+		Method main = staleProgram();
+		new CfgCallInliner(program).inlineWithBudget(100);
+
+		List<CallStatement> mainCalls = calls(main);
+		Assert.assertEquals(1, mainCalls.size());
+		Method g = mainCalls.get(0).getCallTarget();
+		Assert.assertEquals("g", g.getMethodName());
+		Assert.assertTrue(calls(g).isEmpty());
+		Assert.assertEquals(6, count(g, AssumeStatement.class));
+	}
+
+	@Test
+	public void testRescoredCandidateCopiesNewBody() {
+		// with enough budget, the call to g is inlined after f has been
+		// inlined into g, so main gets the body of f without a call.
+		Method main = staleProgram();
+		new CfgCallInliner(program).inlineWithBudget(200);
+
+		Assert.assertTrue(calls(main).isEmpty());
+		Assert.assertEquals(6, count(main, AssumeStatement.class));
+	}
+
+	@Test
+	public void testCopiesOfOneCallee() {
+		Variable x = new Variable("x", IntType.instance());
+		Variable p = new Variable("p", IntType.instance());
+		Method main = method("main", x);
+		Method g = method("g", p);
+		program.setEntryPoint(main);
+		AssumeStatement original = new AssumeStatement(loc,
+				new BinaryExpression(loc, BinaryOperator.Eq, p.mkExp(loc), IntegerLiteral.zero()));
+		g.getSource().addStatement(original);
+		call(main, g, x);
+		call(main, g, x);
+
+		new CfgCallInliner(program).inlineWithBudget(1000);
+
+		Assert.assertTrue(calls(main).isEmpty());
+		List<AssumeStatement> copies = new ArrayList<AssumeStatement>();
+		List<Variable> assigned = new ArrayList<Variable>();
+		for (CfgBlock b : main.vertexSet()) {
+			for (Statement s : b.getStatements()) {
+				if (s instanceof AssumeStatement) {
+					copies.add((AssumeStatement) s);
+				} else if (s instanceof AssignStatement) {
+					assigned.add(((IdentifierExpression) ((AssignStatement) s).getLeft()).getVariable());
+				}
+			}
+		}
+		Assert.assertEquals(2, copies.size());
+		Assert.assertNotSame(copies.get(0), copies.get(1));
+		Assert.assertNotSame(original, copies.get(0));
+		Assert.assertNotSame(original, copies.get(1));
+		// each copy reads its own fresh local, which gets the argument.
+		Variable p0 = copies.get(0).getUseVariables().iterator().next();
+		Variable p1 = copies.get(1).getUseVariables().iterator().next();
+		Assert.assertNotEquals(p0, p1);
+		Assert.assertTrue(p0.getName().startsWith("cp_p_"));
+		Assert.assertTrue(p1.getName().startsWith("cp_p_"));
+		Assert.assertTrue(assigned.contains(p0));
+		Assert.assertTrue(assigned.contains(p1));
+		Assert.assertTrue(main.getLocals().contains(p0));
+		Assert.assertTrue(main.getLocals().contains(p1));
+	}
+
+	@Test
+	public void testCalleeChangesBetweenCopies() {
+		// g is first copied into main, then f is inlined into g, and then
+		// g is copied into k. The copy in k must contain the body of f and
+		// no call to f, because there is no budget left to inline it.
+		Variable x = new Variable("x", new ReferenceType(classK));
+		Variable p = new Variable("p", new ReferenceType(classK));
+		Variable y = new Variable("y", new ReferenceType(classK));
+		Method main = method("main", x);
+		Method g = method("g", p);
+		Method f = method("f");
+		Method k = method("k", y);
+		program.setEntryPoint(main);
+
+		assumeTrue(f, 3);
+		// the pull in g may be simplified with the push in main, which
+		// makes inlining g into main more profitable than f into g.
+		g.getSource().addStatement(new PullStatement(loc, classK, p.mkExp(loc), new LinkedList<IdentifierExpression>()));
+		call(g, f);
+		assumeTrue(g, 2);
+		call(k, g, y);
+		assumeTrue(k, 10);
+		main.getSource().addStatement(new PushStatement(loc, classK, x.mkExp(loc), new LinkedList<Expression>()));
+		call(main, g, x);
+		call(main, k, x);
+
+		// the program has 21 statements, so the budget is 18. This is enough
+		// for g into main (5), f into main and into g (3 each), and g into k
+		// (7), but not for k into main.
+		new CfgCallInliner(program).inlineWithBudget(90);
+
+		List<CallStatement> mainCalls = calls(main);
+		Assert.assertEquals(1, mainCalls.size());
+		Assert.assertEquals(k, mainCalls.get(0).getCallTarget());
+		Assert.assertTrue(calls(k).isEmpty());
+		Assert.assertEquals(15, count(k, AssumeStatement.class));
+		Assert.assertEquals(1, count(k, PullStatement.class));
+	}
+
+	/**
+	 * main calls g, which calls f. The program has 8 statements.
+	 */
+	private Method staleProgram() {
+		Variable x = new Variable("x", IntType.instance());
+		Variable p = new Variable("p", IntType.instance());
+		Method main = method("main", x);
+		Method g = method("g", p);
+		Method f = method("f");
+		program.setEntryPoint(main);
+		assumeTrue(f, 3);
+		call(g, f);
+		assumeTrue(g, 3);
+		call(main, g, x);
+		return main;
+	}
+
+	private Method method(String name, Variable... params) {
+		Method m = Method.createMethodForTestingOnly(program, name, Arrays.asList(params), new LinkedList<Type>(),
+				loc);
+		CfgBlock b = new CfgBlock(m);
+		CfgBlock exit = new CfgBlock(m);
+		m.addEdge(b, exit);
+		m.setSource(b);
+		m.setSink(exit);
+		return m;
+	}
+
+	private void call(Method caller, Method callee, Variable... args) {
+		List<Expression> arguments = new LinkedList<Expression>();
+		for (Variable v : args) {
+			arguments.add(v.mkExp(loc));
+		}
+		caller.getSource().addStatement(
+				new CallStatement(loc, callee, arguments, Collections.<Expression> emptyList()));
+	}
+
+	private void assumeTrue(Method m, int n) {
+		for (int i = 0; i < n; i++) {
+			m.getSource().addStatement(new AssumeStatement(loc, BooleanLiteral.trueLiteral()));
+		}
+	}
+
+	private List<CallStatement> calls(Method m) {
+		List<CallStatement> calls = new ArrayList<CallStatement>();
+		for (CfgBlock b : m.vertexSet()) {
+			for (Statement s : b.getStatements()) {
+				if (s instanceof CallStatement) {
+					calls.add((CallStatement) s);
+				}
+			}
+		}
+		return calls;
+	}
+
+	private int count(Method m, Class<? extends Statement> kind) {
+		int count = 0;
+		for (CfgBlock b : m.vertexSet()) {
+			for (Statement s : b.getStatements()) {
+				if (kind.isInstance(s)) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+}
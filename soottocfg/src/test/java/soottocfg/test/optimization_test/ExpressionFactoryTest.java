@@ -0,0 +1,104 @@
+package soottocfg.test.optimization_test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soottocfg.Options;
+import soottocfg.cfg.SourceLocation;
+import soottocfg.cfg.expression.BinaryExpression;
+import soottocfg.cfg.expression.BinaryExpression.BinaryOperator;
+import soottocfg.cfg.expression.Expression;
+import soottocfg.cfg.expression.ExpressionFactory;
+import soottocfg.cfg.expression.IteExpression;
+import soottocfg.cfg.expression.UnaryExpression;
+import soottocfg.cfg.expression.UnaryExpression.UnaryOperator;
+import soottocfg.cfg.expression.literal.IntegerLiteral;
+import soottocfg.cfg.type.IntType;
+import soottocfg.cfg.variable.Variable;
+
+/**
+ * Interns expressions with the ExpressionFactory.
+ */
+public class ExpressionFactoryTest {
+
+	private final SourceLocation loc = new SourceLocation("A.java", 1);
+	private final SourceLocation otherLoc = new SourceLocation("A.java", 2);
+
+	private final Variable x = new Variable("x", IntType.instance());
+	private final Variable y = new Variable("y", IntType.instance());
+
+	private final Map<Variable, Variable> noSubs = Collections.emptyMap();
+
+	@Before
+	public void setUp() {
+		Options.resetInstance();
+		ExpressionFactory.resetInstance();
+		Options.v().setInternExpressions(true);
+	}
+
+	@After
+	public void tearDown() {
+		Options.resetInstance();
+		ExpressionFactory.resetInstance();
+	}
+
+	private BinaryExpression xEqZero(SourceLocation leafLoc) {
+		return new BinaryExpression(loc, BinaryOperator.Eq, x.mkExp(leafLoc), new IntegerLiteral(leafLoc, 0));
+	}
+
+	@Test
+	public void testInnerNodesAreShared() {
+		BinaryExpression a = xEqZero(loc).substitute(noSubs);
+		BinaryExpression b = xEqZero(loc).substitute(noSubs);
+		Assert.assertSame(a, b);
+		Assert.assertSame(a.getLeft(), b.getLeft());
+
+		Expression ite = new IteExpression(loc, xEqZero(loc), x.mkExp(loc), new IntegerLiteral(loc, 1));
+		Expression not = new UnaryExpression(loc, UnaryOperator.LNot, xEqZero(loc));
+		Assert.assertSame(ite.substitute(noSubs), ite.deepCopy().substitute(noSubs));
+		Assert.assertSame(not.substitute(noSubs), not.deepCopy().substitute(noSubs));
+		Assert.assertSame(a, ((IteExpression) ite.substitute(noSubs)).getCondition());
+		Assert.assertSame(a, ((UnaryExpression) not.substitute(noSubs)).getExpression());
+
+		Map<Variable, Expression> subs = new HashMap<Variable, Expression>();
+		Assert.assertSame(a, xEqZero(loc).substituteVarWithExpression(subs));
+	}
+
+	@Test
+	public void testDifferentNodesAreNotShared() {
+		BinaryExpression a = xEqZero(loc).substitute(noSubs);
+		Map<Variable, Variable> subs = new HashMap<Variable, Variable>();
+		subs.put(x, y);
+		BinaryExpression b = xEqZero(loc).substitute(subs);
+		Assert.assertNotSame(a, b);
+		Assert.assertEquals(y, b.getLeft().getUseVariables().iterator().next());
+
+		// structurally equal, but the leaves have other locations.
+		BinaryExpression c = xEqZero(otherLoc).substitute(noSubs);
+		Assert.assertEquals(a, c);
+		Assert.assertNotSame(a, c);
+		Assert.assertSame(otherLoc, c.getLeft().getSourceLocation());
+		Assert.assertSame(loc, a.getLeft().getSourceLocation());
+	}
+
+	@Test
+	public void testDeepCopyIsFresh() {
+		BinaryExpression a = xEqZero(loc).substitute(noSubs);
+		BinaryExpression copy = a.deepCopy();
+		Assert.assertEquals(a, copy);
+		Assert.assertNotSame(a, copy);
+		Assert.assertNotSame(a.getLeft(), copy.getLeft());
+	}
+
+	@Test
+	public void testDisabled() {
+		Options.v().setInternExpressions(false);
+		Assert.assertNotSame(xEqZero(loc).substitute(noSubs), xEqZero(loc).substitute(noSubs));
+	}
+}
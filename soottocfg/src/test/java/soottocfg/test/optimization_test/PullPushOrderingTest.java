@@ -0,0 +1,163 @@
+package soottocfg.test.optimization_test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import soottocfg.Options;
+import soottocfg.cfg.Program;
+import soottocfg.cfg.SourceLocation;
+import soottocfg.cfg.expression.Expression;
+import soottocfg.cfg.expression.IdentifierExpression;
+import soottocfg.cfg.method.CfgBlock;
+import soottocfg.cfg.method.Method;
+import soottocfg.cfg.statement.NewStatement;
+import soottocfg.cfg.statement.PullStatement;
+import soottocfg.cfg.statement.PushStatement;
+import soottocfg.cfg.type.ReferenceType;
+import soottocfg.cfg.type.Type;
+import soottocfg.cfg.util.InterProceduralPullPushOrdering;
+import soottocfg.cfg.variable.ClassVariable;
+import soottocfg.cfg.variable.Variable;
+import soottocfg.soot.SootToCfg;
+import soottocfg.soot.util.FlowBasedPointsToAnalysis;
+
+/**
+ * Checks which pushs influence a pull on small hand-built methods. A push
+ * to the same object as a later push on every path to the pull is shadowed.
+ */
+public class PullPushOrderingTest {
+
+	private final SourceLocation loc = SourceLocation.ANALYSIS;
+
+	private final ClassVariable classA = new ClassVariable("A", new LinkedList<ClassVariable>());
+
+	private final Program program = new Program();
+	private final Method method = Method.createMethodForTestingOnly(program, "m", new LinkedList<Variable>(),
+			new LinkedList<Type>(), loc);
+	private final Variable x = local("x");
+	private final Variable y = local("y");
+
+	@After
+	public void tearDown() {
+		SootToCfg.setPointsToAnalysis(null);
+		Options.v().setContextSensitivePullPushOrdering(false);
+	}
+
+	@Test
+	public void testShadowingPath() {
+		CfgBlock b0 = block();
+		allocate(b0, x);
+		push(b0, x);
+		PushStatement push2 = push(b0, x);
+		PullStatement pull = pull(b0, x);
+
+		Assert.assertEquals(pushs(push2), influencing(pull));
+	}
+
+	@Test
+	public void testNonShadowingPath() {
+		// push2 is only on one of the two paths to the pull.
+		CfgBlock b0 = block();
+		CfgBlock b1 = block();
+		CfgBlock b2 = block();
+		CfgBlock b3 = block();
+		method.addEdge(b0, b1);
+		method.addEdge(b0, b2);
+		method.addEdge(b1, b3);
+		method.addEdge(b2, b3);
+		allocate(b0, x);
+		PushStatement push1 = push(b0, x);
+		PushStatement push2 = push(b1, x);
+		PullStatement pull = pull(b3, x);
+
+		Assert.assertEquals(pushs(push1, push2), influencing(pull));
+	}
+
+	@Test
+	public void testOtherObjectDoesNotShadow() {
+		CfgBlock b0 = block();
+		allocate(b0, x);
+		allocate(b0, y);
+		PushStatement push1 = push(b0, x);
+		push(b0, y);
+		PullStatement pull = pull(b0, x);
+
+		Assert.assertEquals(pushs(push1), influencing(pull));
+	}
+
+	@Test
+	public void testLoopBackToPull() {
+		// the pull sees push1 on the first iteration, and the last push of
+		// the loop body on all others.
+		CfgBlock b0 = block();
+		CfgBlock b1 = block();
+		CfgBlock b2 = block();
+		method.addEdge(b0, b1);
+		method.addEdge(b1, b1);
+		method.addEdge(b1, b2);
+		allocate(b0, x);
+		PushStatement push1 = push(b0, x);
+		PullStatement pull = pull(b1, x);
+		push(b1, x);
+		PushStatement push3 = push(b1, x);
+
+		Assert.assertEquals(pushs(push1, push3), influencing(pull));
+	}
+
+	/**
+	 * Returns the pushs that influence the pull, and checks that the
+	 * context-sensitive ordering agrees, since there are no calls.
+	 */
+	private Set<PushStatement> influencing(PullStatement pull) {
+		FlowBasedPointsToAnalysis pta = new FlowBasedPointsToAnalysis();
+		pta.run(program);
+		SootToCfg.setPointsToAnalysis(pta);
+
+		Options.v().setContextSensitivePullPushOrdering(false);
+		Set<PushStatement> insensitive = new InterProceduralPullPushOrdering(method).getPushsInfluencing(pull);
+		Options.v().setContextSensitivePullPushOrdering(true);
+		Set<PushStatement> sensitive = new InterProceduralPullPushOrdering(method).getPushsInfluencing(pull);
+		Assert.assertEquals(insensitive, sensitive);
+		return insensitive;
+	}
+
+	private Set<PushStatement> pushs(PushStatement... pushs) {
+		return new HashSet<PushStatement>(Arrays.asList(pushs));
+	}
+
+	private Variable local(String name) {
+		Variable v = new Variable(name, new ReferenceType(classA));
+		method.addLocalVariable(v);
+		return v;
+	}
+
+	private CfgBlock block() {
+		CfgBlock b = new CfgBlock(method);
+		if (method.vertexSet().size() == 1) {
+			method.setSource(b);
+		}
+		return b;
+	}
+
+	private void allocate(CfgBlock b, Variable v) {
+		b.addStatement(new NewStatement(loc, v.mkExp(loc), classA));
+	}
+
+	private PushStatement push(CfgBlock b, Variable v) {
+		PushStatement push = new PushStatement(loc, classA, v.mkExp(loc), new LinkedList<Expression>());
+		b.addStatement(push);
+		return push;
+	}
+
+	private PullStatement pull(CfgBlock b, Variable v) {
+		PullStatement pull = new PullStatement(loc, classA, v.mkExp(loc), new LinkedList<IdentifierExpression>());
+		b.addStatement(pull);
+		return pull;
+	}
+}
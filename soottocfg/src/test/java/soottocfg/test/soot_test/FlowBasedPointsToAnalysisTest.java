@@ -0,0 +1,148 @@
+/**
+ *
+ */
+package soottocfg.test.soot_test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soottocfg.cfg.Program;
+import soottocfg.cfg.SourceLocation;
+import soottocfg.cfg.expression.Expression;
+import soottocfg.cfg.method.CfgBlock;
+import soottocfg.cfg.method.Method;
+import soottocfg.cfg.statement.AssignStatement;
+import soottocfg.cfg.statement.CallStatement;
+import soottocfg.cfg.statement.NewStatement;
+import soottocfg.cfg.type.ReferenceType;
+import soottocfg.cfg.type.Type;
+import soottocfg.cfg.variable.ClassVariable;
+import soottocfg.cfg.variable.Variable;
+import soottocfg.soot.memory_model.NewMemoryModel;
+import soottocfg.soot.util.FlowBasedPointsToAnalysis;
+
+/**
+ * Runs the points-to analysis on small hand-built programs. Each program
+ * has a single block, because the analysis is flow-insensitive.
+ */
+public class FlowBasedPointsToAnalysisTest {
+
+	private final SourceLocation loc = SourceLocation.ANALYSIS;
+
+	private final ClassVariable classA = new ClassVariable("A", new LinkedList<ClassVariable>());
+	private final ClassVariable classB = new ClassVariable("B", Collections.singletonList(classA));
+
+	private final Program program = new Program();
+	private final Method method = Method.createMethodForTestingOnly(program, "m", new LinkedList<Variable>(),
+			new LinkedList<Type>(), loc);
+	private final CfgBlock block = new CfgBlock(method);
+
+	@Test
+	public void testCycle() {
+		Variable a1 = local("a1", classA);
+		Variable a2 = local("a2", classA);
+		Variable a3 = local("a3", classA);
+		Variable x = local("x", classA);
+		Variable y = local("y", classA);
+		Variable z = local("z", classA);
+		Variable p = new Variable("p", new ReferenceType(classA));
+		Method callee = Method.createMethodForTestingOnly(program, "f", Arrays.asList(p), new LinkedList<Type>(),
+				loc);
+		callee.setSource(new CfgBlock(callee));
+
+		allocate(a1, classA);
+		allocate(a2, classA);
+		allocate(a3, classA);
+		// x and y are in one cycle, which a1 enters through x and a3
+		// through y.
+		assign(x, a1);
+		assign(y, x);
+		assign(x, y);
+		assign(y, a3);
+		assign(z, a2);
+		block.addStatement(new CallStatement(loc, callee, Arrays.asList(exp(y)), new LinkedList<Expression>()));
+
+		FlowBasedPointsToAnalysis pta = new FlowBasedPointsToAnalysis();
+		pta.run(program);
+
+		Assert.assertTrue(pta.mayAlias(exp(x), exp(y)));
+		Assert.assertTrue(pta.mayAlias(exp(x), exp(a1)));
+		Assert.assertTrue(pta.mayAlias(exp(x), exp(a3)));
+		Assert.assertTrue(pta.mayAlias(exp(p), exp(a1)));
+		Assert.assertFalse(pta.mayAlias(exp(x), exp(a2)));
+		Assert.assertFalse(pta.mayAlias(exp(p), exp(z)));
+		// x and y point to two objects, so they may but need not alias.
+		Assert.assertFalse(pta.mustAlias(exp(x), exp(y)));
+		Assert.assertTrue(pta.mustAlias(exp(z), exp(a2)));
+		Assert.assertFalse(pta.mustAlias(exp(a1), exp(a3)));
+	}
+
+	@Test
+	public void testJayhornTypeSeed() {
+		ClassVariable globals = new ClassVariable(NewMemoryModel.GlobalsClassName + "C",
+				Collections.singletonList(classA));
+		// the translation creates one type per class.
+		ReferenceType globalsType = new ReferenceType(globals);
+		Variable g1 = local("g1", globalsType);
+		Variable g2 = local("g2", globalsType);
+		Variable a = local("a", classA);
+		Variable b = local("b", classA);
+
+		// all variables of a Jayhorn class point to the same object.
+		assign(a, g1);
+		allocate(b, classA);
+
+		FlowBasedPointsToAnalysis pta = new FlowBasedPointsToAnalysis();
+		pta.run(program);
+
+		Assert.assertTrue(pta.mustAlias(exp(g1), exp(g2)));
+		Assert.assertTrue(pta.mustAlias(exp(a), exp(g2)));
+		Assert.assertFalse(pta.mayAlias(exp(b), exp(g2)));
+		Assert.assertFalse(pta.mayAlias(exp(a), exp(b)));
+	}
+
+	@Test
+	public void testIllTypedEdgeIsIgnored() {
+		Variable a = local("a", classA);
+		Variable b1 = local("b1", classB);
+		Variable b2 = local("b2", classB);
+
+		allocate(a, classA);
+		allocate(b1, classB);
+		assign(b2, b1);
+		// an A is not a B, so nothing flows from a into b2.
+		assign(b2, a);
+
+		FlowBasedPointsToAnalysis pta = new FlowBasedPointsToAnalysis();
+		pta.run(program);
+
+		Assert.assertTrue(pta.mustAlias(exp(b2), exp(b1)));
+		Assert.assertFalse(pta.mayAlias(exp(b2), exp(a)));
+	}
+
+	private Variable local(String name, ClassVariable cls) {
+		return local(name, new ReferenceType(cls));
+	}
+
+	private Variable local(String name, ReferenceType type) {
+		Variable v = new Variable(name, type);
+		method.addLocalVariable(v);
+		return v;
+	}
+
+	private Expression exp(Variable v) {
+		return v.mkExp(loc);
+	}
+
+	private void allocate(Variable v, ClassVariable cls) {
+		block.addStatement(new NewStatement(loc, v.mkExp(loc), cls));
+	}
+
+	private void assign(Variable left, Variable right) {
+		block.addStatement(new AssignStatement(loc, exp(left), exp(right)));
+	}
+}